@@ -0,0 +1,156 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.prescription;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openlmis.dispensing.domain.patient.Patient;
+import org.openlmis.dispensing.domain.patient.Person;
+import org.openlmis.dispensing.domain.prescription.Prescription;
+import org.openlmis.dispensing.domain.prescription.PrescriptionLineItem;
+import org.openlmis.dispensing.domain.status.PrescriptionLineItemStatus;
+import org.openlmis.dispensing.domain.status.PrescriptionStatus;
+import org.openlmis.dispensing.dto.prescription.DueListItemDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(locations = {"classpath:application.properties", "classpath:test.properties"})
+@Transactional
+public class PrescriptionDueListIntegrationTest {
+
+  private static final LocalDate FROM = LocalDate.of(2026, 10, 19);
+  private static final LocalDate TO = LocalDate.of(2026, 10, 25);
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Autowired
+  private PrescriptionService prescriptionService;
+
+  private final UUID facilityId = UUID.randomUUID();
+
+  @Test
+  public void shouldListFollowUpsDueInRangeOrderedByDate() {
+    Prescription later = persistPrescription(facilityId, TO, false, null);
+    Prescription earlier = persistPrescription(facilityId, FROM, false, null);
+    persistPrescription(facilityId, TO.plusDays(1), false, null);
+    persistPrescription(facilityId, FROM, true, null);
+    persistPrescription(UUID.randomUUID(), FROM, false, null);
+
+    Page<DueListItemDto> dueList = getDueList(DueListItemDto.Type.FOLLOW_UP);
+
+    assertEquals(2, dueList.getTotalElements());
+    assertEquals(toIds(earlier, later), dueList.getContent().stream()
+        .map(DueListItemDto::getPrescriptionId).collect(Collectors.toList()));
+    dueList.getContent().forEach(row -> assertEquals(DueListItemDto.Type.FOLLOW_UP, row.getType()));
+  }
+
+  @Test
+  public void shouldListOutstandingBalancesDueInRange() {
+    Prescription partial = persistPrescription(facilityId, null, false,
+        lineItem(PrescriptionLineItemStatus.PARTIALLY_SERVED, FROM));
+    Prescription inadequate = persistPrescription(facilityId, null, false,
+        lineItem(PrescriptionLineItemStatus.INADEQUATE_STOCK, TO));
+    persistPrescription(facilityId, null, false,
+        lineItem(PrescriptionLineItemStatus.FULLY_SERVED, FROM));
+    persistPrescription(facilityId, null, false,
+        lineItem(PrescriptionLineItemStatus.PARTIALLY_SERVED, FROM.minusDays(1)));
+    persistPrescription(facilityId, null, true,
+        lineItem(PrescriptionLineItemStatus.PARTIALLY_SERVED, FROM));
+
+    Page<DueListItemDto> dueList = getDueList(DueListItemDto.Type.COLLECT_BALANCE);
+
+    assertEquals(2, dueList.getTotalElements());
+    assertEquals(toIds(partial, inadequate), dueList.getContent().stream()
+        .map(DueListItemDto::getPrescriptionId).collect(Collectors.toList()));
+    dueList.getContent().forEach(row -> {
+      assertEquals(DueListItemDto.Type.COLLECT_BALANCE, row.getType());
+      assertEquals(Integer.valueOf(5), row.getRemainingBalance());
+    });
+  }
+
+  private Page<DueListItemDto> getDueList(DueListItemDto.Type type) {
+    entityManager.flush();
+    entityManager.clear();
+    return prescriptionService.getDueList(facilityId, type, FROM, TO, PageRequest.of(0, 10));
+  }
+
+  private List<UUID> toIds(Prescription... prescriptions) {
+    List<UUID> ids = new ArrayList<>();
+    for (Prescription prescription : prescriptions) {
+      ids.add(prescription.getId());
+    }
+    return ids;
+  }
+
+  private PrescriptionLineItem lineItem(PrescriptionLineItemStatus status,
+      LocalDate collectBalanceDate) {
+    PrescriptionLineItem lineItem = new PrescriptionLineItem();
+    lineItem.setOrderablePrescribed(UUID.randomUUID());
+    lineItem.setOrderableDispensed(UUID.randomUUID());
+    lineItem.setQuantityPrescribed(10);
+    lineItem.setQuantityDispensed(5);
+    lineItem.setRemainingBalance(5);
+    lineItem.setStatus(status);
+    lineItem.setCollectBalanceDate(collectBalanceDate);
+    return lineItem;
+  }
+
+  private Prescription persistPrescription(UUID facility, LocalDate followUpDate,
+      boolean voided, PrescriptionLineItem lineItem) {
+    Person person = new Person();
+    person.setFirstName("First");
+    person.setLastName("Last");
+
+    Patient patient = new Patient();
+    patient.setPatientNumber("DUE-" + UUID.randomUUID());
+    patient.setFacilityId(facility);
+    patient.setRegistrationDate(FROM);
+    patient.setPerson(person);
+    entityManager.persist(patient);
+
+    Prescription prescription = new Prescription();
+    prescription.setPatient(patient);
+    prescription.setFacilityId(facility);
+    prescription.setFacilityName("Facility");
+    prescription.setStatus(PrescriptionStatus.INITIATED);
+    prescription.setFollowUpDate(followUpDate);
+    prescription.setIsVoided(voided);
+    prescription.setLineItems(new ArrayList<>());
+    if (lineItem != null) {
+      lineItem.setPrescription(prescription);
+      prescription.getLineItems().add(lineItem);
+    }
+    entityManager.persist(prescription);
+    return prescription;
+  }
+}
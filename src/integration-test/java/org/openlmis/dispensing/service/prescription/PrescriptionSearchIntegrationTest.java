@@ -0,0 +1,141 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.prescription;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openlmis.dispensing.domain.patient.Patient;
+import org.openlmis.dispensing.domain.patient.Person;
+import org.openlmis.dispensing.domain.prescription.Prescription;
+import org.openlmis.dispensing.domain.prescription.PrescriptionLineItem;
+import org.openlmis.dispensing.domain.referencedata.OrderableReplica;
+import org.openlmis.dispensing.domain.status.PrescriptionStatus;
+import org.openlmis.dispensing.dto.prescription.PrescriptionDto;
+import org.openlmis.dispensing.dto.referencedata.OrderableDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(locations = {"classpath:application.properties", "classpath:test.properties"},
+    properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+public class PrescriptionSearchIntegrationTest {
+
+  private static final int PAGE_SIZE = 5;
+  private static final int LINE_ITEMS = 2;
+  private static final String ORDERABLE_NAME = "Paracetamol 500mg";
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private PrescriptionService prescriptionService;
+
+  private Statistics statistics;
+
+  @Before
+  public void setUp() {
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+  }
+
+  @Test
+  public void shouldSearchPageOfOneAndPageOfManyWithSameNumberOfStatements() {
+    UUID singleFacilityId = UUID.randomUUID();
+    UUID manyFacilityId = UUID.randomUUID();
+    persistPrescriptions(singleFacilityId, 1);
+    persistPrescriptions(manyFacilityId, PAGE_SIZE);
+
+    long singleStatements = countSearchStatements(singleFacilityId, 1);
+    long manyStatements = countSearchStatements(manyFacilityId, PAGE_SIZE);
+
+    assertEquals(singleStatements, manyStatements);
+  }
+
+  private long countSearchStatements(UUID facilityId, int expectedResults) {
+    entityManager.flush();
+    entityManager.clear();
+    statistics.clear();
+
+    Page<PrescriptionDto> page = prescriptionService.searchPrescriptionsV2(null, null, null,
+        null, facilityId, null, null, null, null, null, null, 0, PAGE_SIZE);
+
+    assertEquals(expectedResults, page.getContent().size());
+    page.getContent().forEach(dto -> {
+      assertEquals(LINE_ITEMS, dto.getLineItems().size());
+      // names are not in the read model yet, so they are resolved from the replicas
+      dto.getLineItems().forEach(lineItem ->
+          assertEquals(ORDERABLE_NAME, lineItem.getOrderablePrescribedName()));
+    });
+    return statistics.getPrepareStatementCount();
+  }
+
+  private void persistPrescriptions(UUID facilityId, int count) {
+    for (int i = 0; i < count; i++) {
+      Person person = new Person();
+      person.setFirstName("First" + i);
+      person.setLastName("Last" + i);
+
+      Patient patient = new Patient();
+      patient.setPatientNumber("SEARCH-" + UUID.randomUUID());
+      patient.setFacilityId(facilityId);
+      patient.setRegistrationDate(LocalDate.now());
+      patient.setPerson(person);
+      entityManager.persist(patient);
+
+      Prescription prescription = new Prescription();
+      prescription.setPatient(patient);
+      prescription.setFacilityId(facilityId);
+      prescription.setFacilityName("Facility");
+      prescription.setStatus(PrescriptionStatus.INITIATED);
+      prescription.setIsVoided(false);
+      prescription.setLineItems(new ArrayList<>());
+      for (int j = 0; j < LINE_ITEMS; j++) {
+        OrderableDto orderable = OrderableDto.builder()
+            .id(UUID.randomUUID())
+            .fullProductName(ORDERABLE_NAME)
+            .build();
+        entityManager.persist(OrderableReplica.of(orderable, ZonedDateTime.now()));
+
+        PrescriptionLineItem lineItem = new PrescriptionLineItem();
+        lineItem.setOrderablePrescribed(orderable.getId());
+        lineItem.setQuantityPrescribed(1);
+        lineItem.setPrescription(prescription);
+        prescription.getLineItems().add(lineItem);
+      }
+      entityManager.persist(prescription);
+    }
+  }
+}
@@ -29,6 +29,7 @@ import javax.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Where;
 import org.openlmis.dispensing.domain.BaseEntity;
 import org.openlmis.dispensing.domain.qualitychecks.Discrepancy;
 
@@ -37,6 +38,7 @@ import org.openlmis.dispensing.domain.qualitychecks.Discrepancy;
 @NoArgsConstructor
 @AllArgsConstructor
 @Table(name = "dispensing_event", schema = "dispensing")
+@Where(clause = "deleted = false")
 public class DispensingEvent extends BaseEntity {
     
   private UUID sourceId;
@@ -81,4 +83,8 @@ public class DispensingEvent extends BaseEntity {
   @JoinColumn(name = "dispensing_event_id") // foreign key in Discrepancy table
   private List<Discrepancy> discrepancies;
 
+  // deleted events are kept, and hidden from every JPA query by the @Where clause
+  @Column(nullable = false)
+  private boolean deleted;
+
 }
@@ -53,6 +53,8 @@ public class Prescription extends BaseEntity {
   private LocalDate lastUpdate;
   private Boolean isVoided;
   private UUID facilityId;
+  //read model: resolved from reference data on write, kept current by a background job
+  private String facilityName;
   private UUID prescribedByUserId;
   private UUID servedByUserId;
   @ManyToOne
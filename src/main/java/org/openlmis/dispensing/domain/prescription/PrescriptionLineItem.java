@@ -70,6 +70,11 @@ public class PrescriptionLineItem extends BaseEntity {
   private LocalDate collectBalanceDate;
   //private UUID programId;
 
+  //read model: resolved from reference data on write, kept current by a background job
+  private String orderablePrescribedName;
+  private String orderableDispensedName;
+  private String lotCode;
+
   @JsonIgnore
   @ManyToOne
   @JoinColumn(name = "prescription_id")
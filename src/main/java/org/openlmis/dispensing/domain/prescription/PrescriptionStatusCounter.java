@@ -0,0 +1,57 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.domain.prescription;
+
+import java.util.UUID;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.openlmis.dispensing.domain.BaseEntity;
+
+/**
+ * Number of non voided prescriptions (or prescription line items) of a facility that are
+ * currently in a given status. Maintained incrementally on every status transition.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "prescription_status_counters", schema = "dispensing",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"facilityId", "statusType", "status"}))
+public class PrescriptionStatusCounter extends BaseEntity {
+
+  public enum StatusType {
+    PRESCRIPTION,
+    LINE_ITEM
+  }
+
+  @Column(nullable = false)
+  private UUID facilityId;
+
+  @Column(nullable = false)
+  @Enumerated(EnumType.STRING)
+  private StatusType statusType;
+
+  @Column(nullable = false)
+  private String status;
+
+  @Column(nullable = false)
+  private Long total;
+}
@@ -17,6 +17,7 @@ package org.openlmis.dispensing.domain.qualitychecks;
 
 import java.util.UUID;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -40,7 +41,7 @@ public class Discrepancy extends BaseEntity {
   private String comments;
 
   // Many-to-one relationship with DispensingEvent
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "dispensing_event_id")
   private DispensingEvent pointOfDeliveryEvent;
 
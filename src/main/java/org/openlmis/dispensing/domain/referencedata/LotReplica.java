@@ -0,0 +1,109 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.domain.referencedata;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.UUID;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Type;
+import org.openlmis.dispensing.domain.BaseEntity;
+import org.openlmis.dispensing.dto.referencedata.LotDto;
+
+/**
+ * Local copy of a lot from referencedata, kept up to date by
+ * {@link org.openlmis.dispensing.service.referencedata.ReferenceDataReplicaService}.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "lot_replicas", schema = "dispensing")
+public class LotReplica extends BaseEntity {
+
+  private String lotCode;
+
+  private boolean active;
+
+  @Type(type = PG_UUID)
+  private UUID tradeItemId;
+
+  private LocalDate expirationDate;
+
+  private LocalDate manufactureDate;
+
+  @Column(nullable = false)
+  private ZonedDateTime syncedAt;
+
+  /**
+   * Creates a replica of the given lot.
+   *
+   * @param lot      lot from referencedata.
+   * @param syncedAt time of the synchronization.
+   * @return new replica.
+   */
+  public static LotReplica of(LotDto lot, ZonedDateTime syncedAt) {
+    LotReplica replica = new LotReplica();
+    replica.setId(lot.getId());
+    replica.updateFrom(lot, syncedAt);
+    return replica;
+  }
+
+  /**
+   * Copies the fields of the given lot.
+   *
+   * @param lot      lot from referencedata.
+   * @param syncedAt time of the synchronization.
+   */
+  public void updateFrom(LotDto lot, ZonedDateTime syncedAt) {
+    this.lotCode = lot.getLotCode();
+    this.active = lot.isActive();
+    this.tradeItemId = lot.getTradeItemId();
+    this.expirationDate = lot.getExpirationDate();
+    this.manufactureDate = lot.getManufactureDate();
+    this.syncedAt = syncedAt;
+  }
+
+  /**
+   * Checks whether this replica holds the same fields as the given lot. Lots carry no version,
+   * so the fields are compared.
+   *
+   * @param lot lot from referencedata.
+   * @return true if nothing changed.
+   */
+  public boolean isUpToDateWith(LotDto lot) {
+    return Objects.equals(lotCode, lot.getLotCode())
+        && active == lot.isActive()
+        && Objects.equals(tradeItemId, lot.getTradeItemId())
+        && Objects.equals(expirationDate, lot.getExpirationDate())
+        && Objects.equals(manufactureDate, lot.getManufactureDate());
+  }
+
+  /**
+   * Converts this replica to {@link LotDto}.
+   *
+   * @return lot dto.
+   */
+  public LotDto toDto() {
+    return new LotDto(id, lotCode, active, tradeItemId, expirationDate, manufactureDate);
+  }
+}
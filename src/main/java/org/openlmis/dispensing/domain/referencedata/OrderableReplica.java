@@ -0,0 +1,142 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.domain.referencedata;
+
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.JoinColumn;
+import javax.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.Type;
+import org.openlmis.dispensing.domain.BaseEntity;
+import org.openlmis.dispensing.dto.referencedata.MetaDataDto;
+import org.openlmis.dispensing.dto.referencedata.OrderableDto;
+import org.openlmis.dispensing.dto.referencedata.ProgramOrderableDto;
+
+/**
+ * Local copy of the orderable fields dispensing needs from referencedata, kept up to date by
+ * {@link org.openlmis.dispensing.service.referencedata.ReferenceDataReplicaService}.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "orderable_replicas", schema = "dispensing")
+public class OrderableReplica extends BaseEntity {
+
+  private String productCode;
+
+  private String fullProductName;
+
+  // programs of all replicas read together are loaded with one query, not one per replica
+  @ElementCollection(fetch = FetchType.EAGER)
+  @Fetch(FetchMode.SUBSELECT)
+  @CollectionTable(name = "orderable_replica_programs", schema = "dispensing",
+      joinColumns = @JoinColumn(name = "orderableId"))
+  @Column(name = "programId", nullable = false)
+  @Type(type = PG_UUID)
+  private Set<UUID> programIds = new HashSet<>();
+
+  private Long versionNumber;
+
+  private ZonedDateTime lastUpdated;
+
+  @Column(nullable = false)
+  private ZonedDateTime syncedAt;
+
+  /**
+   * Creates a replica of the given orderable.
+   *
+   * @param orderable orderable from referencedata.
+   * @param syncedAt  time of the synchronization.
+   * @return new replica.
+   */
+  public static OrderableReplica of(OrderableDto orderable, ZonedDateTime syncedAt) {
+    OrderableReplica replica = new OrderableReplica();
+    replica.setId(orderable.getId());
+    replica.updateFrom(orderable, syncedAt);
+    return replica;
+  }
+
+  /**
+   * Copies the fields of the given orderable.
+   *
+   * @param orderable orderable from referencedata.
+   * @param syncedAt  time of the synchronization.
+   */
+  public void updateFrom(OrderableDto orderable, ZonedDateTime syncedAt) {
+    this.productCode = orderable.getProductCode();
+    this.fullProductName = orderable.getFullProductName();
+    this.programIds = null == orderable.getPrograms()
+        ? new HashSet<>()
+        : orderable.getPrograms().stream()
+            .map(ProgramOrderableDto::getProgramId)
+            .collect(Collectors.toSet());
+    this.versionNumber = null == orderable.getMeta() ? null : orderable.getMeta().getVersionNumber();
+    this.lastUpdated = null == orderable.getMeta() ? null : orderable.getMeta().getLastUpdated();
+    this.syncedAt = syncedAt;
+  }
+
+  /**
+   * Checks whether this replica already holds the given version of the orderable.
+   *
+   * @param orderable orderable from referencedata.
+   * @return true if version and last update match.
+   */
+  public boolean isUpToDateWith(OrderableDto orderable) {
+    MetaDataDto meta = orderable.getMeta();
+    return null != meta && null != meta.getVersionNumber()
+        && Objects.equals(versionNumber, meta.getVersionNumber())
+        && null != lastUpdated && null != meta.getLastUpdated()
+        && lastUpdated.isEqual(meta.getLastUpdated());
+  }
+
+  /**
+   * Converts this replica to the fields of {@link OrderableDto} it holds.
+   *
+   * @return orderable dto.
+   */
+  public OrderableDto toDto() {
+    Set<ProgramOrderableDto> programs = programIds.stream()
+        .map(programId -> {
+          ProgramOrderableDto program = new ProgramOrderableDto();
+          program.setProgramId(programId);
+          return program;
+        })
+        .collect(Collectors.toSet());
+
+    return OrderableDto.builder()
+        .id(id)
+        .productCode(productCode)
+        .fullProductName(fullProductName)
+        .programs(programs)
+        .meta(new MetaDataDto(versionNumber, lastUpdated))
+        .build();
+  }
+}
@@ -100,7 +100,7 @@ public class DispensingEventDto {
         cartonsQuantityShipped, cartonsQuantityAccepted, cartonsQuantityRejected,
         containersQuantityOnWaybill, containersQuantityShipped, 
         containersQuantityAccepted, containersQuantityRejected,
-        remarks, discrepancies());
+        remarks, discrepancies(), false);
     return pointOfDeliveryEvent;
   }
 
@@ -0,0 +1,84 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.dto.prescription;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.openlmis.dispensing.domain.status.PrescriptionLineItemStatus;
+import org.openlmis.dispensing.domain.status.PrescriptionStatus;
+
+/**
+ * Light row of the pharmacist due list. Built directly by the repository query so that no
+ * prescription graph or reference data has to be loaded to render the list.
+ */
+@Data
+@NoArgsConstructor
+public class DueListItemDto {
+
+  public enum Type {
+    FOLLOW_UP,
+    COLLECT_BALANCE
+  }
+
+  private Type type;
+  private LocalDate dueDate;
+  private UUID prescriptionId;
+  private UUID lineItemId;
+  private UUID patientId;
+  private String patientNumber;
+  private String patientFirstName;
+  private String patientLastName;
+  private UUID orderableId;
+  private Integer remainingBalance;
+  private String status;
+
+  /**
+   * Creates a follow up row. Used by the JPQL constructor expression.
+   */
+  public DueListItemDto(UUID prescriptionId, UUID patientId, String patientNumber,
+      String patientFirstName, String patientLastName, LocalDate dueDate,
+      PrescriptionStatus status) {
+    this.type = Type.FOLLOW_UP;
+    this.prescriptionId = prescriptionId;
+    this.patientId = patientId;
+    this.patientNumber = patientNumber;
+    this.patientFirstName = patientFirstName;
+    this.patientLastName = patientLastName;
+    this.dueDate = dueDate;
+    this.status = status != null ? status.name() : null;
+  }
+
+  /**
+   * Creates a collect balance row. Used by the JPQL constructor expression.
+   */
+  public DueListItemDto(UUID prescriptionId, UUID lineItemId, UUID patientId,
+      String patientNumber, String patientFirstName, String patientLastName, LocalDate dueDate,
+      PrescriptionLineItemStatus status, UUID orderableId, Integer remainingBalance) {
+    this.type = Type.COLLECT_BALANCE;
+    this.prescriptionId = prescriptionId;
+    this.lineItemId = lineItemId;
+    this.patientId = patientId;
+    this.patientNumber = patientNumber;
+    this.patientFirstName = patientFirstName;
+    this.patientLastName = patientLastName;
+    this.dueDate = dueDate;
+    this.status = status != null ? status.name() : null;
+    this.orderableId = orderableId;
+    this.remainingBalance = remainingBalance;
+  }
+}
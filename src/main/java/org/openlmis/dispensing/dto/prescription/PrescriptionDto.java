@@ -49,6 +49,8 @@ public class PrescriptionDto {
   private UUID prescribedByUserId;
   private UUID servedByUserId;
   private List<PrescriptionLineItemDto> lineItems;
+  //optional note stored with the status change caused by this request
+  private String statusMessage;
 
   //additional fields - ui asked that we resolve these - to remove
   private String patientFirstName;
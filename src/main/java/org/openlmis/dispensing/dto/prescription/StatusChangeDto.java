@@ -0,0 +1,49 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.dto.prescription;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.openlmis.dispensing.domain.status.PrescriptionStatus;
+import org.openlmis.dispensing.domain.status.StatusChange;
+import org.openlmis.dispensing.domain.status.StatusMessage;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class StatusChangeDto implements StatusChange.Exporter {
+  private ZonedDateTime createdDate;
+  private PrescriptionStatus status;
+  private UUID authorId;
+  private String statusMessage;
+
+  @Override
+  public void setStatusMessage(StatusMessage statusMessage) {
+    this.statusMessage = statusMessage != null ? statusMessage.getBody() : null;
+  }
+
+  /**
+   * Creates new instance based on domain object.
+   */
+  public static StatusChangeDto newInstance(StatusChange statusChange) {
+    StatusChangeDto dto = new StatusChangeDto();
+    statusChange.export(dto);
+    return dto;
+  }
+}
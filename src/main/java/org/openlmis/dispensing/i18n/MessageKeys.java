@@ -27,6 +27,9 @@ public abstract class MessageKeys {
       SERVICE_PREFIX + ".email.nearExpiry.subject";
   public static final String NOTIFICATION_NEAR_EXPIRY_CONTENT =
       SERVICE_PREFIX + ".email.nearExpiry.content";
+  //prescription status messages
+  public static final String PRESCRIPTION_STATUS_MESSAGE_VOIDED =
+      SERVICE_PREFIX + ".prescription.statusMessage.voided";
   //server errors
   public static final String SERVER_ERROR_SHALLOW_COPY
       = SERVICE_PREFIX + ".error.shallowCopy";
@@ -250,6 +253,28 @@ public abstract class MessageKeys {
   public static final String ERROR_SIZE_NOT_POSITIVE
           = ERROR_PREFIX + ".pageable.size.notPositive";
 
+  private static final String POD_EVENT_ERROR_PREFIX = ERROR_PREFIX + ".podEvent";
+  public static final String ERROR_POD_EVENT_BATCH_EMPTY =
+      POD_EVENT_ERROR_PREFIX + ".batch.empty";
+  public static final String ERROR_POD_EVENT_BATCH_TOO_LARGE =
+      POD_EVENT_ERROR_PREFIX + ".batch.tooLarge";
+  public static final String ERROR_POD_EVENT_PACKING_DATE_MISSING =
+      POD_EVENT_ERROR_PREFIX + ".packingDate.missing";
+  public static final String ERROR_POD_EVENT_DESTINATION_MISSING =
+      POD_EVENT_ERROR_PREFIX + ".destination.missing";
+  public static final String ERROR_POD_EVENT_QUANTITY_NEGATIVE =
+      POD_EVENT_ERROR_PREFIX + ".quantity.negative";
+  public static final String ERROR_POD_EVENT_REJECTION_REASON_MISSING =
+      POD_EVENT_ERROR_PREFIX + ".discrepancy.rejectionReason.missing";
+  public static final String ERROR_POD_EVENT_DISCREPANCY_NOT_FOUND =
+      POD_EVENT_ERROR_PREFIX + ".discrepancy.notFound";
+  public static final String ERROR_POD_EVENT_PATCH_FIELD_INVALID =
+      POD_EVENT_ERROR_PREFIX + ".patch.field.invalid";
+  public static final String ERROR_POD_EVENT_PATCH_VALUE_INVALID =
+      POD_EVENT_ERROR_PREFIX + ".patch.value.invalid";
+  public static final String ERROR_POD_EVENT_REFERENCE_NUMBER_MISSING =
+      POD_EVENT_ERROR_PREFIX + ".referenceNumber.missing";
+
   private MessageKeys() {
     throw new UnsupportedOperationException();
   }
@@ -0,0 +1,48 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.repository;
+
+import static org.openlmis.dispensing.repository.DispensingEventsRepository.DISCREPANCY_COLUMNS;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.QueryHint;
+import org.openlmis.dispensing.domain.qualitychecks.Discrepancy;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+public interface DiscrepancyRepository extends JpaRepository<Discrepancy, UUID> {
+
+  @Query("SELECT d FROM Discrepancy d WHERE d.pointOfDeliveryEvent.id IN :eventIds")
+  List<Discrepancy> findByPointOfDeliveryEventIdIn(@Param("eventIds") Collection<UUID> eventIds);
+
+  /**
+   * Finds discrepancies of the given events among both live and archived discrepancies. The
+   * result is loaded read-only, so changes to it are never flushed.
+   */
+  @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
+  @Query(value = "SELECT " + DISCREPANCY_COLUMNS + " FROM dispensing.dispensing_event_discrepencies"
+      + " WHERE dispensingeventid IN (:eventIds)"
+      + " UNION ALL SELECT " + DISCREPANCY_COLUMNS
+      + " FROM dispensing.dispensing_event_discrepencies_archive"
+      + " WHERE dispensingeventid IN (:eventIds)",
+      nativeQuery = true)
+  List<Discrepancy> findIncludingArchiveByEventIdIn(
+      @Param("eventIds") Collection<String> eventIds);
+}
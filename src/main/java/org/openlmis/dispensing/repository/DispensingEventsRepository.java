@@ -15,13 +15,80 @@
 
 package org.openlmis.dispensing.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import org.openlmis.dispensing.domain.event.DispensingEvent;
-import org.springframework.data.repository.PagingAndSortingRepository;
+import org.openlmis.dispensing.dto.DispensingEventMonthlySummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-public interface DispensingEventsRepository extends
-        PagingAndSortingRepository<DispensingEvent, UUID> {
+public interface DispensingEventsRepository extends JpaRepository<DispensingEvent, UUID>,
+    JpaSpecificationExecutor<DispensingEvent>, DispensingEventsRepositoryCustom {
+  String EVENT_COLUMNS = "id, sourceid, sourcefreetext, destinationid, destinationfreetext,"
+      + " receivedbyuserid, receivedbyusernames, receivingdate, referencenumber, packingdate,"
+      + " packedby, cartonsquantityonwaybill, cartonsquantityshipped, cartonsquantityaccepted,"
+      + " cartonsquantityrejected, containersquantityonwaybill, containersquantityshipped,"
+      + " containersquantityaccepted, containersquantityrejected, remarks, deleted";
+  String DISCREPANCY_COLUMNS =
+      "id, rejectionreasonid, shipmenttype, quantityaffected, comments, dispensingeventid";
+  String SUMMARY_SELECT = "SELECT destinationid, receivingdate, cartonsquantityaccepted,"
+      + " cartonsquantityrejected, containersquantityaccepted, containersquantityrejected FROM ";
+  String SUMMARY_WHERE = " WHERE NOT deleted AND destinationid IN (:destinationIds)"
+      + " AND receivingdate >= :from AND receivingdate < :to";
+
   List<DispensingEvent> findByDestinationId(@Param("destinationId") UUID destinationId);
+
+  @Query(value = "SELECT e.destinationid AS destinationId,"
+      + " to_char(date_trunc('month', e.receivingdate), 'YYYY-MM') AS month,"
+      + " COUNT(*) AS eventCount,"
+      + " COALESCE(SUM(e.cartonsquantityaccepted), 0) AS cartonsQuantityAccepted,"
+      + " COALESCE(SUM(e.cartonsquantityrejected), 0) AS cartonsQuantityRejected,"
+      + " COALESCE(SUM(e.containersquantityaccepted), 0) AS containersQuantityAccepted,"
+      + " COALESCE(SUM(e.containersquantityrejected), 0) AS containersQuantityRejected"
+      + " FROM (" + SUMMARY_SELECT + "dispensing.dispensing_event" + SUMMARY_WHERE
+      + " UNION ALL " + SUMMARY_SELECT + "dispensing.dispensing_event_archive" + SUMMARY_WHERE
+      + ") e"
+      + " GROUP BY e.destinationid, date_trunc('month', e.receivingdate)"
+      + " ORDER BY e.destinationid, date_trunc('month', e.receivingdate)",
+      nativeQuery = true)
+  List<DispensingEventMonthlySummary> summarizeByMonth(
+      @Param("destinationIds") Collection<String> destinationIds,
+      @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+  @Query(value = "SELECT CAST(id AS varchar) FROM dispensing.dispensing_event"
+      + " WHERE receivingdate < :cutoff ORDER BY receivingdate LIMIT :limit",
+      nativeQuery = true)
+  List<String> findIdsReceivedBefore(@Param("cutoff") LocalDateTime cutoff,
+      @Param("limit") int limit);
+
+  @Modifying
+  @Query(value = "INSERT INTO dispensing.dispensing_event_archive (" + EVENT_COLUMNS + ")"
+      + " SELECT " + EVENT_COLUMNS + " FROM dispensing.dispensing_event WHERE id IN (:ids)"
+      + " ON CONFLICT (id) DO NOTHING",
+      nativeQuery = true)
+  int copyToArchive(@Param("ids") Collection<String> ids);
+
+  @Modifying
+  @Query(value = "INSERT INTO dispensing.dispensing_event_discrepencies_archive ("
+      + DISCREPANCY_COLUMNS + ") SELECT " + DISCREPANCY_COLUMNS
+      + " FROM dispensing.dispensing_event_discrepencies WHERE dispensingeventid IN (:ids)"
+      + " ON CONFLICT (id) DO NOTHING",
+      nativeQuery = true)
+  int copyDiscrepanciesToArchive(@Param("ids") Collection<String> ids);
+
+  @Modifying
+  @Query(value = "DELETE FROM dispensing.dispensing_event_discrepencies"
+      + " WHERE dispensingeventid IN (:ids)",
+      nativeQuery = true)
+  int deleteArchivedDiscrepancies(@Param("ids") Collection<String> ids);
+
+  @Modifying
+  @Query(value = "DELETE FROM dispensing.dispensing_event WHERE id IN (:ids)",
+      nativeQuery = true)
+  int deleteArchived(@Param("ids") Collection<String> ids);
 }
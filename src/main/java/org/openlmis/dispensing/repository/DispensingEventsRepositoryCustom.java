@@ -0,0 +1,55 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import org.openlmis.dispensing.domain.event.DispensingEvent;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface DispensingEventsRepositoryCustom {
+
+  /**
+   * Updates only the given columns of one dispensing event, in a single UPDATE statement that
+   * does not load the event or its discrepancies. Entities already loaded in the current
+   * persistence context are not refreshed.
+   *
+   * @param id     id of the event.
+   * @param values new values by entity attribute name, null values clear the column.
+   * @return number of updated rows, 0 if there is no event with the id.
+   */
+  int updateAttributes(UUID id, Map<String, Object> values);
+
+  /**
+   * Finds a page of events of a destination among both live and archived events. Deleted
+   * events are left out. Archived events are mapped onto DispensingEvent and loaded read-only,
+   * so changes to them are never flushed.
+   *
+   * @param destinationId  destination id.
+   * @param receivedFrom   first receiving time (inclusive), optional.
+   * @param receivedBefore receiving time bound (exclusive), optional.
+   * @param packedFrom     first packing date (inclusive), optional.
+   * @param packedTo       last packing date (inclusive), optional.
+   * @param pageable       page and sort; receivingDate, packingDate, referenceNumber and id can
+   *                       be sorted on.
+   * @return page of events.
+   */
+  Page<DispensingEvent> findAllIncludingArchive(UUID destinationId, LocalDateTime receivedFrom,
+      LocalDateTime receivedBefore, LocalDate packedFrom, LocalDate packedTo, Pageable pageable);
+}
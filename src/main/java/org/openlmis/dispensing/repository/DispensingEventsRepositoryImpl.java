@@ -0,0 +1,143 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.repository;
+
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_INVALID_PARAMS;
+import static org.openlmis.dispensing.repository.DispensingEventsRepository.EVENT_COLUMNS;
+
+import com.google.common.collect.ImmutableMap;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import org.hibernate.jpa.QueryHints;
+import org.openlmis.dispensing.domain.event.DispensingEvent;
+import org.openlmis.dispensing.exception.ValidationMessageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+
+public class DispensingEventsRepositoryImpl implements DispensingEventsRepositoryCustom {
+
+  private static final String ID = "id";
+  private static final String DELETED = "deleted";
+  private static final Map<String, String> SORTABLE_COLUMNS = ImmutableMap.of(
+      "receivingDate", "receivingdate",
+      "packingDate", "packingdate",
+      "referenceNumber", "referencenumber",
+      ID, ID);
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public int updateAttributes(UUID id, Map<String, Object> values) {
+    if (values.isEmpty()) {
+      return 0;
+    }
+
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaUpdate<DispensingEvent> update = builder.createCriteriaUpdate(DispensingEvent.class);
+    Root<DispensingEvent> root = update.from(DispensingEvent.class);
+
+    values.forEach((attribute, value) -> set(builder, update, root.get(attribute), value));
+    update.where(builder.equal(root.get(ID), id), builder.isFalse(root.<Boolean>get(DELETED)));
+
+    return entityManager.createQuery(update).executeUpdate();
+  }
+
+  @Override
+  public Page<DispensingEvent> findAllIncludingArchive(UUID destinationId,
+      LocalDateTime receivedFrom, LocalDateTime receivedBefore, LocalDate packedFrom,
+      LocalDate packedTo, Pageable pageable) {
+    Map<String, Object> parameters = new HashMap<>();
+    StringBuilder where = new StringBuilder(" WHERE NOT deleted AND destinationid = :destinationId");
+    parameters.put("destinationId", destinationId.toString());
+    if (receivedFrom != null) {
+      where.append(" AND receivingdate >= :receivedFrom");
+      parameters.put("receivedFrom", receivedFrom);
+    }
+    if (receivedBefore != null) {
+      where.append(" AND receivingdate < :receivedBefore");
+      parameters.put("receivedBefore", receivedBefore);
+    }
+    if (packedFrom != null) {
+      where.append(" AND packingdate >= :packedFrom");
+      parameters.put("packedFrom", packedFrom.atStartOfDay());
+    }
+    if (packedTo != null) {
+      where.append(" AND packingdate <= :packedTo");
+      parameters.put("packedTo", packedTo.atStartOfDay());
+    }
+
+    String union = "SELECT " + EVENT_COLUMNS + " FROM dispensing.dispensing_event" + where
+        + " UNION ALL SELECT " + EVENT_COLUMNS + " FROM dispensing.dispensing_event_archive"
+        + where;
+
+    Query query = entityManager.createNativeQuery(
+        "SELECT * FROM (" + union + ") e" + orderBy(pageable.getSort()), DispensingEvent.class);
+    // archived rows are mapped onto the live entity; loading them read-only keeps a later flush
+    // from ever writing them to the live table
+    query.setHint(QueryHints.HINT_READONLY, true);
+    parameters.forEach(query::setParameter);
+    if (pageable.isPaged()) {
+      query.setFirstResult((int) pageable.getOffset());
+      query.setMaxResults(pageable.getPageSize());
+    }
+
+    @SuppressWarnings("unchecked")
+    List<DispensingEvent> content = query.getResultList();
+
+    return PageableExecutionUtils.getPage(content, pageable, () -> {
+      Query count = entityManager.createNativeQuery("SELECT COUNT(*) FROM (" + union + ") e");
+      parameters.forEach(count::setParameter);
+      return ((Number) count.getSingleResult()).longValue();
+    });
+  }
+
+  private String orderBy(Sort sort) {
+    StringBuilder orderBy = new StringBuilder(" ORDER BY ");
+    for (Sort.Order order : sort) {
+      String column = SORTABLE_COLUMNS.get(order.getProperty());
+      if (column == null) {
+        throw new ValidationMessageException(ERROR_INVALID_PARAMS);
+      }
+      orderBy.append(column).append(order.isAscending() ? " ASC, " : " DESC, ");
+    }
+    // always order by id last, otherwise rows may move between pages
+    return orderBy.append(ID).toString();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> void set(CriteriaBuilder builder, CriteriaUpdate<DispensingEvent> update,
+      Path<T> path, Object value) {
+    if (value == null) {
+      update.set(path, builder.nullLiteral((Class<T>) path.getJavaType()));
+    } else {
+      update.set(path, (T) value);
+    }
+  }
+}
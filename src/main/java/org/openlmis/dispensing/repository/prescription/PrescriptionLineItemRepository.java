@@ -0,0 +1,57 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.repository.prescription;
+
+import java.util.Set;
+import java.util.UUID;
+import org.openlmis.dispensing.domain.prescription.PrescriptionLineItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface PrescriptionLineItemRepository extends JpaRepository<PrescriptionLineItem, UUID> {
+
+  @Query("SELECT DISTINCT li.orderablePrescribed FROM PrescriptionLineItem li"
+      + " WHERE li.orderablePrescribed IS NOT NULL")
+  Set<UUID> findDistinctOrderablePrescribedIds();
+
+  @Query("SELECT DISTINCT li.orderableDispensed FROM PrescriptionLineItem li"
+      + " WHERE li.orderableDispensed IS NOT NULL")
+  Set<UUID> findDistinctOrderableDispensedIds();
+
+  @Query("SELECT DISTINCT li.lotId FROM PrescriptionLineItem li WHERE li.lotId IS NOT NULL")
+  Set<UUID> findDistinctLotIds();
+
+  @Modifying
+  @Query("UPDATE PrescriptionLineItem li SET li.orderablePrescribedName = :name"
+      + " WHERE li.orderablePrescribed = :orderableId"
+      + " AND (li.orderablePrescribedName IS NULL OR li.orderablePrescribedName <> :name)")
+  int updateOrderablePrescribedName(@Param("orderableId") UUID orderableId,
+      @Param("name") String name);
+
+  @Modifying
+  @Query("UPDATE PrescriptionLineItem li SET li.orderableDispensedName = :name"
+      + " WHERE li.orderableDispensed = :orderableId"
+      + " AND (li.orderableDispensedName IS NULL OR li.orderableDispensedName <> :name)")
+  int updateOrderableDispensedName(@Param("orderableId") UUID orderableId,
+      @Param("name") String name);
+
+  @Modifying
+  @Query("UPDATE PrescriptionLineItem li SET li.lotCode = :lotCode"
+      + " WHERE li.lotId = :lotId AND (li.lotCode IS NULL OR li.lotCode <> :lotCode)")
+  int updateLotCode(@Param("lotId") UUID lotId, @Param("lotCode") String lotCode);
+}
@@ -15,11 +15,80 @@
 
 package org.openlmis.dispensing.repository.prescription;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import javax.persistence.LockModeType;
 import org.openlmis.dispensing.domain.prescription.Prescription;
+import org.openlmis.dispensing.domain.status.PrescriptionLineItemStatus;
+import org.openlmis.dispensing.dto.prescription.DueListItemDto;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface PrescriptionRepository extends JpaRepository<Prescription, UUID>,
-    JpaSpecificationExecutor<Prescription> {
+    JpaSpecificationExecutor<Prescription>, PrescriptionRepositoryCustom {
+
+  /**
+   * Finds a prescription and locks its row until the end of the transaction, so concurrent
+   * updates of the same prescription (and of its status counters) run one after another.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT p FROM Prescription p WHERE p.id = :id")
+  Optional<Prescription> findForUpdateById(@Param("id") UUID id);
+
+  @Query("SELECT DISTINCT p FROM Prescription p"
+      + " LEFT JOIN FETCH p.patient pt LEFT JOIN FETCH pt.person"
+      + " LEFT JOIN FETCH p.lineItems"
+      + " WHERE p.id IN :ids")
+  List<Prescription> findAllWithDetailsByIdIn(@Param("ids") Collection<UUID> ids);
+
+  @Query(value = "SELECT new org.openlmis.dispensing.dto.prescription.DueListItemDto("
+      + " p.id, pt.id, pt.patientNumber, pe.firstName, pe.lastName, p.followUpDate, p.status)"
+      + " FROM Prescription p JOIN p.patient pt JOIN pt.person pe"
+      + " WHERE p.facilityId = :facilityId"
+      + " AND p.followUpDate BETWEEN :from AND :to"
+      + " AND (p.isVoided IS NULL OR p.isVoided = false)"
+      + " ORDER BY p.followUpDate, p.id",
+      countQuery = "SELECT COUNT(p) FROM Prescription p JOIN p.patient pt JOIN pt.person pe"
+      + " WHERE p.facilityId = :facilityId"
+      + " AND p.followUpDate BETWEEN :from AND :to"
+      + " AND (p.isVoided IS NULL OR p.isVoided = false)")
+  Page<DueListItemDto> findFollowUpsDue(@Param("facilityId") UUID facilityId,
+      @Param("from") LocalDate from, @Param("to") LocalDate to, Pageable pageable);
+
+  @Query(value = "SELECT new org.openlmis.dispensing.dto.prescription.DueListItemDto("
+      + " p.id, li.id, pt.id, pt.patientNumber, pe.firstName, pe.lastName,"
+      + " li.collectBalanceDate, li.status, li.orderableDispensed, li.remainingBalance)"
+      + " FROM PrescriptionLineItem li JOIN li.prescription p JOIN p.patient pt JOIN pt.person pe"
+      + " WHERE li.collectBalanceDate BETWEEN :from AND :to"
+      + " AND li.status IN :statuses"
+      + " AND p.facilityId = :facilityId"
+      + " AND (p.isVoided IS NULL OR p.isVoided = false)"
+      + " ORDER BY li.collectBalanceDate, li.id",
+      countQuery = "SELECT COUNT(li) FROM PrescriptionLineItem li JOIN li.prescription p"
+      + " JOIN p.patient pt JOIN pt.person pe"
+      + " WHERE li.collectBalanceDate BETWEEN :from AND :to"
+      + " AND li.status IN :statuses"
+      + " AND p.facilityId = :facilityId"
+      + " AND (p.isVoided IS NULL OR p.isVoided = false)")
+  Page<DueListItemDto> findBalanceCollectionsDue(@Param("facilityId") UUID facilityId,
+      @Param("from") LocalDate from, @Param("to") LocalDate to,
+      @Param("statuses") Collection<PrescriptionLineItemStatus> statuses, Pageable pageable);
+
+  @Query("SELECT DISTINCT p.facilityId FROM Prescription p WHERE p.facilityId IS NOT NULL")
+  Set<UUID> findDistinctFacilityIds();
+
+  @Modifying
+  @Query("UPDATE Prescription p SET p.facilityName = :name WHERE p.facilityId = :facilityId"
+      + " AND (p.facilityName IS NULL OR p.facilityName <> :name)")
+  int updateFacilityName(@Param("facilityId") UUID facilityId, @Param("name") String name);
 }
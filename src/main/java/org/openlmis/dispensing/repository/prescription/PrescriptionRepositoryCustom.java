@@ -0,0 +1,46 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.repository.prescription;
+
+import java.util.UUID;
+import org.openlmis.dispensing.domain.prescription.Prescription;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface PrescriptionRepositoryCustom {
+
+  /**
+   * Finds a page of ids of prescriptions matching the specification. Used as the first step of
+   * a paged search, so that the page can be applied in SQL before collections are fetch joined.
+   *
+   * @param spec     search criteria.
+   * @param pageable page to return.
+   * @return page of prescription ids.
+   */
+  Page<UUID> findIds(Specification<Prescription> spec, Pageable pageable);
+
+  /**
+   * Reloads a prescription, with its line items, from the database and locks its row until the
+   * end of the transaction. Unlike {@code findForUpdateById}, the state read before the lock was
+   * taken is replaced by what is stored, so a prescription loaded earlier in the same
+   * transaction can be locked without working on a stale copy.
+   *
+   * @param prescription prescription loaded in the current transaction.
+   * @return the same prescription, refreshed.
+   */
+  Prescription refreshForUpdate(Prescription prescription);
+}
@@ -0,0 +1,89 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.repository.prescription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.openlmis.dispensing.domain.prescription.Prescription;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+
+public class PrescriptionRepositoryImpl implements PrescriptionRepositoryCustom {
+
+  private static final String ID = "id";
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public Page<UUID> findIds(Specification<Prescription> spec, Pageable pageable) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+
+    CriteriaQuery<UUID> query = builder.createQuery(UUID.class);
+    Root<Prescription> root = query.from(Prescription.class);
+    Predicate predicate = spec.toPredicate(root, query, builder);
+    if (predicate != null) {
+      query.where(predicate);
+    }
+
+    // always order by id last, otherwise rows may move between pages
+    List<Order> orders = new ArrayList<>(QueryUtils.toOrders(pageable.getSort(), root, builder));
+    orders.add(builder.asc(root.get(ID)));
+    query.select(root.<UUID>get(ID)).orderBy(orders);
+
+    TypedQuery<UUID> typedQuery = entityManager.createQuery(query);
+    if (pageable.isPaged()) {
+      typedQuery.setFirstResult((int) pageable.getOffset());
+      typedQuery.setMaxResults(pageable.getPageSize());
+    }
+
+    return PageableExecutionUtils.getPage(typedQuery.getResultList(), pageable,
+        () -> count(spec));
+  }
+
+  @Override
+  public Prescription refreshForUpdate(Prescription prescription) {
+    entityManager.refresh(prescription, LockModeType.PESSIMISTIC_WRITE);
+    return prescription;
+  }
+
+  private long count(Specification<Prescription> spec) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+
+    CriteriaQuery<Long> query = builder.createQuery(Long.class);
+    Root<Prescription> root = query.from(Prescription.class);
+    Predicate predicate = spec.toPredicate(root, query, builder);
+    if (predicate != null) {
+      query.where(predicate);
+    }
+    query.select(builder.count(root));
+
+    return entityManager.createQuery(query).getSingleResult();
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.repository.prescription;
+
+import java.util.List;
+import java.util.UUID;
+import org.openlmis.dispensing.domain.prescription.PrescriptionStatusCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface PrescriptionStatusCounterRepository
+    extends JpaRepository<PrescriptionStatusCounter, UUID> {
+
+  List<PrescriptionStatusCounter> findByFacilityId(UUID facilityId);
+
+  /**
+   * Atomically adds the delta to a counter, creating it when missing. Concurrent transitions of
+   * the same facility only lock the single counter row they touch.
+   */
+  @Modifying
+  @Query(value = "INSERT INTO dispensing.prescription_status_counters"
+      + " (id, facilityid, statustype, status, total)"
+      + " VALUES (CAST(:id AS uuid), CAST(:facilityId AS uuid), :statusType, :status, :delta)"
+      + " ON CONFLICT (facilityid, statustype, status)"
+      + " DO UPDATE SET total = prescription_status_counters.total + EXCLUDED.total",
+      nativeQuery = true)
+  void increment(@Param("id") String id, @Param("facilityId") String facilityId,
+      @Param("statusType") String statusType, @Param("status") String status,
+      @Param("delta") long delta);
+}
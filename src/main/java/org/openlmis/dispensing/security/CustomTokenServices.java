@@ -15,27 +15,132 @@
 
 package org.openlmis.dispensing.security;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
 import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
 import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
 import org.springframework.security.oauth2.provider.token.RemoteTokenServices;
 
+/**
+ * Checks tokens against the auth service, retrying invalid results a few times. Results can
+ * be cached locally by token hash (see {@link #setTokenCache(long, long, long)}): a valid
+ * token is remembered until its expiry, capped by a maximum time to live, and an invalid
+ * token for a short time, so most requests need no call to the auth service.
+ */
 public class CustomTokenServices extends RemoteTokenServices {
+  private static final String EXPIRY = "exp";
+  private static final String METRIC_PREFIX = "dispensing.auth.";
+
+  private final ThreadLocal<Long> lastExpiry = new ThreadLocal<>();
 
   private int invalidTokenRetryLimit;
+  private Clock clock = Clock.systemUTC();
+  private Cache<String, CachedAuthentication> validTokens;
+  private Cache<String, Boolean> invalidTokens;
+  private long maxTtlMillis;
+
+  private Counter cacheHits;
+  private Counter cacheMisses;
+  private Counter negativeCacheHits;
+  private Timer checkTokenTimer;
 
+  /**
+   * Creates token services without a local token cache.
+   *
+   * @param invalidTokenRetryLimit how many times an invalid token result is re-checked.
+   */
   public CustomTokenServices(int invalidTokenRetryLimit) {
     super();
     this.invalidTokenRetryLimit = invalidTokenRetryLimit;
+    setAccessTokenConverter(new DefaultAccessTokenConverter());
+    setTokenCache(0, 0, 0);
+    setMeterRegistry(Metrics.globalRegistry);
+  }
+
+  /**
+   * Configures the local cache of check_token results.
+   *
+   * @param maxSize            maximum number of cached tokens, 0 disables caching.
+   * @param maxTtlSeconds      longest time a valid token is trusted without re-checking.
+   * @param negativeTtlSeconds how long an invalid token is rejected without re-checking.
+   */
+  public final void setTokenCache(long maxSize, long maxTtlSeconds, long negativeTtlSeconds) {
+    this.maxTtlMillis = TimeUnit.SECONDS.toMillis(maxTtlSeconds);
+    this.validTokens = CacheBuilder.newBuilder()
+        .maximumSize(maxTtlSeconds > 0 ? maxSize : 0)
+        .expireAfterWrite(maxTtlSeconds, TimeUnit.SECONDS)
+        .build();
+    this.invalidTokens = CacheBuilder.newBuilder()
+        .maximumSize(negativeTtlSeconds > 0 ? maxSize : 0)
+        .expireAfterWrite(negativeTtlSeconds, TimeUnit.SECONDS)
+        .build();
+  }
+
+  /**
+   * Sets the registry the token cache hit rate and check_token latency are reported to.
+   */
+  public final void setMeterRegistry(MeterRegistry registry) {
+    this.cacheHits = registry.counter(METRIC_PREFIX + "tokenCache", "result", "hit");
+    this.cacheMisses = registry.counter(METRIC_PREFIX + "tokenCache", "result", "miss");
+    this.negativeCacheHits = registry.counter(METRIC_PREFIX + "tokenCache", "result",
+        "negativeHit");
+    this.checkTokenTimer = registry.timer(METRIC_PREFIX + "checkToken");
+  }
+
+  void setClock(Clock clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Wraps the converter so that the expiry of each checked token is known to the cache.
+   */
+  @Override
+  public final void setAccessTokenConverter(AccessTokenConverter accessTokenConverter) {
+    super.setAccessTokenConverter(new ExpiryRecordingConverter(accessTokenConverter));
   }
 
   @Override
   public OAuth2Authentication loadAuthentication(String accessToken) {
-    return loadAuthentication(accessToken, 0);
+    String key = Hashing.sha256().hashString(accessToken, StandardCharsets.UTF_8).toString();
+
+    CachedAuthentication cached = validTokens.getIfPresent(key);
+    if (cached != null && cached.expiresAt > clock.millis()) {
+      cacheHits.increment();
+      return cached.authentication;
+    }
+    if (invalidTokens.getIfPresent(key) != null) {
+      negativeCacheHits.increment();
+      throw new InvalidTokenException(accessToken);
+    }
+    cacheMisses.increment();
+
+    try {
+      OAuth2Authentication authentication = loadAuthentication(accessToken, 0);
+      validTokens.put(key, new CachedAuthentication(authentication, expiresAt(lastExpiry.get())));
+      return authentication;
+    } catch (InvalidTokenException ex) {
+      invalidTokens.put(key, Boolean.TRUE);
+      throw ex;
+    } finally {
+      lastExpiry.remove();
+    }
   }
 
   private OAuth2Authentication loadAuthentication(String accessToken, int attempt) {
     try {
-      return super.loadAuthentication(accessToken);
+      return checkTokenTimer.record(() -> super.loadAuthentication(accessToken));
     } catch (InvalidTokenException e) {
       if (attempt < invalidTokenRetryLimit) {
         attempt++;
@@ -46,4 +151,49 @@ public class CustomTokenServices extends RemoteTokenServices {
       }
     }
   }
-}
\ No newline at end of file
+
+  private long expiresAt(Long expirySeconds) {
+    long latest = clock.millis() + maxTtlMillis;
+    return expirySeconds == null
+        ? latest
+        : Math.min(latest, TimeUnit.SECONDS.toMillis(expirySeconds));
+  }
+
+  private static final class CachedAuthentication {
+    private final OAuth2Authentication authentication;
+    private final long expiresAt;
+
+    CachedAuthentication(OAuth2Authentication authentication, long expiresAt) {
+      this.authentication = authentication;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final class ExpiryRecordingConverter implements AccessTokenConverter {
+    private final AccessTokenConverter delegate;
+
+    ExpiryRecordingConverter(AccessTokenConverter delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Map<String, ?> convertAccessToken(
+        OAuth2AccessToken token,
+        OAuth2Authentication authentication) {
+      return delegate.convertAccessToken(token, authentication);
+    }
+
+    @Override
+    public OAuth2AccessToken extractAccessToken(
+        String value, Map<String, ?> map) {
+      return delegate.extractAccessToken(value, map);
+    }
+
+    @Override
+    public OAuth2Authentication extractAuthentication(Map<String, ?> map) {
+      Object expiry = map.get(EXPIRY);
+      lastExpiry.set(expiry instanceof Number ? ((Number) expiry).longValue() : null);
+      return delegate.extractAuthentication(map);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.security;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.security.jwt.Jwt;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.InvalidSignatureException;
+import org.springframework.security.jwt.crypto.sign.RsaVerifier;
+import org.springframework.security.jwt.crypto.sign.SignatureVerifier;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.common.util.JsonParser;
+import org.springframework.security.oauth2.common.util.JsonParserFactory;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+/**
+ * Verifies signed JWT access tokens locally against configured RSA public keys, so that
+ * authenticating a request needs no call to the auth service. Tokens that are not JWTs
+ * (opaque tokens) are passed on to the remote token services.
+ */
+public class HybridTokenServices implements ResourceServerTokenServices {
+  private static final String EXPIRY = "exp";
+  private static final String KEY_ID = "kid";
+
+  private final Map<String, SignatureVerifier> verifiers;
+  private final AccessTokenConverter accessTokenConverter;
+  private final ResourceServerTokenServices remoteTokenServices;
+  private final Clock clock;
+  private final JsonParser jsonParser = JsonParserFactory.create();
+
+  /**
+   * Creates token services verifying JWTs with the given keys.
+   *
+   * @param verifiers            signature verifiers by key id.
+   * @param accessTokenConverter converts verified claims into an authentication.
+   * @param remoteTokenServices  token services used for opaque tokens.
+   * @param clock                clock used to check token expiry.
+   */
+  public HybridTokenServices(Map<String, SignatureVerifier> verifiers,
+      AccessTokenConverter accessTokenConverter, ResourceServerTokenServices remoteTokenServices,
+      Clock clock) {
+    if (verifiers.isEmpty()) {
+      throw new IllegalArgumentException("At least one JWT verification key is required");
+    }
+    this.verifiers = verifiers;
+    this.accessTokenConverter = accessTokenConverter;
+    this.remoteTokenServices = remoteTokenServices;
+    this.clock = clock;
+  }
+
+  /**
+   * Loads RSA verification keys from a file: either a JWKS document (a .json file with a
+   * "keys" array) or a PEM encoded public key.
+   *
+   * @param keyFile path of the key file.
+   * @return signature verifiers by key id; a PEM key is stored under an empty key id.
+   */
+  public static Map<String, SignatureVerifier> loadVerifiers(String keyFile) {
+    try {
+      String content = new String(Files.readAllBytes(Paths.get(keyFile)),
+          StandardCharsets.UTF_8);
+      Map<String, SignatureVerifier> verifiers = new HashMap<>();
+      if (!keyFile.endsWith(".json")) {
+        verifiers.put("", new RsaVerifier(content.trim()));
+        return verifiers;
+      }
+
+      Object keys = JsonParserFactory.create().parseMap(content).get("keys");
+      if (keys instanceof List) {
+        for (Object key : (List<?>) keys) {
+          Map<?, ?> jwk = (Map<?, ?>) key;
+          if ("RSA".equals(jwk.get("kty"))) {
+            Object keyId = jwk.get(KEY_ID);
+            verifiers.put(keyId == null ? "" : keyId.toString(),
+                new RsaVerifier(toInteger(jwk.get("n")), toInteger(jwk.get("e"))));
+          }
+        }
+      }
+      return verifiers;
+    } catch (IOException | RuntimeException ex) {
+      throw new IllegalStateException("Could not load JWT verification keys from " + keyFile, ex);
+    }
+  }
+
+  private static BigInteger toInteger(Object base64Url) {
+    return new BigInteger(1, Base64.getUrlDecoder().decode((String) base64Url));
+  }
+
+  @Override
+  public OAuth2Authentication loadAuthentication(String accessToken) {
+    if (!isJwt(accessToken)) {
+      return remoteTokenServices.loadAuthentication(accessToken);
+    }
+
+    Map<String, Object> claims;
+    try {
+      Jwt jwt = JwtHelper.decodeAndVerify(accessToken, findVerifier(accessToken));
+      claims = jsonParser.parseMap(jwt.getClaims());
+    } catch (InvalidSignatureException | IllegalArgumentException ex) {
+      throw new InvalidTokenException("Invalid access token signature", ex);
+    }
+
+    Object expiry = claims.get(EXPIRY);
+    if (!(expiry instanceof Number)
+        || ((Number) expiry).longValue() * 1000 <= clock.millis()) {
+      throw new InvalidTokenException("Access token expired");
+    }
+
+    return accessTokenConverter.extractAuthentication(claims);
+  }
+
+  @Override
+  public OAuth2AccessToken readAccessToken(String accessToken) {
+    return remoteTokenServices.readAccessToken(accessToken);
+  }
+
+  private SignatureVerifier findVerifier(String accessToken) {
+    if (verifiers.size() == 1) {
+      return verifiers.values().iterator().next();
+    }
+    String keyId = JwtHelper.headers(accessToken).get(KEY_ID);
+    SignatureVerifier verifier = keyId == null ? null : verifiers.get(keyId);
+    if (verifier == null) {
+      throw new InvalidTokenException("Unknown access token signing key: " + keyId);
+    }
+    return verifier;
+  }
+
+  private boolean isJwt(String accessToken) {
+    return accessToken.startsWith("eyJ")
+        && accessToken.chars().filter(ch -> ch == '.').count() == 2;
+  }
+}
@@ -15,7 +15,9 @@
 
 package org.openlmis.dispensing.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
+import java.time.Clock;
 import java.util.Arrays;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -36,7 +38,7 @@ import org.springframework.security.oauth2.provider.authentication.BearerTokenEx
 import org.springframework.security.oauth2.provider.authentication.TokenExtractor;
 import org.springframework.security.oauth2.provider.token.AccessTokenConverter;
 import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
-import org.springframework.security.oauth2.provider.token.RemoteTokenServices;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
 import org.springframework.security.web.authentication.preauth.AbstractPreAuthenticatedProcessingFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -48,6 +50,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 @Import({MethodSecurityConfiguration.class})
 @EnableResourceServer
 public class ResourceServerSecurityConfiguration implements ResourceServerConfigurer {
+  private static final String JWT_VERIFICATION = "jwt";
 
   private TokenExtractor tokenExtractor = new BearerTokenExtractor();
 
@@ -104,25 +107,45 @@ public class ResourceServerSecurityConfiguration implements ResourceServerConfig
   }
 
   /**
-   * RemoteTokenServices bean initializer.
+   * Token services bean initializer. With auth.server.tokenVerification=jwt, signed JWT access
+   * tokens are verified locally and only opaque tokens are checked remotely.
    *
    * @param checkTokenUrl url to check tokens against
    * @param clientId      client's id
    * @param clientSecret  client's secret
+   * @param meterRegistry registry for token cache and check_token metrics
+   * @param tokenVerification remote or jwt
+   * @param jwtKeyFile    PEM public key or JWKS file used in jwt mode
+   * @param clock         clock used to check JWT expiry
    * @return token services
    */
   @Bean
   @Autowired
-  public RemoteTokenServices remoteTokenServices(
+  public ResourceServerTokenServices remoteTokenServices(
       @Value("${auth.server.url}") String checkTokenUrl,
       @Value("${auth.server.clientId}") String clientId,
       @Value("${auth.server.clientSecret}") String clientSecret,
-      @Value("${auth.server.invalidToken.retryLimit}") int invalidTokenRetryLimit) {
-    final RemoteTokenServices remoteTokenServices = new CustomTokenServices(invalidTokenRetryLimit);
+      @Value("${auth.server.invalidToken.retryLimit}") int invalidTokenRetryLimit,
+      @Value("${auth.server.tokenCache.maxSize}") long tokenCacheMaxSize,
+      @Value("${auth.server.tokenCache.maxTtlSeconds}") long tokenCacheMaxTtlSeconds,
+      @Value("${auth.server.tokenCache.negativeTtlSeconds}") long tokenCacheNegativeTtlSeconds,
+      MeterRegistry meterRegistry,
+      @Value("${auth.server.tokenVerification}") String tokenVerification,
+      @Value("${auth.server.jwt.keyFile}") String jwtKeyFile,
+      Clock clock) {
+    final CustomTokenServices remoteTokenServices = new CustomTokenServices(invalidTokenRetryLimit);
+    remoteTokenServices.setTokenCache(tokenCacheMaxSize, tokenCacheMaxTtlSeconds,
+        tokenCacheNegativeTtlSeconds);
+    remoteTokenServices.setMeterRegistry(meterRegistry);
     remoteTokenServices.setCheckTokenEndpointUrl(checkTokenUrl);
     remoteTokenServices.setClientId(clientId);
     remoteTokenServices.setClientSecret(clientSecret);
     remoteTokenServices.setAccessTokenConverter(accessTokenConverter());
+
+    if (JWT_VERIFICATION.equalsIgnoreCase(tokenVerification)) {
+      return new HybridTokenServices(HybridTokenServices.loadVerifiers(jwtKeyFile),
+          accessTokenConverter(), remoteTokenServices, clock);
+    }
     return remoteTokenServices;
   }
 
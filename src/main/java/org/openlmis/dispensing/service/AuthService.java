@@ -17,12 +17,24 @@ package org.openlmis.dispensing.service;
 
 import static org.openlmis.dispensing.util.RequestHelper.createUri;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Clock;
+import java.time.Instant;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PreDestroy;
 import org.apache.commons.codec.binary.Base64;
 import org.openlmis.dispensing.util.RequestParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -31,9 +43,17 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestOperations;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * Holds the service access token used for calls to other services. The token is refreshed in
+ * the background shortly before it expires (based on expires_in), so once warmed up callers
+ * never wait for the auth service. Concurrent refreshes are coalesced into one request.
+ */
 @Service
 public class AuthService {
   public static final String ACCESS_TOKEN = "access_token";
+  public static final String EXPIRES_IN = "expires_in";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AuthService.class);
 
   @Value("${auth.server.clientId}")
   private String clientId;
@@ -44,15 +64,102 @@ public class AuthService {
   @Value("${auth.server.authorizationUrl}")
   private String authorizationUrl;
 
+  @Value("${auth.server.tokenRefreshAheadSeconds}")
+  private long refreshAheadSeconds;
+
+  @Autowired
+  private Clock clock;
+
   private RestOperations restTemplate = new RestTemplate();
 
+  private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setNameFormat("service-token-refresh").setDaemon(true).build());
+  private final AtomicReference<CompletableFuture<AccessToken>> refreshing =
+      new AtomicReference<>();
+  private volatile AccessToken current;
+
   /**
-   * Retrieves access token from the auth service.
+   * Retrieves access token from the auth service. A valid token is returned straight away,
+   * starting a background refresh when it is about to expire; only without a valid token does
+   * the caller wait for the (shared) request to the auth service.
    *
    * @return token.
    */
-  @Cacheable("token")
   public String obtainAccessToken() {
+    AccessToken token = current;
+    Instant now = clock.instant();
+    if (token != null && now.isBefore(token.expiresAt)) {
+      if (!now.isBefore(token.refreshAt)) {
+        refresh();
+      }
+      return token.value;
+    }
+
+    try {
+      return refresh().join().value;
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Forgets the current token, e.g. after it was rejected, so that the next call obtains a
+   * new one.
+   */
+  public void clearTokenCache() {
+    current = null;
+  }
+
+  /**
+   * Obtains the first token in the background once the application has started.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    refresh();
+  }
+
+  @PreDestroy
+  void shutdown() {
+    refreshExecutor.shutdownNow();
+  }
+
+  private CompletableFuture<AccessToken> refresh() {
+    while (true) {
+      CompletableFuture<AccessToken> inFlight = refreshing.get();
+      if (inFlight != null) {
+        return inFlight;
+      }
+
+      CompletableFuture<AccessToken> future = new CompletableFuture<>();
+      if (refreshing.compareAndSet(null, future)) {
+        try {
+          refreshExecutor.execute(() -> {
+            try {
+              AccessToken token = requestAccessToken();
+              current = token;
+              future.complete(token);
+            } catch (RuntimeException ex) {
+              LOGGER.warn("Could not obtain service access token", ex);
+              future.completeExceptionally(ex);
+            } finally {
+              refreshing.compareAndSet(future, null);
+            }
+          });
+        } catch (RuntimeException ex) {
+          // e.g. rejected after shutdown: fail the waiting callers instead of leaving them blocked
+          LOGGER.warn("Could not schedule service access token refresh", ex);
+          future.completeExceptionally(ex);
+          refreshing.compareAndSet(future, null);
+        }
+        return future;
+      }
+    }
+  }
+
+  private AccessToken requestAccessToken() {
     String plainCreds = clientId + ":" + clientSecret;
     byte[] plainCredsBytes = plainCreds.getBytes();
     byte[] base64CredsBytes = Base64.encodeBase64(plainCredsBytes);
@@ -67,15 +174,33 @@ public class AuthService {
         .init()
         .set("grant_type", "client_credentials");
 
+    Instant requestedAt = clock.instant();
     ResponseEntity<?> response = restTemplate.exchange(
         createUri(authorizationUrl, params), HttpMethod.POST, request, Object.class
     );
 
-    return ((Map<String, String>) response.getBody()).get(ACCESS_TOKEN);
+    Map<String, Object> body = (Map<String, Object>) response.getBody();
+    Object expiresIn = body.get(EXPIRES_IN);
+    if (!(expiresIn instanceof Number)) {
+      // no expiry known, keep the token until a call is rejected
+      return new AccessToken((String) body.get(ACCESS_TOKEN), Instant.MAX, Instant.MAX);
+    }
+
+    Instant expiresAt = requestedAt.plusSeconds(((Number) expiresIn).longValue());
+    Instant refreshAt = expiresAt.minusSeconds(refreshAheadSeconds);
+    return new AccessToken((String) body.get(ACCESS_TOKEN), expiresAt,
+        refreshAt.isBefore(requestedAt) ? requestedAt : refreshAt);
   }
 
-  @CacheEvict(cacheNames = "token", allEntries = true)
-  public void clearTokenCache() {
-    // Intentionally blank
+  private static final class AccessToken {
+    private final String value;
+    private final Instant expiresAt;
+    private final Instant refreshAt;
+
+    AccessToken(String value, Instant expiresAt, Instant refreshAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+      this.refreshAt = refreshAt;
+    }
   }
 }
@@ -20,14 +20,17 @@ import com.fasterxml.jackson.databind.type.MapType;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import java.lang.reflect.Array;
 import java.net.URI;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.lang.StringUtils;
@@ -39,6 +42,7 @@ import org.openlmis.dispensing.util.Merger;
 import org.openlmis.dispensing.util.PageDto;
 import org.openlmis.dispensing.util.RequestHelper;
 import org.openlmis.dispensing.util.RequestParameters;
+import org.openlmis.dispensing.util.SingleFlight;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -49,6 +53,7 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestOperations;
 import org.springframework.web.client.RestTemplate;
@@ -63,11 +68,21 @@ public abstract class BaseCommunicationService<T> {
   @Autowired
   private ObjectMapper objectMapper;
 
+  @Autowired
+  private DownstreamGuards downstreamGuards;
+
+  @Autowired
+  private RetryPolicies retryPolicies;
+
   @Value("${request.maxUrlLength}")
   private int maxUrlLength;
 
   protected RestOperations restTemplate = new RestTemplate();
 
+  private final SingleFlight<String, Object> inFlightLookups = new SingleFlight<>();
+
+  protected abstract String getServiceName();
+
   protected abstract String getServiceUrl();
 
   protected abstract String getUrl();
@@ -76,6 +91,24 @@ public abstract class BaseCommunicationService<T> {
 
   protected abstract Class<T[]> getArrayResultClass();
 
+  /**
+   * Sets connect and read timeouts of requests to the downstream service, so that a slow
+   * service cannot hold a request thread indefinitely.
+   *
+   * @param connectTimeout connect timeout in milliseconds.
+   * @param readTimeout    read timeout in milliseconds.
+   */
+  @Autowired
+  public void setRequestTimeouts(@Value("${request.connectTimeoutMillis}") int connectTimeout,
+      @Value("${request.readTimeoutMillis}") int readTimeout) {
+    if (restTemplate instanceof RestTemplate) {
+      SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+      requestFactory.setConnectTimeout(connectTimeout);
+      requestFactory.setReadTimeout(readTimeout);
+      ((RestTemplate) restTemplate).setRequestFactory(requestFactory);
+    }
+  }
+
   /**
    * Return one object from service.
    *
@@ -121,10 +154,17 @@ public abstract class BaseCommunicationService<T> {
     RequestParameters params = RequestParameters
         .init()
         .setAll(parameters);
+    URI uri = RequestHelper.createUri(url, params);
+
+    // concurrent lookups of the same resource share one request
+    return type.cast(inFlightLookups.execute(type.getName() + ' ' + uri,
+        () -> doFindOne(uri, parameters, type)));
+  }
 
+  private <E> E doFindOne(URI uri, RequestParameters parameters, Class<E> type) {
     try {
-      return runWithTokenRetry(() -> restTemplate.exchange(
-          RequestHelper.createUri(url, params),
+      return runWithRetryAndTokenRetry(HttpMethod.GET, () -> restTemplate.exchange(
+          uri,
           HttpMethod.GET,
           createEntity(),
           type)).getBody();
@@ -155,7 +195,7 @@ public abstract class BaseCommunicationService<T> {
     RequestParameters params = RequestParameters.of(parameters);
 
     try {
-      ResponseEntity<T[]> responseEntity = runWithTokenRetry(
+      ResponseEntity<T[]> responseEntity = runWithRetryAndTokenRetry(HttpMethod.GET,
           () -> doListRequest(url, params, HttpMethod.GET, getArrayResultClass()));
       return new ArrayList<>(Arrays.asList(responseEntity.getBody()));
     } catch (HttpStatusCodeException ex) {
@@ -166,13 +206,14 @@ public abstract class BaseCommunicationService<T> {
   protected <P> ServiceResponse<List<P>> tryFindAll(String resourceUrl, Class<P[]> type,
       String etag) {
     String url = getServiceUrl() + getUrl() + resourceUrl;
-    logger.info("permissionStrings url: {}", url);
+    logger.debug("Requesting {} with If-None-Match: {}", url, etag);
 
     try {
       RequestHeaders headers = RequestHeaders.init().setIfNoneMatch(etag);
-      ResponseEntity<P[]> response = restTemplate.exchange(
-          url, HttpMethod.GET, RequestHelper.createEntity(null, addAuthHeader(headers)), type);
-      logger.info("permissionStrings responseEntity: {}", response);
+      ResponseEntity<P[]> response = runWithRetryAndTokenRetry(HttpMethod.GET,
+          () -> restTemplate.exchange(
+          url, HttpMethod.GET, RequestHelper.createEntity(null, addAuthHeader(headers)), type));
+      logger.debug("Response status of {}: {}", url, response.getStatusCode());
 
       if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
         return new ServiceResponse<>(null, response.getHeaders(), false);
@@ -185,6 +226,51 @@ public abstract class BaseCommunicationService<T> {
     }
   }
 
+  /**
+   * Return all objects, page by page, unless they have not changed since the given ETag. The
+   * ETag is checked on the first page and the returned headers are those of the first page.
+   *
+   * @param resourceUrl Endpoint url.
+   * @param pageSize    number of objects requested per page.
+   * @param type        set to what type a response should be converted.
+   * @param etag        ETag of the previously returned objects, may be null.
+   * @return content of all pages, or a not modified response.
+   */
+  protected <P> ServiceResponse<List<P>> tryGetAllPages(String resourceUrl, int pageSize,
+      Class<P> type, String etag) {
+    String url = getServiceUrl() + getUrl() + resourceUrl;
+
+    try {
+      RequestHeaders headers = RequestHeaders.init().setIfNoneMatch(etag);
+      ResponseEntity<PageDto<P>> response = runWithRetryAndTokenRetry(HttpMethod.GET,
+          () -> restTemplate.exchange(
+              RequestHelper.createUri(url, pageParameters(0, pageSize)), HttpMethod.GET,
+              RequestHelper.createEntity(null, addAuthHeader(headers)),
+              new DynamicPageTypeReference<>(type)));
+
+      if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+        return new ServiceResponse<>(null, response.getHeaders(), false);
+      }
+
+      Page<P> page = response.getBody();
+      List<P> content = new ArrayList<>(page.getContent());
+      while (page.hasNext() && page.hasContent()) {
+        page = getPage(resourceUrl, pageParameters(page.getNumber() + 1, pageSize), null,
+            HttpMethod.GET, type);
+        content.addAll(page.getContent());
+      }
+      return new ServiceResponse<>(content, response.getHeaders(), true);
+    } catch (HttpStatusCodeException ex) {
+      throw buildDataRetrievalException(ex);
+    }
+  }
+
+  private static RequestParameters pageParameters(int page, int size) {
+    return RequestParameters.init()
+        .set("page", page)
+        .set("size", size);
+  }
+
   /**
    * Return all reference data T objects for Page that need to be retrieved with
    * POST request.
@@ -242,7 +328,7 @@ public abstract class BaseCommunicationService<T> {
     String url = getServiceUrl() + getUrl() + resourceUrl;
 
     try {
-      ResponseEntity<PageDto<P>> response = runWithTokenRetry(
+      ResponseEntity<PageDto<P>> response = runWithRetryAndTokenRetry(method,
           () -> doPageRequest(url, parameters, payload, method, type));
       return response.getBody();
 
@@ -255,7 +341,8 @@ public abstract class BaseCommunicationService<T> {
       Class<P> type) {
     String url = getServiceUrl() + getUrl() + resourceUrl;
 
-    ResponseEntity<ResultDto<P>> response = runWithTokenRetry(() -> restTemplate.exchange(
+    ResponseEntity<ResultDto<P>> response = runWithRetryAndTokenRetry(HttpMethod.GET,
+        () -> restTemplate.exchange(
         RequestHelper.createUri(url, parameters),
         HttpMethod.GET,
         createEntity(),
@@ -270,11 +357,11 @@ public abstract class BaseCommunicationService<T> {
     TypeFactory factory = objectMapper.getTypeFactory();
     MapType mapType = factory.constructMapType(HashMap.class, keyType, valueType);
 
-    HttpEntity<Object> entity = createEntity();
     List<Map<K, V>> maps = new ArrayList<>();
 
     for (URI uri : RequestHelper.splitRequest(url, parameters, maxUrlLength)) {
-      ResponseEntity<Map> response = restTemplate.exchange(uri, HttpMethod.GET, entity, Map.class);
+      ResponseEntity<Map> response = runWithRetryAndTokenRetry(HttpMethod.GET,
+          () -> restTemplate.exchange(uri, HttpMethod.GET, createEntity(), Map.class));
       Map<K, V> map = objectMapper.convertValue(response.getBody(), mapType);
       maps.add(map);
     }
@@ -349,17 +436,17 @@ public abstract class BaseCommunicationService<T> {
     return RequestHeaders.init().setAuth(authService.obtainAccessToken());
   }
 
-  protected <P> ResponseEntity<P> runWithTokenRetry(HttpTask<P> task) {
-    try {
-      return task.run();
-    } catch (HttpStatusCodeException ex) {
-      if (HttpStatus.UNAUTHORIZED == ex.getStatusCode()) {
-        // the token has (most likely) expired - clear the cache and retry once
-        authService.clearTokenCache();
-        return task.run();
-      }
-      throw ex;
-    }
+  /**
+   * Runs a single attempt through the circuit breaker and bulkhead of this downstream service.
+   * Rejected attempts fail fast with {@link DataRetrievalException} and 503 status.
+   */
+  private <R> R guarded(Supplier<R> call) {
+    return downstreamGuards.execute(getServiceKey(), call, reason -> new DataRetrievalException(
+        getResultClass().getSimpleName(), HttpStatus.SERVICE_UNAVAILABLE, reason));
+  }
+
+  private String getServiceKey() {
+    return StringUtils.deleteWhitespace(getServiceName()).toLowerCase(Locale.ENGLISH);
   }
 
   @FunctionalInterface
@@ -369,30 +456,70 @@ public abstract class BaseCommunicationService<T> {
 
   }
 
-  protected <P> ResponseEntity<P> runWithRetryAndTokenRetry(HttpTask<P> task) {
-    try {
-      return task.run();
-    } catch (HttpStatusCodeException ex) {
-      if (HttpStatus.UNAUTHORIZED == ex.getStatusCode()) {
-        // the token has (most likely) expired - clear the cache and retry once
-        authService.clearTokenCache();
-        return runWithRetry(task);
-      }
-      if (ex.getStatusCode().is4xxClientError() || ex.getStatusCode().is5xxServerError()) {
-        return runWithTokenRetry(task);
+  /**
+   * Runs the request, retrying it according to the retry policy of this downstream service.
+   * Requests with a non-idempotent method are only retried after a rejected token.
+   *
+   * @param method method of the request.
+   * @param task   the request.
+   * @return response of the request.
+   */
+  protected <P> ResponseEntity<P> runWithRetryAndTokenRetry(HttpMethod method, HttpTask<P> task) {
+    return runWithRetryAndTokenRetry(method, false, task);
+  }
+
+  /**
+   * Runs the request, retrying it according to the retry policy of this downstream service.
+   *
+   * @param method            method of the request.
+   * @param hasIdempotencyKey whether the request carries an idempotency key, which makes it safe
+   *                          to retry regardless of its method.
+   * @param task              the request.
+   * @return response of the request.
+   */
+  protected <P> ResponseEntity<P> runWithRetryAndTokenRetry(HttpMethod method,
+      boolean hasIdempotencyKey, HttpTask<P> task) {
+    RetryPolicy retryPolicy = retryPolicies.forService(getServiceKey());
+    return doRunWithRetry(retryPolicy, method, hasIdempotencyKey, task);
+  }
+
+  private <P> ResponseEntity<P> doRunWithRetry(RetryPolicy retryPolicy, HttpMethod method,
+      boolean hasIdempotencyKey, HttpTask<P> task) {
+    boolean tokenCleared = false;
+    int attempt = 1;
+
+    while (true) {
+      try {
+        // each attempt is guarded on its own, so no bulkhead slot is held during the backoff
+        // and a rejection by the open circuit (DataRetrievalException) ends the retries
+        return guarded(task::run);
+      } catch (RuntimeException ex) {
+        if (!tokenCleared && ex instanceof HttpStatusCodeException
+            && HttpStatus.UNAUTHORIZED == ((HttpStatusCodeException) ex).getStatusCode()) {
+          // the token has (most likely) expired - clear the cache and retry once
+          authService.clearTokenCache();
+          tokenCleared = true;
+          continue;
+        }
+        if (!retryPolicy.shouldRetry(method, hasIdempotencyKey, attempt, ex)) {
+          throw ex;
+        }
+
+        Duration backoff = retryPolicy.getBackoff(attempt);
+        logger.warn("Request to {} failed (attempt {}), retrying in {} ms: {}",
+            getServiceName(), attempt, backoff.toMillis(), ex.getMessage());
+        sleep(backoff, ex);
+        attempt++;
       }
-      throw ex;
     }
   }
 
-  private <P> ResponseEntity<P> runWithRetry(HttpTask<P> task) {
+  private static void sleep(Duration backoff, RuntimeException failure) {
     try {
-      return task.run();
-    } catch (HttpStatusCodeException ex) {
-      if (ex.getStatusCode().is4xxClientError() || ex.getStatusCode().is5xxServerError()) {
-        return task.run();
-      }
-      throw ex;
+      Thread.sleep(backoff.toMillis());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw failure;
     }
   }
 }
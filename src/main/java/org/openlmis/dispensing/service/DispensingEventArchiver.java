@@ -0,0 +1,103 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.openlmis.dispensing.repository.DispensingEventsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves point of delivery events received before the archive horizon, with their
+ * discrepancies, from the live tables to the archive tables, so that the live tables only
+ * hold recent events. Each batch is moved in its own transaction.
+ */
+@Service
+public class DispensingEventArchiver {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DispensingEventArchiver.class);
+
+  @Autowired
+  private DispensingEventsRepository pointOfDeliveryEventsRepository;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${dispensing.podEvents.archive.horizonMonths}")
+  private int horizonMonths;
+
+  @Value("${dispensing.podEvents.archive.batchSize}")
+  private int batchSize;
+
+  /**
+   * Events received before this date are archived, or will be by the next run.
+   *
+   * @return the archive cutoff date, or null if archiving is disabled.
+   */
+  public LocalDate getArchiveCutoff() {
+    return horizonMonths > 0 ? LocalDate.now(clock).minusMonths(horizonMonths) : null;
+  }
+
+  /**
+   * Archives every live event received before the cutoff, batch by batch.
+   */
+  @Scheduled(cron = "${dispensing.podEvents.archive.cron}")
+  public void archive() {
+    LocalDate cutoff = getArchiveCutoff();
+    if (cutoff == null) {
+      return;
+    }
+
+    LOGGER.info("Archiving point of delivery events received before {}", cutoff);
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    // the cutoff day starts in the zone of the clock, like the day bounds of the search
+    LocalDateTime receivedBefore = DispensingService.toDatabaseTime(
+        cutoff.atStartOfDay(clock.getZone()));
+    int archived = 0;
+    int moved;
+    do {
+      Integer batch = transaction.execute(status -> archiveBatch(receivedBefore));
+      moved = batch == null ? 0 : batch;
+      archived += moved;
+    } while (moved > 0);
+    LOGGER.info("Archived {} point of delivery events", archived);
+  }
+
+  private int archiveBatch(LocalDateTime receivedBefore) {
+    List<String> ids = pointOfDeliveryEventsRepository
+        .findIdsReceivedBefore(receivedBefore, batchSize);
+    if (ids.isEmpty()) {
+      return 0;
+    }
+
+    pointOfDeliveryEventsRepository.copyToArchive(ids);
+    pointOfDeliveryEventsRepository.copyDiscrepanciesToArchive(ids);
+    pointOfDeliveryEventsRepository.deleteArchivedDiscrepancies(ids);
+    pointOfDeliveryEventsRepository.deleteArchived(ids);
+    return ids.size();
+  }
+}
@@ -18,6 +18,10 @@ package org.openlmis.dispensing.service;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.slf4j.ext.XLoggerFactory.getXLogger;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.function.Supplier;
 import lombok.AllArgsConstructor;
@@ -25,8 +29,10 @@ import lombok.NoArgsConstructor;
 
 import org.openlmis.dispensing.dto.DispensingEventDto;
 import org.openlmis.dispensing.dto.referencedata.FacilityDto;
+import org.openlmis.dispensing.dto.referencedata.UserDto;
 import org.openlmis.dispensing.service.referencedata.FacilityReferenceDataService;
 import org.openlmis.dispensing.util.AuthenticationHelper;
+import org.openlmis.dispensing.util.ConcurrentLazyResource;
 import org.openlmis.dispensing.util.DispensingEventProcessContext;
 import org.openlmis.dispensing.util.LazyResource;
 import org.openlmis.dispensing.util.ReferenceDataSupplier;
@@ -88,9 +94,9 @@ public class DispensingEventProcessContextBuilder {
       userIdSupplier = pointOfDeliveryEventDto::getReceivedByUserId;
       userNamesSupplier = pointOfDeliveryEventDto::getReceivedByUserNames;
     } else {
-      userIdSupplier = () -> authenticationHelper.getCurrentUser().getId();
-      userNamesSupplier = () -> authenticationHelper.getCurrentUser().getFirstName() 
-          + ", " + authenticationHelper.getCurrentUser().getLastName();
+      LazyResource<UserDto> user = new LazyResource<>(authenticationHelper::getCurrentUser);
+      userIdSupplier = () -> user.get().getId();
+      userNamesSupplier = () -> toUserNames(user.get());
     }
 
     LazyResource<UUID> userId = new LazyResource<>(userIdSupplier);
@@ -110,4 +116,57 @@ public class DispensingEventProcessContextBuilder {
     return context;
   }
 
+  /**
+   * Builds the contexts of a batch of events. The current user and each distinct destination
+   * facility are resolved at most once for the whole batch, and the shared resources are safe
+   * to use from several threads.
+   *
+   * @param pointOfDeliveryEventDtos events of the batch.
+   * @return one context per event, in the same order.
+   */
+  public List<DispensingEventProcessContext> buildContexts(
+          List<DispensingEventDto> pointOfDeliveryEventDtos) {
+    XLOGGER.entry(pointOfDeliveryEventDtos.size());
+    Profiler profiler = new Profiler("BUILD_BATCH_CONTEXTS");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("CREATE_LAZY_USER");
+    OAuth2Authentication authentication = (OAuth2Authentication) SecurityContextHolder
+        .getContext()
+        .getAuthentication();
+
+    LazyResource<UUID> sharedUserId = null;
+    LazyResource<String> sharedUserNames = null;
+    if (!authentication.isClientOnly()) {
+      LazyResource<UserDto> user = new ConcurrentLazyResource<>(
+          authenticationHelper::getCurrentUser);
+      sharedUserId = new ConcurrentLazyResource<>(() -> user.get().getId());
+      sharedUserNames = new ConcurrentLazyResource<>(() -> toUserNames(user.get()));
+    }
+
+    profiler.start("CREATE_CONTEXTS");
+    Map<UUID, LazyResource<FacilityDto>> facilities = new HashMap<>();
+    List<DispensingEventProcessContext> contexts =
+        new ArrayList<>(pointOfDeliveryEventDtos.size());
+    for (DispensingEventDto dto : pointOfDeliveryEventDtos) {
+      DispensingEventProcessContext context = new DispensingEventProcessContext();
+      if (sharedUserId == null) {
+        context.setCurrentUserId(new LazyResource<>(dto::getReceivedByUserId));
+        context.setCurrentUserNames(new LazyResource<>(dto::getReceivedByUserNames));
+      } else {
+        context.setCurrentUserId(sharedUserId);
+        context.setCurrentUserNames(sharedUserNames);
+      }
+      context.setFacility(facilities.computeIfAbsent(dto.getDestinationId(),
+          id -> new ConcurrentLazyResource<>(new ReferenceDataSupplier<>(facilityService, id))));
+      contexts.add(context);
+    }
+
+    return contexts;
+  }
+
+  private String toUserNames(UserDto user) {
+    return user.getFirstName() + ", " + user.getLastName();
+  }
+
 }
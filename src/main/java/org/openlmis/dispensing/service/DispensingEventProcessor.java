@@ -15,12 +15,25 @@
 
 package org.openlmis.dispensing.service;
 
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_BATCH_EMPTY;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_BATCH_TOO_LARGE;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_DESTINATION_MISSING;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_PACKING_DATE_MISSING;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_QUANTITY_NEGATIVE;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_REJECTION_REASON_MISSING;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import org.openlmis.dispensing.domain.event.DispensingEvent;
+import org.openlmis.dispensing.dto.DiscrepancyDto;
 import org.openlmis.dispensing.dto.DispensingEventDto;
+import org.openlmis.dispensing.exception.ValidationMessageException;
 import org.openlmis.dispensing.repository.DispensingEventsRepository;
 import org.openlmis.dispensing.util.DispensingEventProcessContext;
+import org.openlmis.dispensing.util.Message;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +41,7 @@ import org.slf4j.ext.XLogger;
 import org.slf4j.ext.XLoggerFactory;
 import org.slf4j.profiler.Profiler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
@@ -48,6 +62,9 @@ public class DispensingEventProcessor {
   @Autowired
   private DispensingEventsRepository pointOfDeliveryEventsRepository;
 
+  @Value("${dispensing.podEvents.batch.maxSize}")
+  private int maxBatchSize;
+
   /**
    * Validate and persist pod event.
    *
@@ -59,13 +76,14 @@ public class DispensingEventProcessor {
     Profiler profiler = new Profiler("PROCESS");
     profiler.setLogger(XLOGGER);
 
+    profiler.start("VALIDATE");
+    validate(pointOfDeliveryEventDto, 0);
+
     profiler.start("BUILD_CONTEXT");
     DispensingEventProcessContext context = contextBuilder.buildContext(
             pointOfDeliveryEventDto);
     pointOfDeliveryEventDto.setContext(context);
 
-    //to do validations
-
     UUID eventId = saveEventAndGenerateLineItems(
         pointOfDeliveryEventDto, profiler.startNested("SAVE_AND_GENERATE_LINE_ITEMS")
     );
@@ -73,6 +91,98 @@ public class DispensingEventProcessor {
     return eventId;
   }
 
+  /**
+   * Validate and persist a batch of pod events. Every event is validated before any is saved,
+   * so the batch is stored entirely or not at all when called in a transaction.
+   *
+   * @param pointOfDeliveryEventDtos point of delivery event dtos.
+   * @return the persisted event ids, in the order of the given events.
+   */
+  public List<UUID> processBatch(List<DispensingEventDto> pointOfDeliveryEventDtos) {
+    XLOGGER.entry(pointOfDeliveryEventDtos == null ? 0 : pointOfDeliveryEventDtos.size());
+    Profiler profiler = new Profiler("PROCESS_BATCH");
+    profiler.setLogger(XLOGGER);
+
+    profiler.start("VALIDATE");
+    validateBatch(pointOfDeliveryEventDtos);
+
+    profiler.start("BUILD_CONTEXTS");
+    List<DispensingEventProcessContext> contexts = contextBuilder.buildContexts(
+            pointOfDeliveryEventDtos);
+
+    profiler.start("CONVERT_TO_EVENTS");
+    List<DispensingEvent> events = new ArrayList<>(pointOfDeliveryEventDtos.size());
+    for (int i = 0; i < pointOfDeliveryEventDtos.size(); i++) {
+      DispensingEventDto dto = pointOfDeliveryEventDtos.get(i);
+      dto.setContext(contexts.get(i));
+      events.add(dto.toDispensingEvent());
+    }
+
+    profiler.start("DB_SAVE");
+    List<DispensingEvent> saved = pointOfDeliveryEventsRepository.saveAll(events);
+    pointOfDeliveryEventsRepository.flush();
+
+    List<UUID> ids = saved.stream()
+        .map(DispensingEvent::getId)
+        .collect(Collectors.toList());
+    LOGGER.debug("Saved {} point of delivery events", ids.size());
+
+    return ids;
+  }
+
+  private void validateBatch(List<DispensingEventDto> pointOfDeliveryEventDtos) {
+    if (pointOfDeliveryEventDtos == null || pointOfDeliveryEventDtos.isEmpty()) {
+      throw new ValidationMessageException(ERROR_POD_EVENT_BATCH_EMPTY);
+    }
+    if (pointOfDeliveryEventDtos.size() > maxBatchSize) {
+      throw new ValidationMessageException(new Message(ERROR_POD_EVENT_BATCH_TOO_LARGE,
+          pointOfDeliveryEventDtos.size(), maxBatchSize));
+    }
+    for (int i = 0; i < pointOfDeliveryEventDtos.size(); i++) {
+      validate(pointOfDeliveryEventDtos.get(i), i);
+    }
+  }
+
+  private void validate(DispensingEventDto dto, int index) {
+    if (dto.getPackingDate() == null) {
+      throw new ValidationMessageException(
+          new Message(ERROR_POD_EVENT_PACKING_DATE_MISSING, index));
+    }
+    if (!dto.hasDestinationId() && dto.getDestinationFreeText() == null) {
+      throw new ValidationMessageException(
+          new Message(ERROR_POD_EVENT_DESTINATION_MISSING, index));
+    }
+    validateNotNegative(dto.getCartonsQuantityOnWaybill(), "cartonsQuantityOnWaybill", index);
+    validateNotNegative(dto.getCartonsQuantityShipped(), "cartonsQuantityShipped", index);
+    validateNotNegative(dto.getCartonsQuantityAccepted(), "cartonsQuantityAccepted", index);
+    validateNotNegative(dto.getCartonsQuantityRejected(), "cartonsQuantityRejected", index);
+    validateNotNegative(dto.getContainersQuantityOnWaybill(), "containersQuantityOnWaybill",
+        index);
+    validateNotNegative(dto.getContainersQuantityShipped(), "containersQuantityShipped", index);
+    validateNotNegative(dto.getContainersQuantityAccepted(), "containersQuantityAccepted",
+        index);
+    validateNotNegative(dto.getContainersQuantityRejected(), "containersQuantityRejected",
+        index);
+
+    if (dto.getDiscrepancies() != null) {
+      for (DiscrepancyDto discrepancy : dto.getDiscrepancies()) {
+        if (discrepancy.getRejectionReason() == null
+            || discrepancy.getRejectionReason().getId() == null) {
+          throw new ValidationMessageException(
+              new Message(ERROR_POD_EVENT_REJECTION_REASON_MISSING, index));
+        }
+        validateNotNegative(discrepancy.getQuantityAffected(), "quantityAffected", index);
+      }
+    }
+  }
+
+  private void validateNotNegative(Integer quantity, String field, int index) {
+    if (quantity != null && quantity < 0) {
+      throw new ValidationMessageException(
+          new Message(ERROR_POD_EVENT_QUANTITY_NEGATIVE, index, field));
+    }
+  }
+
   private UUID saveEventAndGenerateLineItems(DispensingEventDto pointOfDeliveryEventDto,
                                              Profiler profiler) {
     profiler.start("CONVERT_TO_EVENT");
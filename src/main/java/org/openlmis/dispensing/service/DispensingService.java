@@ -15,31 +15,94 @@
 
 package org.openlmis.dispensing.service;
 
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_INVALID_PARAMS;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_DISCREPANCY_NOT_FOUND;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_PACKING_DATE_MISSING;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_PATCH_FIELD_INVALID;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_PATCH_VALUE_INVALID;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_QUANTITY_NEGATIVE;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_REFERENCE_NUMBER_MISSING;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_REJECTION_REASON_MISSING;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_START_DATE_AFTER_END_DATE;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.StringUtils;
 import org.openlmis.dispensing.domain.event.DispensingEvent;
 import org.openlmis.dispensing.domain.qualitychecks.Discrepancy;
 import org.openlmis.dispensing.dto.DiscrepancyDto;
 import org.openlmis.dispensing.dto.DispensingEventDto;
+import org.openlmis.dispensing.dto.DispensingEventMonthlySummary;
 import org.openlmis.dispensing.exception.ResourceNotFoundException;
+import org.openlmis.dispensing.exception.ValidationMessageException;
+import org.openlmis.dispensing.repository.DiscrepancyRepository;
 import org.openlmis.dispensing.repository.DispensingEventsRepository;
-import org.openlmis.dispensing.service.requisition.RejectionReasonService;
+import org.openlmis.dispensing.service.requisition.RejectionReasonDictionary;
 import org.openlmis.dispensing.util.DispensingEventProcessContext;
+import org.openlmis.dispensing.util.DispensingEventSpecifications;
 import org.openlmis.dispensing.util.Message;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 @Service
 public class DispensingService {
   private static final Logger LOGGER = LoggerFactory.getLogger(DispensingService.class);
+  private static final int DEFAULT_SUMMARY_MONTHS = 12;
+  private static final String DISCREPANCIES = "discrepancies";
+  private static final String PACKING_DATE = "packingDate";
+  private static final String DELETED = "deleted";
+  private static final String ID = "id";
+  private static final Set<String> SORTABLE_PROPERTIES = ImmutableSet.of(
+      "receivingDate", PACKING_DATE, "referenceNumber", ID);
+  private static final Map<String, Class<?>> PATCHABLE_ATTRIBUTES = ImmutableMap
+      .<String, Class<?>>builder()
+      .put("sourceId", UUID.class)
+      .put("sourceFreeText", String.class)
+      .put("destinationId", UUID.class)
+      .put("destinationFreeText", String.class)
+      .put("referenceNumber", String.class)
+      .put(PACKING_DATE, LocalDate.class)
+      .put("packedBy", String.class)
+      .put("cartonsQuantityOnWaybill", Integer.class)
+      .put("cartonsQuantityShipped", Integer.class)
+      .put("cartonsQuantityAccepted", Integer.class)
+      .put("cartonsQuantityRejected", Integer.class)
+      .put("containersQuantityOnWaybill", Integer.class)
+      .put("containersQuantityShipped", Integer.class)
+      .put("containersQuantityAccepted", Integer.class)
+      .put("containersQuantityRejected", Integer.class)
+      .put("remarks", String.class)
+      .build();
 
   @Autowired
   private DispensingEventsRepository pointOfDeliveryEventsRepository;
@@ -48,22 +111,178 @@ public class DispensingService {
   private DispensingEventProcessContextBuilder contextBuilder;
 
   @Autowired
-  private RejectionReasonService rejectionReasonService;
+  private DiscrepancyRepository discrepancyRepository;
+
+  @Autowired
+  private DispensingEventArchiver dispensingEventArchiver;
+
+  @Autowired
+  private RejectionReasonDictionary rejectionReasonDictionary;
+
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  private ObjectMapper objectMapper;
 
   /**
    * Get a list of Point of Delivery events.
    *
-   * @param destinationId destination id.
+   * @param destinationId         destination id.
+   * @param includeDiscrepancies  whether discrepancies should be loaded, in a single query.
    * @return a list of pod events.
    */
-  public List<DispensingEventDto> getDispensingEventsByDestinationId(UUID destinationId) {
+  public List<DispensingEventDto> getDispensingEventsByDestinationId(UUID destinationId,
+      boolean includeDiscrepancies) {
     List<DispensingEvent> pointOfDeliveryEvents = pointOfDeliveryEventsRepository
         .findByDestinationId(destinationId);
     
     if (pointOfDeliveryEvents == null) {
       return Collections.emptyList();
     }
-    return podToDto(pointOfDeliveryEvents);
+    return podToDto(pointOfDeliveryEvents, includeDiscrepancies);
+  }
+
+  /**
+   * Get a page of Point of Delivery events of a destination.
+   *
+   * @param destinationId     destination id.
+   * @param receivingDateFrom first receiving date (inclusive), optional.
+   * @param receivingDateTo   last receiving date (inclusive), optional.
+   * @param packingDateFrom   first packing date (inclusive), optional.
+   * @param packingDateTo     last packing date (inclusive), optional.
+   * @param includeDiscrepancies whether discrepancies of the page should be loaded, in a single
+   *                          query.
+   * @param pageable          page and sort.
+   * @return a page of pod events.
+   */
+  public Page<DispensingEventDto> searchDispensingEvents(UUID destinationId,
+      LocalDate receivingDateFrom, LocalDate receivingDateTo, LocalDate packingDateFrom,
+      LocalDate packingDateTo, boolean includeDiscrepancies, Pageable pageable) {
+    validateRange(receivingDateFrom, receivingDateTo);
+    validateRange(packingDateFrom, packingDateTo);
+
+    ZonedDateTime receivedFrom = startOfDay(receivingDateFrom);
+    ZonedDateTime receivedBefore = startOfDay(
+        receivingDateTo == null ? null : receivingDateTo.plusDays(1));
+
+    if (requiresArchive(receivingDateFrom, receivingDateTo, packingDateFrom, packingDateTo)) {
+      Page<DispensingEvent> page = pointOfDeliveryEventsRepository.findAllIncludingArchive(
+          destinationId, toDatabaseTime(receivedFrom), toDatabaseTime(receivedBefore),
+          packingDateFrom, packingDateTo, pageable);
+      Map<UUID, List<Discrepancy>> discrepancies = includeDiscrepancies
+          ? findDiscrepanciesIncludingArchive(page.getContent()) : null;
+      return page.map(event -> podToDto(event, discrepancies));
+    }
+
+    Specification<DispensingEvent> spec = Specification
+        .where(DispensingEventSpecifications.destinationIdEquals(destinationId))
+        .and(DispensingEventSpecifications.receivedFrom(receivedFrom))
+        .and(DispensingEventSpecifications.receivedBefore(receivedBefore))
+        .and(DispensingEventSpecifications.packedFrom(packingDateFrom))
+        .and(DispensingEventSpecifications.packedTo(packingDateTo));
+
+    return podToDto(pointOfDeliveryEventsRepository.findAll(spec, withIdTiebreak(pageable)),
+        includeDiscrepancies);
+  }
+
+  // the same sort rules as the archive path: unknown properties are rejected rather than
+  // failing in JPA, and id is sorted by last so that rows do not move between pages
+  private static Pageable withIdTiebreak(Pageable pageable) {
+    Sort sort = pageable.getSort();
+    for (Sort.Order order : sort) {
+      if (!SORTABLE_PROPERTIES.contains(order.getProperty())) {
+        throw new ValidationMessageException(ERROR_INVALID_PARAMS);
+      }
+    }
+    if (pageable.isUnpaged() || sort.getOrderFor(ID) != null) {
+      return pageable;
+    }
+    return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+        sort.and(Sort.by(ID)));
+  }
+
+  /**
+   * Find Point of Delivery events by waybill/reference number, e.g. for reconciliation.
+   *
+   * @param referenceNumber      the reference number, or its beginning when prefix is set.
+   * @param prefix               whether to match reference numbers starting with the value.
+   * @param sourceId             source id, optional.
+   * @param includeDiscrepancies whether discrepancies of the page should be loaded.
+   * @param pageable             page and sort.
+   * @return a page of pod events.
+   */
+  public Page<DispensingEventDto> findDispensingEventsByReferenceNumber(String referenceNumber,
+      boolean prefix, UUID sourceId, boolean includeDiscrepancies, Pageable pageable) {
+    if (StringUtils.isBlank(referenceNumber)) {
+      throw new ValidationMessageException(ERROR_POD_EVENT_REFERENCE_NUMBER_MISSING);
+    }
+
+    Specification<DispensingEvent> spec = Specification
+        .where(prefix
+            ? DispensingEventSpecifications.referenceNumberStartsWith(referenceNumber)
+            : DispensingEventSpecifications.referenceNumberEquals(referenceNumber))
+        .and(DispensingEventSpecifications.sourceIdEquals(sourceId));
+
+    return podToDto(pointOfDeliveryEventsRepository.findAll(spec, pageable),
+        includeDiscrepancies);
+  }
+
+  /**
+   * Get accepted and rejected carton and container totals per destination and month of
+   * receipt. Without a range, the last twelve months including the current one are used.
+   *
+   * @param destinationIds destination ids.
+   * @param from           first month (inclusive), optional.
+   * @param to             last month (inclusive), optional.
+   * @return one summary per destination and month that has events, ordered by both.
+   */
+  public List<DispensingEventMonthlySummary> summarizeDispensingEvents(
+      Collection<UUID> destinationIds, YearMonth from, YearMonth to) {
+    YearMonth lastMonth = to == null ? YearMonth.now(clock) : to;
+    YearMonth firstMonth = from == null
+        ? lastMonth.minusMonths(DEFAULT_SUMMARY_MONTHS - 1) : from;
+    if (firstMonth.isAfter(lastMonth)) {
+      throw new ValidationMessageException(ERROR_START_DATE_AFTER_END_DATE);
+    }
+
+    List<String> ids = destinationIds.stream()
+        .map(UUID::toString)
+        .collect(Collectors.toList());
+    return pointOfDeliveryEventsRepository.summarizeByMonth(ids,
+        toDatabaseTime(startOfDay(firstMonth.atDay(1))),
+        toDatabaseTime(startOfDay(lastMonth.plusMonths(1).atDay(1))));
+  }
+
+  private ZonedDateTime startOfDay(LocalDate date) {
+    return date == null ? null : date.atStartOfDay(clock.getZone());
+  }
+
+  // receivingdate is a timestamp without time zone holding the JVM local time Hibernate wrote,
+  // so native queries need the same instant as the JPA path, expressed in that zone
+  static LocalDateTime toDatabaseTime(ZonedDateTime time) {
+    return time == null ? null
+        : time.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+  }
+
+  // a date range reaching back before the archive cutoff also has to search archived events
+  private boolean requiresArchive(LocalDate... bounds) {
+    LocalDate cutoff = dispensingEventArchiver.getArchiveCutoff();
+    if (cutoff == null) {
+      return false;
+    }
+    for (LocalDate bound : bounds) {
+      if (bound != null && bound.isBefore(cutoff)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void validateRange(LocalDate from, LocalDate to) {
+    if (from != null && to != null && from.isAfter(to)) {
+      throw new ValidationMessageException(ERROR_START_DATE_AFTER_END_DATE);
+    }
   }
 
   /**
@@ -110,6 +329,146 @@ public class DispensingService {
     }
   }
 
+  /**
+   * Apply a JSON merge patch to a POD event. Only the supplied columns are updated, in a single
+   * statement, without loading the event. Discrepancies are merged by id: entries with an id
+   * update that discrepancy, entries without one are added.
+   *
+   * @param id    POD event id.
+   * @param patch merge patch document.
+   */
+  public void patchDispensingEvent(UUID id, ObjectNode patch) {
+    Map<String, Object> values = new HashMap<>();
+    JsonNode discrepancies = null;
+
+    Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      if (DISCREPANCIES.equals(field.getKey())) {
+        discrepancies = field.getValue();
+        continue;
+      }
+      Class<?> type = PATCHABLE_ATTRIBUTES.get(field.getKey());
+      if (type == null) {
+        throw new ValidationMessageException(
+            new Message(ERROR_POD_EVENT_PATCH_FIELD_INVALID, field.getKey()));
+      }
+      values.put(field.getKey(), readPatchValue(field.getKey(), field.getValue(), type));
+    }
+
+    if (values.containsKey(PACKING_DATE) && values.get(PACKING_DATE) == null) {
+      throw new ValidationMessageException(
+          new Message(ERROR_POD_EVENT_PACKING_DATE_MISSING, id));
+    }
+    values.forEach((attribute, value) -> {
+      if (value instanceof Integer && (Integer) value < 0) {
+        throw new ValidationMessageException(
+            new Message(ERROR_POD_EVENT_QUANTITY_NEGATIVE, id, attribute));
+      }
+    });
+
+    if (values.isEmpty()
+        ? !pointOfDeliveryEventsRepository.existsById(id)
+        : pointOfDeliveryEventsRepository.updateAttributes(id, values) == 0) {
+      throw new ResourceNotFoundException(new Message("Point of delivery event not found ", id));
+    }
+
+    if (discrepancies != null && !discrepancies.isNull()) {
+      mergeDiscrepancies(id, discrepancies);
+    }
+  }
+
+  private void mergeDiscrepancies(UUID eventId, JsonNode patches) {
+    if (!patches.isArray()) {
+      throw new ValidationMessageException(
+          new Message(ERROR_POD_EVENT_PATCH_VALUE_INVALID, DISCREPANCIES));
+    }
+
+    Map<UUID, Discrepancy> existing = null;
+    for (JsonNode discrepancyPatch : patches) {
+      if (!discrepancyPatch.isObject()) {
+        throw new ValidationMessageException(
+            new Message(ERROR_POD_EVENT_PATCH_VALUE_INVALID, DISCREPANCIES));
+      }
+
+      UUID discrepancyId = (UUID) readPatchValue(
+          DISCREPANCIES + ".id", discrepancyPatch.path("id"), UUID.class);
+      Discrepancy discrepancy;
+      if (discrepancyId == null) {
+        discrepancy = new Discrepancy();
+        discrepancy.setPointOfDeliveryEvent(pointOfDeliveryEventsRepository.getOne(eventId));
+      } else {
+        if (existing == null) {
+          existing = discrepancyRepository
+              .findByPointOfDeliveryEventIdIn(Collections.singleton(eventId)).stream()
+              .collect(Collectors.toMap(Discrepancy::getId, Function.identity()));
+        }
+        discrepancy = existing.get(discrepancyId);
+        if (discrepancy == null) {
+          throw new ValidationMessageException(
+              new Message(ERROR_POD_EVENT_DISCREPANCY_NOT_FOUND, discrepancyId, eventId));
+        }
+      }
+
+      applyDiscrepancyPatch(eventId, discrepancy, (ObjectNode) discrepancyPatch);
+      if (discrepancyId == null) {
+        discrepancyRepository.save(discrepancy);
+      }
+    }
+  }
+
+  private void applyDiscrepancyPatch(UUID eventId, Discrepancy discrepancy, ObjectNode patch) {
+    Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      String name = DISCREPANCIES + "." + field.getKey();
+      switch (field.getKey()) {
+        case "id":
+          break;
+        case "rejectionReason":
+          discrepancy.setRejectionReasonId((UUID) readPatchValue(
+              name + ".id", field.getValue().path("id"), UUID.class));
+          break;
+        case "shipmentType":
+          discrepancy.setShipmentType((String) readPatchValue(name, field.getValue(),
+              String.class));
+          break;
+        case "quantityAffected":
+          Integer quantity = (Integer) readPatchValue(name, field.getValue(), Integer.class);
+          if (quantity != null && quantity < 0) {
+            throw new ValidationMessageException(
+                new Message(ERROR_POD_EVENT_QUANTITY_NEGATIVE, eventId, name));
+          }
+          discrepancy.setQuantityAffected(quantity);
+          break;
+        case "comments":
+          discrepancy.setComments((String) readPatchValue(name, field.getValue(),
+              String.class));
+          break;
+        default:
+          throw new ValidationMessageException(
+              new Message(ERROR_POD_EVENT_PATCH_FIELD_INVALID, name));
+      }
+    }
+
+    if (discrepancy.getRejectionReasonId() == null) {
+      throw new ValidationMessageException(
+          new Message(ERROR_POD_EVENT_REJECTION_REASON_MISSING, eventId));
+    }
+  }
+
+  private Object readPatchValue(String field, JsonNode value, Class<?> type) {
+    if (value == null || value.isNull() || value.isMissingNode()) {
+      return null;
+    }
+    try {
+      return objectMapper.convertValue(value, type);
+    } catch (IllegalArgumentException ex) {
+      throw new ValidationMessageException(ex,
+          new Message(ERROR_POD_EVENT_PATCH_VALUE_INVALID, field));
+    }
+  }
+
   private DispensingEvent copyAttributes(
       DispensingEvent existingPodEvent, DispensingEvent incomingPodEvent) {
     if (incomingPodEvent.getSourceId() != null) {
@@ -175,7 +534,7 @@ public class DispensingService {
   }
 
   /**
-   * Delete POD.
+   * Delete POD. The event is flagged as deleted rather than removed.
    *
    * @param id POD event id.
    */
@@ -186,14 +545,10 @@ public class DispensingService {
 
     //checkIfDraftExists(dto, id);
     
-    LOGGER.info("Attempting to fetch pod event with id = " + id);
-    Optional<DispensingEvent> existingPodEventOpt = 
-        pointOfDeliveryEventsRepository.findById(id);
-
-    if (existingPodEventOpt.isPresent()) {
-      //delete pod event
-      pointOfDeliveryEventsRepository.delete(existingPodEventOpt.get());
-    } else {
+    LOGGER.info("Attempting to delete pod event with id = " + id);
+    // soft delete, the event is kept (and archived in time) but no longer returned
+    if (pointOfDeliveryEventsRepository.updateAttributes(id,
+        Collections.singletonMap(DELETED, true)) == 0) {
       throw new ResourceNotFoundException(new Message("Point of delivery event not found ", id));
     }
   }
@@ -202,16 +557,56 @@ public class DispensingService {
    * Create from jpa model.
    *
    * @param pointOfDeliveryEvents inventory jpa model.
+   * @param includeDiscrepancies whether discrepancies should be loaded.
    * @return created dto.
    */
   private List<DispensingEventDto> podToDto(
-        Collection<DispensingEvent> pointOfDeliveryEvents) {
+        Collection<DispensingEvent> pointOfDeliveryEvents, boolean includeDiscrepancies) {
 
+    Map<UUID, List<Discrepancy>> discrepancies = includeDiscrepancies
+        ? findDiscrepancies(pointOfDeliveryEvents) : null;
     List<DispensingEventDto> podDtos = new ArrayList<>(pointOfDeliveryEvents.size());
-    pointOfDeliveryEvents.forEach(i -> podDtos.add(podToDto(i)));
+    pointOfDeliveryEvents.forEach(i -> podDtos.add(podToDto(i, discrepancies)));
     return podDtos;
   }
 
+  private Page<DispensingEventDto> podToDto(Page<DispensingEvent> page,
+      boolean includeDiscrepancies) {
+    Map<UUID, List<Discrepancy>> discrepancies = includeDiscrepancies
+        ? findDiscrepancies(page.getContent()) : null;
+    return page.map(event -> podToDto(event, discrepancies));
+  }
+
+  private Map<UUID, List<Discrepancy>> findDiscrepancies(
+      Collection<DispensingEvent> pointOfDeliveryEvents) {
+    if (pointOfDeliveryEvents.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Set<UUID> eventIds = pointOfDeliveryEvents.stream()
+        .map(DispensingEvent::getId)
+        .collect(Collectors.toSet());
+    return discrepancyRepository.findByPointOfDeliveryEventIdIn(eventIds).stream()
+        .collect(Collectors.groupingBy(d -> d.getPointOfDeliveryEvent().getId()));
+  }
+
+  private Map<UUID, List<Discrepancy>> findDiscrepanciesIncludingArchive(
+      Collection<DispensingEvent> pointOfDeliveryEvents) {
+    if (pointOfDeliveryEvents.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Set<String> eventIds = pointOfDeliveryEvents.stream()
+        .map(event -> event.getId().toString())
+        .collect(Collectors.toSet());
+    return discrepancyRepository.findIncludingArchiveByEventIdIn(eventIds).stream()
+        .collect(Collectors.groupingBy(d -> d.getPointOfDeliveryEvent().getId()));
+  }
+
+  private DispensingEventDto podToDto(DispensingEvent pointOfDeliveryEvent,
+      Map<UUID, List<Discrepancy>> discrepancies) {
+    return podToDto(pointOfDeliveryEvent, discrepancies == null ? null
+        : discrepancies.getOrDefault(pointOfDeliveryEvent.getId(), Collections.emptyList()));
+  }
+
   /**
    * Create dto from jpa model.
    *
@@ -219,6 +614,11 @@ public class DispensingService {
    * @return created dto.
    */
   private DispensingEventDto podToDto(DispensingEvent pointOfDeliveryEvent) {
+    return podToDto(pointOfDeliveryEvent, pointOfDeliveryEvent.getDiscrepancies());
+  }
+
+  private DispensingEventDto podToDto(DispensingEvent pointOfDeliveryEvent,
+      List<Discrepancy> discrepancies) {
     return DispensingEventDto.builder()
       .id(pointOfDeliveryEvent.getId())
       .sourceId(pointOfDeliveryEvent.getSourceId())
@@ -240,7 +640,7 @@ public class DispensingService {
       .containersQuantityAccepted(pointOfDeliveryEvent.getContainersQuantityAccepted())
       .containersQuantityRejected(pointOfDeliveryEvent.getContainersQuantityRejected())
       .remarks(pointOfDeliveryEvent.getRemarks())
-      .discrepancies(discrepaciesToDtos(pointOfDeliveryEvent.getDiscrepancies()))
+      .discrepancies(discrepancies == null ? null : discrepaciesToDtos(discrepancies))
       .build();
   }
 
@@ -268,8 +668,7 @@ public class DispensingService {
 
     return DiscrepancyDto.builder()
       .id(discrepancy.getId())
-      .rejectionReason(
-          rejectionReasonService.findOne(discrepancy.getRejectionReasonId()))
+      .rejectionReason(rejectionReasonDictionary.get(discrepancy.getRejectionReasonId()))
       .shipmentType(discrepancy.getShipmentType())
       .quantityAffected(discrepancy.getQuantityAffected())
       .comments(discrepancy.getComments())
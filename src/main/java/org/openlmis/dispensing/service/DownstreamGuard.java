@@ -0,0 +1,217 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Circuit breaker and bulkhead for a single downstream service.
+ *
+ * <p>At most {@code maxConcurrentCalls} calls run at the same time; further callers wait up to
+ * {@code maxWait} for a slot and are rejected after that. After {@code failureThreshold}
+ * consecutive failures (I/O errors, timeouts and 5xx responses) the circuit opens and calls are
+ * rejected straight away. Once {@code openDuration} has passed a single probe call is let
+ * through: if it succeeds the circuit closes again, if it fails the circuit opens again, and any
+ * other outcome (e.g. a 4xx response) lets the next caller probe.
+ *
+ * <p>Only the probe can close the circuit. Outcomes of calls admitted before the last state
+ * change are ignored, so a slow call that started while the circuit was closed does not close
+ * (or count towards) a circuit that has opened in the meantime.
+ */
+public class DownstreamGuard {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DownstreamGuard.class);
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private enum Outcome {
+    SUCCESS, FAILURE, NEUTRAL
+  }
+
+  private final String name;
+  private final int maxConcurrentCalls;
+  private final Duration maxWait;
+  private final int failureThreshold;
+  private final Duration openDuration;
+  private final Clock clock;
+
+  private final Semaphore bulkhead;
+  private volatile State state = State.CLOSED;
+  private long generation;
+  private int consecutiveFailures;
+  private boolean probing;
+  private Instant openedAt = Instant.MIN;
+
+  /**
+   * Creates a closed guard.
+   *
+   * @param name               name of the downstream service, used in logs and messages.
+   * @param maxConcurrentCalls maximum number of calls running at the same time.
+   * @param maxWait            how long a caller waits for a free slot.
+   * @param failureThreshold   consecutive failures after which the circuit opens.
+   * @param openDuration       how long the circuit stays open before a probe is let through.
+   * @param clock              source of the current time.
+   */
+  public DownstreamGuard(String name, int maxConcurrentCalls, Duration maxWait,
+      int failureThreshold, Duration openDuration, Clock clock) {
+    this.name = name;
+    this.maxConcurrentCalls = maxConcurrentCalls;
+    this.maxWait = maxWait;
+    this.failureThreshold = failureThreshold;
+    this.openDuration = openDuration;
+    this.clock = clock;
+    this.bulkhead = new Semaphore(maxConcurrentCalls, true);
+  }
+
+  /**
+   * Runs the call unless the circuit is open or the bulkhead is full.
+   *
+   * @param call      the call to the downstream service.
+   * @param rejection builds the exception thrown when the call is rejected, from the reason.
+   * @return result of the call.
+   */
+  public <T> T execute(Supplier<T> call, Function<String, RuntimeException> rejection) {
+    Permit permit = admit();
+    if (null == permit) {
+      throw rejection.apply(String.format("Circuit breaker for %s is open", name));
+    }
+
+    if (!tryAcquireSlot()) {
+      onOutcome(permit, Outcome.NEUTRAL);
+      throw rejection.apply(String.format(
+          "Too many concurrent calls to %s (limit %d)", name, maxConcurrentCalls));
+    }
+
+    try {
+      T result = call.get();
+      onOutcome(permit, Outcome.SUCCESS);
+      return result;
+    } catch (RuntimeException ex) {
+      onOutcome(permit, isFailure(ex) ? Outcome.FAILURE : Outcome.NEUTRAL);
+      throw ex;
+    } finally {
+      bulkhead.release();
+    }
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public int getActiveCalls() {
+    return maxConcurrentCalls - bulkhead.availablePermits();
+  }
+
+  /**
+   * Lets the call through if the circuit is closed, or makes it the probe call if an open circuit
+   * has expired and no other probe is running.
+   *
+   * @return permit of the call, or null if the call is rejected.
+   */
+  private synchronized Permit admit() {
+    if (State.OPEN == state && !clock.instant().isBefore(openedAt.plus(openDuration))) {
+      transitionTo(State.HALF_OPEN);
+    }
+
+    if (State.CLOSED == state) {
+      return new Permit(false, generation);
+    }
+    if (State.HALF_OPEN == state && !probing) {
+      probing = true;
+      return new Permit(true, generation);
+    }
+    return null;
+  }
+
+  private synchronized void onOutcome(Permit permit, Outcome outcome) {
+    if (permit.generation != generation) {
+      // admitted under an earlier state, the outcome says nothing about the current one
+      return;
+    }
+
+    if (permit.probe) {
+      probing = false;
+      if (Outcome.SUCCESS == outcome) {
+        consecutiveFailures = 0;
+        transitionTo(State.CLOSED);
+      } else if (Outcome.FAILURE == outcome) {
+        open();
+      }
+      return;
+    }
+
+    if (Outcome.SUCCESS == outcome) {
+      consecutiveFailures = 0;
+    } else if (Outcome.FAILURE == outcome && ++consecutiveFailures >= failureThreshold) {
+      open();
+    }
+  }
+
+  private void open() {
+    openedAt = clock.instant();
+    transitionTo(State.OPEN);
+  }
+
+  private void transitionTo(State newState) {
+    if (newState == state) {
+      return;
+    }
+
+    state = newState;
+    generation++;
+    if (State.OPEN == newState) {
+      LOGGER.warn("Circuit breaker for {} opened", name);
+    } else if (State.CLOSED == newState) {
+      LOGGER.info("Circuit breaker for {} closed", name);
+    }
+  }
+
+  private boolean tryAcquireSlot() {
+    try {
+      return bulkhead.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static boolean isFailure(RuntimeException ex) {
+    return ex instanceof ResourceAccessException
+        || ex instanceof HttpStatusCodeException
+        && ((HttpStatusCodeException) ex).getStatusCode().is5xxServerError();
+  }
+
+  private static final class Permit {
+    private final boolean probe;
+    private final long generation;
+
+    Permit(boolean probe, long generation) {
+      this.probe = probe;
+      this.generation = generation;
+    }
+  }
+}
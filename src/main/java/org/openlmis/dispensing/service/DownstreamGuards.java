@@ -0,0 +1,99 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds one {@link DownstreamGuard} per downstream service and reports their state as metrics.
+ * Limits are read from {@code dispensing.downstream.<service>.*}, falling back to
+ * {@code dispensing.downstream.*}.
+ */
+@Component
+public class DownstreamGuards {
+  private static final String PROPERTY_PREFIX = "dispensing.downstream.";
+  private static final String METRIC_PREFIX = "dispensing.downstream.";
+  private static final String SERVICE_TAG = "service";
+
+  @Autowired
+  private Environment environment;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private Clock clock;
+
+  private final ConcurrentMap<String, DownstreamGuard> guards = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> rejections = new ConcurrentHashMap<>();
+
+  /**
+   * Runs the call through the guard of the given downstream service.
+   *
+   * @param service   key of the downstream service, e.g. {@code referencedata}.
+   * @param call      the call to the downstream service.
+   * @param rejection builds the exception thrown when the call is rejected, from the reason.
+   * @return result of the call.
+   */
+  public <T> T execute(String service, Supplier<T> call,
+      Function<String, RuntimeException> rejection) {
+    return guards.computeIfAbsent(service, this::create)
+        .execute(call, reason -> {
+          rejections.get(service).increment();
+          return rejection.apply(reason);
+        });
+  }
+
+  private DownstreamGuard create(String service) {
+    DownstreamGuard guard = new DownstreamGuard(service,
+        getProperty(service, "maxConcurrentCalls"),
+        Duration.ofMillis(getProperty(service, "maxWaitMillis")),
+        getProperty(service, "failureThreshold"),
+        Duration.ofSeconds(getProperty(service, "openSeconds")),
+        clock);
+
+    Gauge.builder(METRIC_PREFIX + "circuitState", guard, g -> g.getState().ordinal())
+        .description("0 closed, 1 open, 2 half open")
+        .tag(SERVICE_TAG, service)
+        .register(meterRegistry);
+    Gauge.builder(METRIC_PREFIX + "activeCalls", guard, DownstreamGuard::getActiveCalls)
+        .tag(SERVICE_TAG, service)
+        .register(meterRegistry);
+    rejections.put(service, meterRegistry.counter(METRIC_PREFIX + "rejected", SERVICE_TAG,
+        service));
+
+    return guard;
+  }
+
+  private int getProperty(String service, String name) {
+    Integer value = environment.getProperty(PROPERTY_PREFIX + service + '.' + name,
+        Integer.class);
+    return null == value
+        ? environment.getRequiredProperty(PROPERTY_PREFIX + name, Integer.class)
+        : value;
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_NO_FOLLOWING_PERMISSION;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openlmis.dispensing.exception.PermissionMessageException;
+import org.openlmis.dispensing.service.referencedata.UserReferenceDataService;
+import org.openlmis.dispensing.util.AuthenticationHelper;
+import org.openlmis.dispensing.util.Message;
+import org.openlmis.dispensing.util.SingleFlight;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.stereotype.Service;
+
+/**
+ * Checks rights of the current user in memory. The permission strings of each user are kept
+ * together with their ETag and revalidated with a conditional request once they are older than
+ * {@code dispensing.permissions.revalidateAfterSeconds}; a 304 response keeps the cached ones.
+ */
+@Service
+public class PermissionService {
+  public static final String PODS_MANAGE = "PODS_MANAGE";
+  public static final String PODS_VIEW = "PODS_VIEW";
+
+  private static final long CACHE_MAX_SIZE = 1000;
+  private static final long CACHE_IDLE_HOURS = 1;
+
+  @Autowired
+  private UserReferenceDataService userReferenceDataService;
+
+  @Autowired
+  private AuthenticationHelper authenticationHelper;
+
+  @Autowired
+  private Clock clock;
+
+  private long revalidateAfterSeconds;
+
+  private final Cache<UUID, UserPermissions> permissions = CacheBuilder.newBuilder()
+      .maximumSize(CACHE_MAX_SIZE)
+      .expireAfterAccess(CACHE_IDLE_HOURS, TimeUnit.HOURS)
+      .build();
+  private final SingleFlight<UUID, UserPermissions> revalidations = new SingleFlight<>();
+
+  /**
+   * Checks that the current user has the given right. Requests made with a client (service)
+   * token are trusted, any other request without a user is denied.
+   *
+   * @param rightName  name of the right.
+   * @param programId  program to check, {@code null} for general and fulfillment rights.
+   * @param facilityId facility to check, {@code null} for general rights.
+   * @throws PermissionMessageException if the user does not have the right.
+   */
+  public void checkPermission(String rightName, UUID programId, UUID facilityId) {
+    if (!hasPermission(rightName, programId, facilityId)) {
+      throw new PermissionMessageException(
+          new Message(ERROR_NO_FOLLOWING_PERMISSION, rightName, programId, facilityId));
+    }
+  }
+
+  /**
+   * Checks whether the current user has the given right. Requests made with a client (service)
+   * token are trusted, any other request without a user is denied.
+   *
+   * @param rightName  name of the right.
+   * @param programId  program to check, {@code null} for general and fulfillment rights.
+   * @param facilityId facility to check, {@code null} for general rights.
+   * @return true if the user has the right.
+   */
+  public boolean hasPermission(String rightName, UUID programId, UUID facilityId) {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication instanceof OAuth2Authentication
+        && ((OAuth2Authentication) authentication).isClientOnly()) {
+      return true;
+    }
+
+    UUID userId = authenticationHelper.getCurrentUserId();
+    if (null == userId) {
+      return false;
+    }
+
+    return getPermissionStrings(userId)
+        .contains(new PermissionStringDto(rightName, facilityId, programId));
+  }
+
+  /**
+   * Returns the permission strings of the given user, revalidating them with referencedata
+   * when they are older than the configured interval.
+   *
+   * @param userId id of the user.
+   * @return permission strings of the user.
+   */
+  public Set<PermissionStringDto> getPermissionStrings(UUID userId) {
+    UserPermissions cached;
+    try {
+      cached = permissions.get(userId, () -> fetch(userId, null));
+    } catch (ExecutionException | UncheckedExecutionException ex) {
+      Throwables.propagateIfPossible(ex.getCause());
+      throw new IllegalStateException(ex.getCause());
+    }
+
+    if (clock.instant().isBefore(cached.validatedAt.plusSeconds(revalidateAfterSeconds))) {
+      return cached.permissionStrings;
+    }
+
+    UserPermissions revalidated = revalidations.execute(userId, () -> revalidate(userId, cached));
+    permissions.put(userId, revalidated);
+    return revalidated.permissionStrings;
+  }
+
+  /**
+   * Forgets the cached permission strings of the given user.
+   *
+   * @param userId id of the user.
+   */
+  public void evict(UUID userId) {
+    permissions.invalidate(userId);
+  }
+
+  /**
+   * Sets how long cached permission strings are used before they are revalidated.
+   *
+   * @param revalidateAfterSeconds interval in seconds, 0 revalidates on every check.
+   */
+  @Value("${dispensing.permissions.revalidateAfterSeconds}")
+  public void setRevalidateAfterSeconds(long revalidateAfterSeconds) {
+    this.revalidateAfterSeconds = revalidateAfterSeconds;
+  }
+
+  private UserPermissions revalidate(UUID userId, UserPermissions cached) {
+    UserPermissions current = permissions.getIfPresent(userId);
+    if (null != current && current != cached) {
+      // revalidated by another caller in the meantime
+      return current;
+    }
+    return fetch(userId, cached);
+  }
+
+  private UserPermissions fetch(UUID userId, UserPermissions cached) {
+    Instant requestedAt = clock.instant();
+    ServiceResponse<List<String>> response = userReferenceDataService
+        .getPermissionStrings(userId, null == cached ? null : cached.etag);
+
+    if (null != cached && !response.isModified()) {
+      String etag = null == response.getETag() ? cached.etag : response.getETag();
+      return new UserPermissions(cached.permissionStrings, etag, requestedAt);
+    }
+
+    Set<PermissionStringDto> permissionStrings = response.getBody()
+        .stream()
+        .map(PermissionStringDto::from)
+        .collect(Collectors.toSet());
+
+    return new UserPermissions(Collections.unmodifiableSet(permissionStrings),
+        response.getETag(), requestedAt);
+  }
+
+  private static final class UserPermissions {
+    private final Set<PermissionStringDto> permissionStrings;
+    private final String etag;
+    private final Instant validatedAt;
+
+    UserPermissions(Set<PermissionStringDto> permissionStrings, String etag,
+        Instant validatedAt) {
+      this.permissionStrings = permissionStrings;
+      this.etag = etag;
+      this.validatedAt = validatedAt;
+    }
+  }
+}
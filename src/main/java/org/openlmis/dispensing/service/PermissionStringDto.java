@@ -0,0 +1,52 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import java.util.UUID;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A single permission string as returned by referencedata, in the form
+ * {@code RIGHT_NAME[|FACILITY_ID[|PROGRAM_ID]]}.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class PermissionStringDto {
+  private static final String SEPARATOR = "\\|";
+
+  private String rightName;
+  private UUID facilityId;
+  private UUID programId;
+
+  /**
+   * Parses a permission string.
+   *
+   * @param permissionString the string to parse.
+   * @return parsed permission string.
+   */
+  public static PermissionStringDto from(String permissionString) {
+    String[] elements = permissionString.split(SEPARATOR);
+    UUID facilityId = elements.length > 1 ? UUID.fromString(elements[1]) : null;
+    UUID programId = elements.length > 2 ? UUID.fromString(elements[2]) : null;
+
+    return new PermissionStringDto(elements[0], facilityId, programId);
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds one {@link RetryPolicy} per downstream service. Settings are read from
+ * {@code dispensing.retry.<service>.*}, falling back to {@code dispensing.retry.*}.
+ */
+@Component
+public class RetryPolicies {
+  private static final String PROPERTY_PREFIX = "dispensing.retry.";
+
+  @Autowired
+  private Environment environment;
+
+  private final ConcurrentMap<String, RetryPolicy> policies = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the retry policy of the given downstream service.
+   *
+   * @param service key of the downstream service, e.g. {@code referencedata}.
+   * @return the retry policy.
+   */
+  public RetryPolicy forService(String service) {
+    return policies.computeIfAbsent(service, this::create);
+  }
+
+  private RetryPolicy create(String service) {
+    Set<HttpMethod> methods = Arrays
+        .stream(getProperty(service, "methods", String[].class))
+        .map(String::trim)
+        .map(HttpMethod::valueOf)
+        .collect(Collectors.toSet());
+    Set<Integer> statuses = Arrays
+        .stream(getProperty(service, "statuses", Integer[].class))
+        .collect(Collectors.toSet());
+
+    return new RetryPolicy(
+        getProperty(service, "maxAttempts", Integer.class),
+        Duration.ofMillis(getProperty(service, "initialBackoffMillis", Long.class)),
+        Duration.ofMillis(getProperty(service, "maxBackoffMillis", Long.class)),
+        getProperty(service, "multiplier", Double.class),
+        methods, statuses);
+  }
+
+  private <T> T getProperty(String service, String name, Class<T> type) {
+    T value = environment.getProperty(PROPERTY_PREFIX + service + '.' + name, type);
+    return null == value
+        ? environment.getRequiredProperty(PROPERTY_PREFIX + name, type)
+        : value;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Decides whether a failed request to a downstream service is retried and how long to wait
+ * before the next attempt. Only requests that are safe to repeat are retried: idempotent
+ * methods, or requests that carry an idempotency key, and only on I/O errors or transient
+ * status codes. The wait grows exponentially and is fully jittered, so that callers retrying
+ * at the same time spread out instead of hitting the service together.
+ */
+public class RetryPolicy {
+  private final int maxAttempts;
+  private final Duration initialBackoff;
+  private final Duration maxBackoff;
+  private final double multiplier;
+  private final Set<HttpMethod> retryableMethods;
+  private final Set<Integer> retryableStatuses;
+
+  /**
+   * Creates a retry policy.
+   *
+   * @param maxAttempts       maximum number of attempts, including the first one.
+   * @param initialBackoff    upper bound of the wait before the second attempt.
+   * @param maxBackoff        upper bound of any wait.
+   * @param multiplier        growth of the wait bound with each attempt.
+   * @param retryableMethods  methods that are safe to repeat.
+   * @param retryableStatuses status codes that are considered transient.
+   */
+  public RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff,
+      double multiplier, Set<HttpMethod> retryableMethods, Set<Integer> retryableStatuses) {
+    this.maxAttempts = maxAttempts;
+    this.initialBackoff = initialBackoff;
+    this.maxBackoff = maxBackoff;
+    this.multiplier = multiplier;
+    this.retryableMethods = retryableMethods;
+    this.retryableStatuses = retryableStatuses;
+  }
+
+  /**
+   * Checks whether the request that failed with the given exception should be attempted again.
+   *
+   * @param method            method of the request.
+   * @param hasIdempotencyKey whether the request carries an idempotency key.
+   * @param attempt           number of the attempt that failed, starting with 1.
+   * @param ex                the failure.
+   * @return true if the request should be retried.
+   */
+  public boolean shouldRetry(HttpMethod method, boolean hasIdempotencyKey, int attempt,
+      RuntimeException ex) {
+    if (attempt >= maxAttempts
+        || !hasIdempotencyKey && !retryableMethods.contains(method)) {
+      return false;
+    }
+
+    if (ex instanceof HttpStatusCodeException) {
+      return retryableStatuses.contains(((HttpStatusCodeException) ex).getRawStatusCode());
+    }
+    return ex instanceof ResourceAccessException;
+  }
+
+  /**
+   * Returns how long to wait after the given failed attempt: a random duration between zero and
+   * {@code initialBackoff * multiplier^(attempt - 1)}, capped at {@code maxBackoff}.
+   *
+   * @param attempt number of the attempt that failed, starting with 1.
+   * @return the wait before the next attempt.
+   */
+  public Duration getBackoff(int attempt) {
+    double bound = Math.min(maxBackoff.toMillis(),
+        initialBackoff.toMillis() * Math.pow(multiplier, attempt - 1.0));
+    return Duration.ofMillis((long) (ThreadLocalRandom.current().nextDouble() * bound));
+  }
+}
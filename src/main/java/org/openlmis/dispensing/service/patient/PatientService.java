@@ -33,9 +33,9 @@ import org.openlmis.dispensing.dto.patient.ContactDto;
 import org.openlmis.dispensing.dto.patient.MedicalHistoryDto;
 import org.openlmis.dispensing.dto.patient.PatientDto;
 import org.openlmis.dispensing.dto.patient.PersonDto;
+import org.openlmis.dispensing.dto.referencedata.GeographicZoneDto;
 import org.openlmis.dispensing.repository.patient.PatientRepository;
-import org.openlmis.dispensing.service.referencedata.FacilityReferenceDataService;
-import org.openlmis.dispensing.service.referencedata.GeographicZoneReferenceDataService;
+import org.openlmis.dispensing.service.referencedata.GeographicHierarchyService;
 import org.openlmis.dispensing.util.PatientSpecifications;
 
 //import org.slf4j.Logger;
@@ -58,10 +58,7 @@ public class PatientService {
   private PatientRepository patientRepository;
 
   @Autowired
-  private FacilityReferenceDataService facilityReferenceDataService;
-
-  @Autowired
-  private GeographicZoneReferenceDataService geographicZoneReferenceDataService;
+  private GeographicHierarchyService geographicHierarchyService;
 
   /**
    * Search for patients.
@@ -144,13 +141,13 @@ public class PatientService {
     }
     
     //given facility SHOULD exist
-    if (facilityReferenceDataService.exists(patientDto.getFacilityId())
-        && geographicZoneReferenceDataService.exists(patientDto.getGeoZoneId())) {
+    GeographicZoneDto geoZone = geographicHierarchyService.findGeographicZone(patientDto.getGeoZoneId());
+    if (geographicHierarchyService.facilityExists(patientDto.getFacilityId()) && geoZone != null) {
       Patient patient = new Patient();
       LocalDate today = LocalDate.now();
 
-      //String facilityCode = facilityReferenceDataService.findOne(patientDto.getFacilityId()).getCode();
-      String geoZoneCode = geographicZoneReferenceDataService.findOne(patientDto.getGeoZoneId()).getCode();
+      //String facilityCode = geographicHierarchyService.findFacility(patientDto.getFacilityId()).getCode();
+      String geoZoneCode = geoZone.getCode();
       //patient.setPatientNumber(generatePatientNumber(patientDto.getFacilityId(), facilityCode, today));
       patient.setPatientNumber(generatePatientNumber(patientDto.getGeoZoneId(), geoZoneCode, today));
       patient.setPerson(convertToPersonEntity(patientDto.getPersonDto()));
@@ -0,0 +1,170 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.prescription;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.openlmis.dispensing.domain.prescription.Prescription;
+import org.openlmis.dispensing.domain.prescription.PrescriptionLineItem;
+import org.openlmis.dispensing.dto.referencedata.FacilityDto;
+import org.openlmis.dispensing.dto.referencedata.LotDto;
+import org.openlmis.dispensing.dto.referencedata.OrderableDto;
+import org.openlmis.dispensing.repository.prescription.PrescriptionLineItemRepository;
+import org.openlmis.dispensing.repository.prescription.PrescriptionRepository;
+import org.openlmis.dispensing.service.referencedata.FacilityReferenceDataService;
+import org.openlmis.dispensing.service.referencedata.GeographicHierarchyService;
+import org.openlmis.dispensing.service.referencedata.ReferenceDataReplicaService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Maintains the reference data display fields stored on prescriptions and their line items
+ * (facility name, orderable names and lot code), so that reading a prescription needs no
+ * remote call.
+ */
+@Service
+public class PrescriptionReadModelService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PrescriptionReadModelService.class);
+
+  @Autowired
+  private PrescriptionRepository prescriptionRepository;
+
+  @Autowired
+  private PrescriptionLineItemRepository prescriptionLineItemRepository;
+
+  @Autowired
+  private FacilityReferenceDataService facilityReferenceDataService;
+
+  @Autowired
+  private ReferenceDataReplicaService referenceDataReplicaService;
+
+  @Autowired
+  private GeographicHierarchyService geographicHierarchyService;
+
+  /**
+   * Resolves the display fields that are still missing on the prescription: the facility name
+   * from the in-memory geographic hierarchy and the line item fields from the local orderable
+   * and lot replicas. Line item fields that cannot be resolved locally are left empty for the
+   * scheduled refresh and resolved on read until then.
+   *
+   * @param prescription prescription about to be saved.
+   */
+  public void populate(Prescription prescription) {
+    if (prescription.getFacilityName() == null && prescription.getFacilityId() != null) {
+      FacilityDto facility = geographicHierarchyService.findFacility(prescription.getFacilityId());
+      prescription.setFacilityName(facility != null ? facility.getName() : null);
+    }
+
+    if (prescription.getLineItems() == null || prescription.getLineItems().isEmpty()) {
+      return;
+    }
+
+    Set<UUID> orderableIds = new HashSet<>();
+    Set<UUID> lotIds = new HashSet<>();
+    for (PrescriptionLineItem lineItem : prescription.getLineItems()) {
+      if (lineItem.getOrderablePrescribed() != null && lineItem.getOrderablePrescribedName() == null) {
+        orderableIds.add(lineItem.getOrderablePrescribed());
+      }
+      if (lineItem.getOrderableDispensed() != null && lineItem.getOrderableDispensedName() == null) {
+        orderableIds.add(lineItem.getOrderableDispensed());
+      }
+      if (lineItem.getLotId() != null && lineItem.getLotCode() == null) {
+        lotIds.add(lineItem.getLotId());
+      }
+    }
+
+    Map<UUID, String> orderableNames = toOrderableNames(
+        referenceDataReplicaService.findReplicatedOrderables(orderableIds));
+    Map<UUID, String> lotCodes = toLotCodes(referenceDataReplicaService.findReplicatedLots(lotIds));
+    for (PrescriptionLineItem lineItem : prescription.getLineItems()) {
+      if (lineItem.getOrderablePrescribedName() == null) {
+        lineItem.setOrderablePrescribedName(orderableNames.get(lineItem.getOrderablePrescribed()));
+      }
+      if (lineItem.getOrderableDispensedName() == null) {
+        lineItem.setOrderableDispensedName(orderableNames.get(lineItem.getOrderableDispensed()));
+      }
+      if (lineItem.getLotCode() == null) {
+        lineItem.setLotCode(lotCodes.get(lineItem.getLotId()));
+      }
+    }
+  }
+
+  /**
+   * Re-resolves every referenced facility, orderable and lot in bulk and rewrites the stored
+   * display fields that changed (or were never set) in reference data. Orderables and lots are
+   * read from the local replicas.
+   */
+  @Scheduled(cron = "${dispensing.prescriptionReadModel.refreshCron}")
+  @Transactional
+  public void refresh() {
+    LOGGER.info("Refreshing prescription read model");
+    int updated = 0;
+
+    Set<UUID> facilityIds = prescriptionRepository.findDistinctFacilityIds();
+    if (!facilityIds.isEmpty()) {
+      for (FacilityDto facility : facilityReferenceDataService.findByIds(facilityIds).values()) {
+        if (facility.getName() != null) {
+          updated += prescriptionRepository.updateFacilityName(facility.getId(), facility.getName());
+        }
+      }
+    }
+
+    Set<UUID> prescribedIds = prescriptionLineItemRepository.findDistinctOrderablePrescribedIds();
+    Set<UUID> dispensedIds = prescriptionLineItemRepository.findDistinctOrderableDispensedIds();
+    Set<UUID> orderableIds = new HashSet<>(prescribedIds);
+    orderableIds.addAll(dispensedIds);
+    Map<UUID, String> orderableNames = toOrderableNames(
+        referenceDataReplicaService.findOrderables(orderableIds));
+    for (Map.Entry<UUID, String> orderable : orderableNames.entrySet()) {
+      if (prescribedIds.contains(orderable.getKey())) {
+        updated += prescriptionLineItemRepository
+            .updateOrderablePrescribedName(orderable.getKey(), orderable.getValue());
+      }
+      if (dispensedIds.contains(orderable.getKey())) {
+        updated += prescriptionLineItemRepository
+            .updateOrderableDispensedName(orderable.getKey(), orderable.getValue());
+      }
+    }
+
+    Map<UUID, String> lotCodes = toLotCodes(
+        referenceDataReplicaService.findLots(prescriptionLineItemRepository.findDistinctLotIds()));
+    for (Map.Entry<UUID, String> lot : lotCodes.entrySet()) {
+      updated += prescriptionLineItemRepository.updateLotCode(lot.getKey(), lot.getValue());
+    }
+
+    LOGGER.info("Prescription read model refreshed, {} rows updated", updated);
+  }
+
+  private static Map<UUID, String> toOrderableNames(Map<UUID, OrderableDto> orderables) {
+    return orderables.values().stream()
+        .filter(orderable -> orderable.getFullProductName() != null)
+        .collect(Collectors.toMap(OrderableDto::getId, OrderableDto::getFullProductName,
+            (first, second) -> first));
+  }
+
+  private static Map<UUID, String> toLotCodes(Map<UUID, LotDto> lots) {
+    return lots.values().stream()
+        .filter(lot -> lot.getLotCode() != null)
+        .collect(Collectors.toMap(LotDto::getId, LotDto::getLotCode));
+  }
+}
@@ -15,19 +15,31 @@
 
 package org.openlmis.dispensing.service.prescription;
 
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_START_DATE_AFTER_END_DATE;
+import static org.openlmis.dispensing.i18n.MessageKeys.PRESCRIPTION_STATUS_MESSAGE_VOIDED;
+
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
 import org.openlmis.dispensing.domain.patient.Patient;
 import org.openlmis.dispensing.domain.prescription.Prescription;
 import org.openlmis.dispensing.domain.prescription.PrescriptionLineItem;
 import org.openlmis.dispensing.domain.status.PrescriptionLineItemStatus;
 import org.openlmis.dispensing.domain.status.PrescriptionStatus;
-import org.openlmis.dispensing.dto.patient.PatientDto;
+import org.openlmis.dispensing.dto.prescription.DueListItemDto;
 import org.openlmis.dispensing.dto.prescription.PrescriptionDto;
 import org.openlmis.dispensing.dto.prescription.PrescriptionLineItemDto;
 import org.openlmis.dispensing.dto.referencedata.FacilityDto;
@@ -37,12 +49,13 @@ import org.openlmis.dispensing.dto.stockmanagement.StockCardSummaryDto;
 import org.openlmis.dispensing.dto.stockmanagement.StockEventDto;
 import org.openlmis.dispensing.dto.stockmanagement.StockEventLineItemDto;
 import org.openlmis.dispensing.exception.ResourceNotFoundException;
+import org.openlmis.dispensing.exception.ValidationMessageException;
+import org.openlmis.dispensing.i18n.MessageService;
 import org.openlmis.dispensing.repository.patient.PatientRepository;
 import org.openlmis.dispensing.repository.prescription.PrescriptionRepository;
-import org.openlmis.dispensing.service.patient.PatientService;
+import org.openlmis.dispensing.service.prescription.PrescriptionStatusCounterService.CounterKey;
 import org.openlmis.dispensing.service.referencedata.FacilityReferenceDataService;
-import org.openlmis.dispensing.service.referencedata.LotReferenceDataService;
-import org.openlmis.dispensing.service.referencedata.OrderableReferenceDataService;
+import org.openlmis.dispensing.service.referencedata.ReferenceDataReplicaService;
 import org.openlmis.dispensing.service.stockmanagement.StockCardSummariesStockManagementService;
 import org.openlmis.dispensing.service.stockmanagement.StockEventStockManagementService;
 import org.openlmis.dispensing.util.Message;
@@ -52,6 +65,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -61,16 +75,13 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 public class PrescriptionService {
   private static final Logger LOGGER = LoggerFactory.getLogger(PrescriptionService.class);
+  private static final List<PrescriptionLineItemStatus> OUTSTANDING_BALANCE_STATUSES = Arrays.asList(
+      PrescriptionLineItemStatus.PARTIALLY_SERVED, PrescriptionLineItemStatus.INADEQUATE_STOCK);
 
   @Autowired
   private PrescriptionRepository prescriptionRepository;
   @Autowired
   private PatientRepository patientRepository;
-  @Autowired
-  private PatientService patientService;
-
-  @Autowired
-  private LotReferenceDataService lotReferenceDataService;
 
   @Autowired
   private FacilityReferenceDataService facilityReferenceDataService;
@@ -82,7 +93,19 @@ public class PrescriptionService {
   private StockEventStockManagementService stockEventStockManagementService;
 
   @Autowired
-  private OrderableReferenceDataService orderableReferenceDataService;
+  private ReferenceDataReplicaService referenceDataReplicaService;
+
+  @Autowired
+  private PrescriptionStatusCounterService prescriptionStatusCounterService;
+
+  @Autowired
+  private StatusChangeService statusChangeService;
+
+  @Autowired
+  private PrescriptionReadModelService prescriptionReadModelService;
+
+  @Autowired
+  private MessageService messageService;
 
   @Value("${dispensing.dispensingdebit.reasonId}")
   private String dispensingDebitReasonId;
@@ -103,27 +126,38 @@ public class PrescriptionService {
    * @param dto prescription dto.
    * @return a updated prescription dto.
    */
+  @Transactional
   public PrescriptionDto updatePrescription(UUID id, PrescriptionDto dto) {
-    Optional<Prescription> existingPrescription = prescriptionRepository.findById(id);
+    Optional<Prescription> existingPrescription = prescriptionRepository.findForUpdateById(id);
 
     if (!existingPrescription.isPresent()) {
       return null;
     }
 
     Prescription prescription = existingPrescription.get();
+    Map<CounterKey, Long> countsBefore = prescriptionStatusCounterService.snapshot(prescription);
+    PrescriptionStatus statusBefore = prescription.getStatus();
     updatePrescriptionEntity(prescription, dto);
+    prescriptionReadModelService.populate(prescription);
     prescription = prescriptionRepository.save(prescription);
+    prescriptionStatusCounterService.recordTransition(countsBefore, prescription);
+    if (prescription.getStatus() != statusBefore || StringUtils.isNotBlank(dto.getStatusMessage())) {
+      statusChangeService.recordStatusChange(prescription, dto.getStatusMessage());
+    }
 
     return prescriptionToDto(prescription);
   }
 
   /**
-   * Serve a Prescription.
+   * Serve a Prescription. Stock on hand is checked and debited before the prescription row is
+   * locked, so the lock is not held while stock management responds; only the status changes,
+   * the save and the counter adjustment run under the lock.
    *
    * @param id  prescription id.
    * @param dto prescription dto.
    * @return a updated prescription dto.
    */
+  @Transactional
   public PrescriptionDto servePrescription(UUID id, PrescriptionDto dto) {
     Optional<Prescription> existingPrescriptionOpt = prescriptionRepository.findById(id);
 
@@ -131,82 +165,33 @@ public class PrescriptionService {
       return null;
     }
     Prescription existingPrescription = existingPrescriptionOpt.get();
-    
-    //Incoming prescription
-    Prescription prescription = existingPrescription;
-    updatePrescriptionEntity(prescription, dto);
-    //convertToPrescriptionEntity(dto);
-    
+
+    //Incoming line items, not applied to the prescription until it is locked
+    List<PrescriptionLineItem> lineItemsToServe = dto.getLineItems() == null
+        ? existingPrescription.getLineItems()
+        : dto.getLineItems().stream()
+            .map(lineItemDto -> convertToPrescriptionLineItemEntity(lineItemDto, existingPrescription))
+            .collect(Collectors.toList());
+    UUID facilityId = dto.getFacilityId() != null
+        ? dto.getFacilityId() : existingPrescription.getFacilityId();
+    UUID servedByUserId = dto.getServedByUserId() != null
+        ? dto.getServedByUserId() : existingPrescription.getServedByUserId();
+
     // debit stock
-    for (PrescriptionLineItem prescriptionLineItem : prescription.getLineItems()) {
-      if (prescriptionLineItem.getStatus().equals(PrescriptionLineItemStatus.FULLY_SERVED)) {
-        //skip lines that have succeeded before
-        continue;
-      }
-      // Get SOH - call
-      LotDto lot = lotReferenceDataService
-          .findOne(prescriptionLineItem.getLotId());
-      
-      OrderableDto orderable = orderableReferenceDataService
-          .findOne(prescriptionLineItem.getOrderableDispensed());
-      
-      UUID programId = orderable.getPrograms().stream().findFirst().get().getProgramId();
-      List<StockCardSummaryDto> stockCardSummaries = stockCardSummariesStockManagementService
-          .search(
-              programId,
-              prescription.getFacilityId(),
-              Collections.singleton(orderable.getId()),
-              LocalDate.now(),
-              lot.getLotCode());
-
-      if (!stockCardSummaries.isEmpty()) {
-        Integer stockOnHand = stockCardSummaries.get(0).getStockOnHand();
-        if (prescriptionLineItem.getQuantityDispensed() <= stockOnHand) {
-          LOGGER.info("We have enough stock for product "
-              + orderable.getFullProductName());
-          // debit bulk orderable
-          StockEventDto stockEventDebit = new StockEventDto();
-          stockEventDebit.setFacilityId(prescription.getFacilityId());
-          stockEventDebit.setProgramId(programId);
-          stockEventDebit.setUserId(prescription.getServedByUserId());
-          StockEventLineItemDto lineItemDebit = new StockEventLineItemDto(
-              orderable.getId(),
-              prescriptionLineItem.getLotId(),
-              prescriptionLineItem.getQuantityDispensed(),
-              LocalDate.now(),
-              UUID.fromString(dispensingDebitReasonId));
-          stockEventDebit.setLineItems(Collections.singletonList(lineItemDebit));
-          // submit stock event to stockmanagement service
-          LOGGER.error("Submitting stockevent DR : " + stockEventDebit.toString());
-          stockEventStockManagementService.submit(stockEventDebit);
-
-          
-          // if (prescriptionLineItem.getRemainingBalance() == 0) {
-          //   prescriptionLineItem.setRemainingBalance(prescriptionLineItem.getQuantityPrescribed());
-          // }
-          // Integer balanceBeforeServe = existingPrescription.getLineItems().get(position).getRemainingBalance();
-          // prescriptionLineItem.setRemainingBalance(
-          //   balanceBeforeServe - prescriptionLineItem.getQuantityDispensed()
-          // );
-
-          // All these will be computed by UI
-          
-          if (((prescriptionLineItem.getRemainingBalance() > 0) && (prescriptionLineItem.getServedExternally())) 
-              || (prescriptionLineItem.getRemainingBalance() == 0)) {
-            //don't create backorder - we are done
-            prescriptionLineItem.setStatus(PrescriptionLineItemStatus.FULLY_SERVED);
-          } else {
-            //create backorder
-            prescriptionLineItem.setStatus(PrescriptionLineItemStatus.PARTIALLY_SERVED);
-          }
-          
-        } else {
-          //Not enough stock for this line item
-          prescriptionLineItem.setStatus(PrescriptionLineItemStatus.INADEQUATE_STOCK);
-        }
-      } else {
-        //the specified product (orderable or substitute) is not available at this facility
-        prescriptionLineItem.setStatus(PrescriptionLineItemStatus.PRODUCT_NOT_EXIST);
+    List<ServedLineItem> servedLineItems = new ArrayList<>();
+    for (PrescriptionLineItem prescriptionLineItem : lineItemsToServe) {
+      servedLineItems.add(serveLineItem(prescriptionLineItem, facilityId, servedByUserId));
+    }
+
+    Prescription prescription = prescriptionRepository.refreshForUpdate(existingPrescription);
+    Map<CounterKey, Long> countsBefore = prescriptionStatusCounterService.snapshot(prescription);
+    PrescriptionStatus statusBefore = prescription.getStatus();
+    updatePrescriptionEntity(prescription, dto);
+    List<PrescriptionLineItem> lineItems = prescription.getLineItems();
+    for (int i = 0; i < lineItems.size() && i < servedLineItems.size(); i++) {
+      ServedLineItem servedLineItem = servedLineItems.get(i);
+      if (servedLineItem != null) {
+        servedLineItem.applyTo(lineItems.get(i));
       }
     }
 
@@ -226,11 +211,88 @@ public class PrescriptionService {
       prescription.setStatus(PrescriptionStatus.PARTIALLY_SERVED);
     }
 
+    prescriptionReadModelService.populate(prescription);
     prescription = prescriptionRepository.save(prescription);
+    prescriptionStatusCounterService.recordTransition(countsBefore, prescription);
+    if (prescription.getStatus() != statusBefore || StringUtils.isNotBlank(dto.getStatusMessage())) {
+      statusChangeService.recordStatusChange(prescription, dto.getStatusMessage());
+    }
 
     return prescriptionToDto(prescription);
   }
 
+  /**
+   * Checks stock on hand for a line item and debits it when there is enough. Does not change the
+   * line item, the outcome is applied once the prescription is locked.
+   *
+   * @return outcome of serving the line item, null if it was fully served before.
+   */
+  private ServedLineItem serveLineItem(PrescriptionLineItem prescriptionLineItem, UUID facilityId,
+      UUID servedByUserId) {
+    if (prescriptionLineItem.getStatus().equals(PrescriptionLineItemStatus.FULLY_SERVED)) {
+      //skip lines that have succeeded before
+      return null;
+    }
+    // Get SOH - call
+    LotDto lot = referenceDataReplicaService
+        .findLot(prescriptionLineItem.getLotId());
+
+    OrderableDto orderable = referenceDataReplicaService
+        .findOrderable(prescriptionLineItem.getOrderableDispensed());
+
+    UUID programId = orderable.getPrograms().stream().findFirst().get().getProgramId();
+    List<StockCardSummaryDto> stockCardSummaries = stockCardSummariesStockManagementService
+        .search(
+            programId,
+            facilityId,
+            Collections.singleton(orderable.getId()),
+            LocalDate.now(),
+            lot.getLotCode());
+
+    PrescriptionLineItemStatus status;
+    if (!stockCardSummaries.isEmpty()) {
+      Integer stockOnHand = stockCardSummaries.get(0).getStockOnHand();
+      if (prescriptionLineItem.getQuantityDispensed() <= stockOnHand) {
+        LOGGER.info("We have enough stock for product "
+            + orderable.getFullProductName());
+        // debit bulk orderable
+        StockEventDto stockEventDebit = new StockEventDto();
+        stockEventDebit.setFacilityId(facilityId);
+        stockEventDebit.setProgramId(programId);
+        stockEventDebit.setUserId(servedByUserId);
+        StockEventLineItemDto lineItemDebit = new StockEventLineItemDto(
+            orderable.getId(),
+            prescriptionLineItem.getLotId(),
+            prescriptionLineItem.getQuantityDispensed(),
+            LocalDate.now(),
+            UUID.fromString(dispensingDebitReasonId));
+        stockEventDebit.setLineItems(Collections.singletonList(lineItemDebit));
+        // submit stock event to stockmanagement service
+        LOGGER.error("Submitting stockevent DR : " + stockEventDebit.toString());
+        stockEventStockManagementService.submit(stockEventDebit);
+
+        // All these will be computed by UI
+
+        if (((prescriptionLineItem.getRemainingBalance() > 0) && (prescriptionLineItem.getServedExternally()))
+            || (prescriptionLineItem.getRemainingBalance() == 0)) {
+          //don't create backorder - we are done
+          status = PrescriptionLineItemStatus.FULLY_SERVED;
+        } else {
+          //create backorder
+          status = PrescriptionLineItemStatus.PARTIALLY_SERVED;
+        }
+
+      } else {
+        //Not enough stock for this line item
+        status = PrescriptionLineItemStatus.INADEQUATE_STOCK;
+      }
+    } else {
+      //the specified product (orderable or substitute) is not available at this facility
+      status = PrescriptionLineItemStatus.PRODUCT_NOT_EXIST;
+    }
+    return new ServedLineItem(status, orderable.getFullProductName(), lot.getLotCode());
+  }
+
   /**
    * Update a PrescriptionLineItem.
    */
@@ -262,7 +324,13 @@ public class PrescriptionService {
   @Transactional
   public UUID createPrescription(PrescriptionDto prescriptionDto) {
     Prescription prescription = convertToPrescriptionEntity(prescriptionDto);
-    return prescriptionRepository.save(prescription).getId();
+    if (prescription != null) {
+      prescriptionReadModelService.populate(prescription);
+    }
+    prescription = prescriptionRepository.save(prescription);
+    prescriptionStatusCounterService.recordTransition(Collections.emptyMap(), prescription);
+    statusChangeService.recordStatusChange(prescription, prescriptionDto.getStatusMessage());
+    return prescription.getId();
   }
 
   /**
@@ -353,7 +421,29 @@ public class PrescriptionService {
    * @return Prescription created dto.
    */
   private PrescriptionDto prescriptionToDto(Prescription prescription) {
-    FacilityDto facility = facilityReferenceDataService.findOne(prescription.getFacilityId());
+    return prescriptionToDto(prescription, resolveNames(Collections.singletonList(prescription)));
+  }
+
+  /**
+   * Convert Prescription entities to dtos, resolving missing reference data names of all of
+   * them at once.
+   *
+   * @param prescriptions jpa models.
+   * @return Prescription dtos, in the same order.
+   */
+  private List<PrescriptionDto> prescriptionsToDto(List<Prescription> prescriptions) {
+    DisplayNames names = resolveNames(prescriptions);
+    return prescriptions.stream()
+        .map(prescription -> prescriptionToDto(prescription, names))
+        .collect(Collectors.toList());
+  }
+
+  private PrescriptionDto prescriptionToDto(Prescription prescription, DisplayNames names) {
+    String facilityName = prescription.getFacilityName();
+    if (facilityName == null) {
+      // not resolved yet by the read model refresh
+      facilityName = names.facilityName(prescription.getFacilityId());
+    }
     return PrescriptionDto.builder()
         .id(prescription.getId())
         .patientId(prescription.getPatient().getId())
@@ -369,12 +459,12 @@ public class PrescriptionService {
         .isVoided(prescription.getIsVoided())
         .status(prescription.getStatus())
         .facilityId(prescription.getFacilityId())
-        .facilityName(facility != null ? facility.getName() : null)
+        .facilityName(facilityName)
         .prescribedByUserId(prescription.getPrescribedByUserId())
         .servedByUserId(prescription.getServedByUserId())
         .lineItems(prescription.getLineItems() != null
             ? prescription.getLineItems().stream()
-                .map(this::lineItemToDto)
+                .map(item -> lineItemToDto(item, names))
                 .collect(Collectors.toList())
             : null)
         .build();
@@ -384,24 +474,27 @@ public class PrescriptionService {
    * Convert PrescriptionLineItem entity to PrescriptionLineItemDto.
    *
    * @param item PrescriptionLineItem entity.
+   * @param names reference data names resolved for the prescriptions being converted.
    * @return PrescriptionLineItemDto.
    */
-  private PrescriptionLineItemDto lineItemToDto(PrescriptionLineItem item) {
+  private PrescriptionLineItemDto lineItemToDto(PrescriptionLineItem item, DisplayNames names) {
     if (item == null) {
       return null;
     }
-    OrderableDto dispensedOrderable = null;
-    OrderableDto prescribedOrderable = null;
-    LotDto lot = null;
+    // display fields come from the read model, reference data is only used for rows
+    // that have not been resolved yet
+    String prescribedName = item.getOrderablePrescribedName();
+    String dispensedName = item.getOrderableDispensedName();
+    String lotCode = item.getLotCode();
 
-    if (item.getOrderablePrescribed() != null) {
-      prescribedOrderable = orderableReferenceDataService.findOne(item.getOrderablePrescribed());
+    if (prescribedName == null) {
+      prescribedName = names.orderableName(item.getOrderablePrescribed());
     }
-    if (item.getOrderableDispensed() != null) {
-      dispensedOrderable = orderableReferenceDataService.findOne(item.getOrderableDispensed());
+    if (dispensedName == null) {
+      dispensedName = names.orderableName(item.getOrderableDispensed());
     }
-    if (item.getLotId() != null) {
-      lot = lotReferenceDataService.findOne(item.getLotId());
+    if (lotCode == null) {
+      lotCode = names.lotCode(item.getLotId());
     }
 
     return PrescriptionLineItemDto.builder()
@@ -422,12 +515,60 @@ public class PrescriptionService {
         .servedExternally(item.getServedExternally())
         .comments(item.getComments())
         .remainingBalance(item.getRemainingBalance())
-        .orderablePrescribedName(prescribedOrderable != null ? prescribedOrderable.getFullProductName() : null)
-        .orderableDispensedName(dispensedOrderable != null ? dispensedOrderable.getFullProductName() : null)
-        .lotCode(lot != null ? lot.getLotCode() : null)
+        .orderablePrescribedName(prescribedName)
+        .orderableDispensedName(dispensedName)
+        .lotCode(lotCode)
         .build();
   }
 
+  /**
+   * Looks up the facilities, orderables and lots not resolved by the read model yet: each
+   * distinct facility once, and the orderables and lots with one call each for all the given
+   * prescriptions.
+   */
+  private DisplayNames resolveNames(Collection<Prescription> prescriptions) {
+    Set<UUID> facilityIds = new HashSet<>();
+    Set<UUID> orderableIds = new HashSet<>();
+    Set<UUID> lotIds = new HashSet<>();
+    for (Prescription prescription : prescriptions) {
+      if (prescription.getFacilityName() == null && prescription.getFacilityId() != null) {
+        facilityIds.add(prescription.getFacilityId());
+      }
+      if (prescription.getLineItems() == null) {
+        continue;
+      }
+      for (PrescriptionLineItem item : prescription.getLineItems()) {
+        if (item == null) {
+          continue;
+        }
+        if (item.getOrderablePrescribedName() == null && item.getOrderablePrescribed() != null) {
+          orderableIds.add(item.getOrderablePrescribed());
+        }
+        if (item.getOrderableDispensedName() == null && item.getOrderableDispensed() != null) {
+          orderableIds.add(item.getOrderableDispensed());
+        }
+        if (item.getLotCode() == null && item.getLotId() != null) {
+          lotIds.add(item.getLotId());
+        }
+      }
+    }
+
+    Map<UUID, FacilityDto> facilities = new HashMap<>();
+    for (UUID facilityId : facilityIds) {
+      FacilityDto facility = facilityReferenceDataService.findOneForDisplay(facilityId);
+      if (facility != null) {
+        facilities.put(facilityId, facility);
+      }
+    }
+    Map<UUID, OrderableDto> orderables = orderableIds.isEmpty()
+        ? Collections.emptyMap()
+        : referenceDataReplicaService.findOrderables(orderableIds);
+    Map<UUID, LotDto> lots = lotIds.isEmpty()
+        ? Collections.emptyMap()
+        : referenceDataReplicaService.findLots(lotIds);
+    return new DisplayNames(facilities, orderables, lots);
+  }
+
   private void updatePrescriptionEntity(Prescription prescription, PrescriptionDto prescriptionDto) {
     if (prescriptionDto.getPatientType() != null) {
       prescription.setPatientType(prescriptionDto.getPatientType());
@@ -454,6 +595,9 @@ public class PrescriptionService {
       prescription.setStatus(prescriptionDto.getStatus());
     }
     if (prescriptionDto.getFacilityId() != null) {
+      if (!prescriptionDto.getFacilityId().equals(prescription.getFacilityId())) {
+        prescription.setFacilityName(null);
+      }
       prescription.setFacilityId(prescriptionDto.getFacilityId());
     }
     if (prescriptionDto.getPrescribedByUserId() != null) {
@@ -553,10 +697,8 @@ public class PrescriptionService {
    * @return a prescriptions dto.
    */
   public List<PrescriptionDto> getAllPrescriptions() {
-    List<Prescription> prescriptions = prescriptionRepository.findAll();
-    return prescriptions.stream()
-        .map(this::prescriptionToDto)
-        .collect(Collectors.toList());
+    List<Prescription> prescriptions = prescriptionRepository.findAll(PrescriptionSpecification.fetchDetails());
+    return prescriptionsToDto(prescriptions);
   }
 
   /**
@@ -566,11 +708,19 @@ public class PrescriptionService {
    */
   @Transactional
   public void setIsVoided(UUID id) {
-    Optional<Prescription> optionalPrescription = prescriptionRepository.findById(id);
+    Optional<Prescription> optionalPrescription = prescriptionRepository.findForUpdateById(id);
     if (optionalPrescription.isPresent()) {
       Prescription prescription = optionalPrescription.get();
+      if (Boolean.TRUE.equals(prescription.getIsVoided())) {
+        // already voided, nothing changes
+        return;
+      }
+      Map<CounterKey, Long> countsBefore = prescriptionStatusCounterService.snapshot(prescription);
       prescription.setIsVoided(true);
       prescriptionRepository.saveAndFlush(prescription);
+      prescriptionStatusCounterService.recordTransition(countsBefore, prescription);
+      statusChangeService.recordStatusChange(prescription, messageService
+          .localize(new Message(PRESCRIPTION_STATUS_MESSAGE_VOIDED)).getMessage());
     } else {
       throw new ResourceNotFoundException(new Message("Prescription id not found ", id));
     }
@@ -587,35 +737,12 @@ public class PrescriptionService {
       UUID facilityUuid, UUID geoZoneUuid, String nationalId, List<PrescriptionStatus> statuses, String patientType, Boolean isVoided,
       LocalDate followUpDate) {
 
-    // First, find the patients based on the given patient details
-    List<PatientDto> patientDtos = patientService.searchPatients(patientNumber, firstName, lastName, dateOfBirth,
-        facilityUuid, geoZoneUuid, nationalId);
-
-    if (patientDtos.isEmpty()) {
-      return new ArrayList<PrescriptionDto>();
-    }
-
-    // Extract the patient IDs from the found patients and convert them to string
-    List<UUID> patientIds = patientDtos.stream()
-        .map(PatientDto::getId)
-        .collect(Collectors.toList());
-    // Create the Specification
-    Specification<Prescription> spec = Specification
-        .where(PrescriptionSpecification.patientIdIn(patientIds))
-        //.and(PrescriptionSpecification.statusEquals(status))
-        .and(PrescriptionSpecification.statusIn(statuses))
-        .and(PrescriptionSpecification.patientTypeEquals(patientType))
-        .and(PrescriptionSpecification.isVoidedEquals(isVoided))
-        .and(PrescriptionSpecification.followUpDateEquals(followUpDate));
-
-    // Then, search for prescriptions based on the Specification
-    List<Prescription> prescriptions = prescriptionRepository.findAll(spec);
+    Specification<Prescription> spec = buildSearchSpecification(patientNumber, firstName, lastName,
+        dateOfBirth, facilityUuid, geoZoneUuid, nationalId, statuses, patientType, isVoided, followUpDate)
+        .and(PrescriptionSpecification.fetchDetails());
 
-    // Convert Prescription entities to PrescriptionDto objects
-    return prescriptions == null ? new ArrayList<PrescriptionDto>()
-        : prescriptions.stream()
-            .map(this::prescriptionToDto)
-            .collect(Collectors.toList());
+    // patient, person and line items are fetched with the prescriptions in a single query
+    return prescriptionsToDto(prescriptionRepository.findAll(spec));
   }
 
   /**
@@ -629,36 +756,112 @@ public class PrescriptionService {
       UUID facilityUuid, UUID geoZoneUuid, String nationalId, List<PrescriptionStatus> statuses, String patientType, Boolean isVoided,
       LocalDate followUpDate, int page, int size) {
 
-    // First, find the patients based on the given patient details
-    // Use the paginated patient search method
-    // Page<PatientDto> patientDtos = patientService.searchPatientsV2(patientNumber, firstName, lastName, dateOfBirth,
-    //     facilityUuid, geoZoneUuid, nationalId, page, size);
-    List<PatientDto> patientDtos = patientService.searchPatients(patientNumber, firstName, lastName, dateOfBirth,
-        facilityUuid, geoZoneUuid, nationalId);
+    Specification<Prescription> spec = buildSearchSpecification(patientNumber, firstName, lastName,
+        dateOfBirth, facilityUuid, geoZoneUuid, nationalId, statuses, patientType, isVoided, followUpDate);
 
-    if (patientDtos.isEmpty()) {
-      return Page.empty();
+    // Paging over a fetch joined collection would be done in memory, so the page of ids is
+    // selected first and the prescriptions of that page are then fetched with their details
+    Pageable pageable = PageRequest.of(page, size);
+    Page<UUID> idPage = prescriptionRepository.findIds(spec, pageable);
+    if (idPage.getContent().isEmpty()) {
+      return new PageImpl<>(Collections.emptyList(), pageable, idPage.getTotalElements());
     }
 
-    // Extract the patient IDs from the found patients and convert them to string
-    List<UUID> patientIds = patientDtos.stream()
-        .map(PatientDto::getId)
+    Map<UUID, Prescription> prescriptions = prescriptionRepository
+        .findAllWithDetailsByIdIn(idPage.getContent()).stream()
+        .collect(Collectors.toMap(Prescription::getId, Function.identity()));
+
+    List<Prescription> pageContent = idPage.getContent().stream()
+        .map(prescriptions::get)
+        .filter(Objects::nonNull)
         .collect(Collectors.toList());
-    // Create the Specification
-    Specification<Prescription> spec = Specification
-        .where(PrescriptionSpecification.patientIdIn(patientIds))
-        //.and(PrescriptionSpecification.statusEquals(status))
+    return new PageImpl<>(prescriptionsToDto(pageContent), pageable, idPage.getTotalElements());
+  }
+
+  private Specification<Prescription> buildSearchSpecification(String patientNumber, String firstName,
+      String lastName, LocalDate dateOfBirth, UUID facilityUuid, UUID geoZoneUuid, String nationalId,
+      List<PrescriptionStatus> statuses, String patientType, Boolean isVoided, LocalDate followUpDate) {
+    return Specification
+        .where(PrescriptionSpecification.patientMatches(patientNumber, firstName, lastName, dateOfBirth,
+            facilityUuid, geoZoneUuid, nationalId))
         .and(PrescriptionSpecification.statusIn(statuses))
         .and(PrescriptionSpecification.patientTypeEquals(patientType))
         .and(PrescriptionSpecification.isVoidedEquals(isVoided))
         .and(PrescriptionSpecification.followUpDateEquals(followUpDate));
+  }
 
-    Pageable pageable = PageRequest.of(page, size);
-    // Then, search for prescriptions based on the Specification
-    Page<Prescription> prescriptionsPage = prescriptionRepository.findAll(spec, pageable);
+  /**
+   * Get the follow ups or balance collections of a facility that are due within a date range.
+   *
+   * @param facilityId facility id.
+   * @param type       kind of due list.
+   * @param from       first due date (inclusive).
+   * @param to         last due date (inclusive).
+   * @param pageable   page to return.
+   * @return page of light due list rows ordered by due date.
+   */
+  public Page<DueListItemDto> getDueList(UUID facilityId, DueListItemDto.Type type, LocalDate from,
+      LocalDate to, Pageable pageable) {
+    if (from.isAfter(to)) {
+      throw new ValidationMessageException(ERROR_START_DATE_AFTER_END_DATE);
+    }
+    if (DueListItemDto.Type.COLLECT_BALANCE == type) {
+      return prescriptionRepository.findBalanceCollectionsDue(facilityId, from, to,
+          OUTSTANDING_BALANCE_STATUSES, pageable);
+    }
+    return prescriptionRepository.findFollowUpsDue(facilityId, from, to, pageable);
+  }
+
+  /**
+   * Facilities, orderables and lots looked up for a set of prescriptions being converted to dtos.
+   */
+  private static final class DisplayNames {
+    private final Map<UUID, FacilityDto> facilities;
+    private final Map<UUID, OrderableDto> orderables;
+    private final Map<UUID, LotDto> lots;
 
-    // Convert Prescription entities to PrescriptionDto objects
-    return prescriptionsPage.map(this::prescriptionToDto);
+    DisplayNames(Map<UUID, FacilityDto> facilities, Map<UUID, OrderableDto> orderables,
+        Map<UUID, LotDto> lots) {
+      this.facilities = facilities;
+      this.orderables = orderables;
+      this.lots = lots;
+    }
+
+    String facilityName(UUID facilityId) {
+      FacilityDto facility = facilityId != null ? facilities.get(facilityId) : null;
+      return facility != null ? facility.getName() : null;
+    }
+
+    String orderableName(UUID orderableId) {
+      OrderableDto orderable = orderableId != null ? orderables.get(orderableId) : null;
+      return orderable != null ? orderable.getFullProductName() : null;
+    }
+
+    String lotCode(UUID lotId) {
+      LotDto lot = lotId != null ? lots.get(lotId) : null;
+      return lot != null ? lot.getLotCode() : null;
+    }
   }
 
+  /**
+   * Outcome of serving a line item, worked out before the prescription is locked.
+   */
+  private static final class ServedLineItem {
+    private final PrescriptionLineItemStatus status;
+    private final String orderableDispensedName;
+    private final String lotCode;
+
+    ServedLineItem(PrescriptionLineItemStatus status, String orderableDispensedName,
+        String lotCode) {
+      this.status = status;
+      this.orderableDispensedName = orderableDispensedName;
+      this.lotCode = lotCode;
+    }
+
+    void applyTo(PrescriptionLineItem lineItem) {
+      lineItem.setOrderableDispensedName(orderableDispensedName);
+      lineItem.setLotCode(lotCode);
+      lineItem.setStatus(status);
+    }
+  }
 }
@@ -0,0 +1,121 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.prescription;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import lombok.Value;
+import org.openlmis.dispensing.domain.prescription.Prescription;
+import org.openlmis.dispensing.domain.prescription.PrescriptionLineItem;
+import org.openlmis.dispensing.domain.prescription.PrescriptionStatusCounter;
+import org.openlmis.dispensing.domain.prescription.PrescriptionStatusCounter.StatusType;
+import org.openlmis.dispensing.dto.prescription.PrescriptionStatusCountsDto;
+import org.openlmis.dispensing.repository.prescription.PrescriptionStatusCounterRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Maintains the per facility prescription status counters. Callers take a snapshot of a
+ * prescription before changing it and pass it, together with the changed prescription, to
+ * {@link #recordTransition(Map, Prescription)} within the same transaction.
+ */
+@Service
+public class PrescriptionStatusCounterService {
+
+  @Autowired
+  private PrescriptionStatusCounterRepository prescriptionStatusCounterRepository;
+
+  /**
+   * Captures what a prescription currently contributes to the counters. Voided prescriptions
+   * contribute nothing.
+   *
+   * @param prescription prescription, may be null.
+   * @return counter contributions.
+   */
+  public Map<CounterKey, Long> snapshot(Prescription prescription) {
+    if (prescription == null || prescription.getFacilityId() == null
+        || Boolean.TRUE.equals(prescription.getIsVoided())) {
+      return Collections.emptyMap();
+    }
+
+    Map<CounterKey, Long> counts = new HashMap<>();
+    UUID facilityId = prescription.getFacilityId();
+    if (prescription.getStatus() != null) {
+      counts.merge(new CounterKey(facilityId, StatusType.PRESCRIPTION,
+          prescription.getStatus().name()), 1L, Long::sum);
+    }
+    List<PrescriptionLineItem> lineItems = prescription.getLineItems();
+    if (lineItems != null) {
+      for (PrescriptionLineItem lineItem : lineItems) {
+        if (lineItem.getStatus() != null) {
+          counts.merge(new CounterKey(facilityId, StatusType.LINE_ITEM,
+              lineItem.getStatus().name()), 1L, Long::sum);
+        }
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Applies the difference between the snapshot taken before a change and the current state of
+   * the prescription. Only counters that actually changed are written.
+   *
+   * @param before snapshot taken before the change.
+   * @param after  changed prescription.
+   */
+  public void recordTransition(Map<CounterKey, Long> before, Prescription after) {
+    Map<CounterKey, Long> delta = new HashMap<>(snapshot(after));
+    before.forEach((key, count) -> delta.merge(key, -count, Long::sum));
+
+    delta.forEach((key, count) -> {
+      if (count != 0) {
+        prescriptionStatusCounterRepository.increment(UUID.randomUUID().toString(),
+            key.getFacilityId().toString(), key.getStatusType().name(), key.getStatus(), count);
+      }
+    });
+  }
+
+  /**
+   * Get the status counts of a facility.
+   *
+   * @param facilityId facility id.
+   * @return prescription and line item counts by status.
+   */
+  public PrescriptionStatusCountsDto getStatusCounts(UUID facilityId) {
+    Map<String, Long> prescriptionStatuses = new TreeMap<>();
+    Map<String, Long> lineItemStatuses = new TreeMap<>();
+    for (PrescriptionStatusCounter counter
+        : prescriptionStatusCounterRepository.findByFacilityId(facilityId)) {
+      if (StatusType.PRESCRIPTION == counter.getStatusType()) {
+        prescriptionStatuses.put(counter.getStatus(), counter.getTotal());
+      } else {
+        lineItemStatuses.put(counter.getStatus(), counter.getTotal());
+      }
+    }
+    return new PrescriptionStatusCountsDto(facilityId, prescriptionStatuses, lineItemStatuses);
+  }
+
+  @Value
+  public static class CounterKey {
+    private UUID facilityId;
+    private StatusType statusType;
+    private String status;
+  }
+}
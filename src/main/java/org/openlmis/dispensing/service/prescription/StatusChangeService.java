@@ -0,0 +1,82 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.prescription;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+import org.openlmis.dispensing.domain.prescription.Prescription;
+import org.openlmis.dispensing.domain.status.StatusChange;
+import org.openlmis.dispensing.domain.status.StatusMessage;
+import org.openlmis.dispensing.dto.prescription.StatusChangeDto;
+import org.openlmis.dispensing.repository.prescription.StatusChangeRepository;
+import org.openlmis.dispensing.repository.prescription.StatusMessageRepository;
+import org.openlmis.dispensing.util.AuthenticationHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Records the status history of prescriptions. Entries are only persisted into the current
+ * persistence context, so they are flushed together with the prescription itself in one JDBC
+ * batch at commit, and the author is taken from the security context without a remote call.
+ */
+@Service
+public class StatusChangeService {
+
+  @Autowired
+  private StatusChangeRepository statusChangeRepository;
+
+  @Autowired
+  private StatusMessageRepository statusMessageRepository;
+
+  @Autowired
+  private AuthenticationHelper authenticationHelper;
+
+  /**
+   * Records the current status of the prescription, with an optional message.
+   *
+   * @param prescription prescription that transitioned.
+   * @param messageBody  optional status message.
+   */
+  public void recordStatusChange(Prescription prescription, String messageBody) {
+    if (prescription.getStatus() == null) {
+      return;
+    }
+    UUID authorId = authenticationHelper.getCurrentUserId();
+    StatusChange statusChange = StatusChange.newStatusChange(prescription, authorId);
+    statusChangeRepository.save(statusChange);
+
+    if (StringUtils.isNotBlank(messageBody)) {
+      StatusMessage statusMessage = StatusMessage.newStatusMessage(prescription, statusChange,
+          authorId, null, null, messageBody);
+      statusChange.setStatusMessage(statusMessage);
+      statusMessageRepository.save(statusMessage);
+    }
+  }
+
+  /**
+   * Get the status history of a prescription, oldest first.
+   *
+   * @param prescriptionId prescription id.
+   * @return status changes.
+   */
+  public List<StatusChangeDto> getStatusChanges(UUID prescriptionId) {
+    return statusChangeRepository.findHistory(prescriptionId).stream()
+        .map(StatusChangeDto::newInstance)
+        .collect(Collectors.toList());
+  }
+}
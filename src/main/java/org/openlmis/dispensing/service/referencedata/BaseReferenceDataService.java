@@ -15,13 +15,92 @@
 
 package org.openlmis.dispensing.service.referencedata;
 
+import com.google.common.collect.Iterables;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.PostConstruct;
 import org.openlmis.dispensing.service.BaseCommunicationService;
+import org.openlmis.dispensing.util.RequestParameters;
+import org.openlmis.dispensing.util.StaleResponses;
+import org.openlmis.dispensing.util.StaleWhileRevalidateCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.web.client.ResourceAccessException;
 
 public abstract class BaseReferenceDataService<T> extends BaseCommunicationService<T> {
+  private static final long CACHE_MAX_SIZE = 10000;
+  private static final int FIND_BY_IDS_BATCH_SIZE = 100;
+
   @Value("${referencedata.url}")
   private String referenceDataUrl;
 
+  @Value("${dispensing.referenceData.cache.freshSeconds}")
+  private long cacheFreshSeconds;
+
+  @Value("${dispensing.referenceData.cache.maxStalenessSeconds}")
+  private long cacheMaxStalenessSeconds;
+
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  @Qualifier("applicationTaskExecutor")
+  private TaskExecutor refreshExecutor;
+
+  private StaleWhileRevalidateCache<UUID, T> cache;
+
+  @PostConstruct
+  void initCache() {
+    cache = new StaleWhileRevalidateCache<>(CACHE_MAX_SIZE,
+        Duration.ofSeconds(cacheFreshSeconds), Duration.ofSeconds(cacheMaxStalenessSeconds),
+        BaseReferenceDataService::isOutage, refreshExecutor, clock);
+  }
+
+  /**
+   * Return one object to be displayed. Results are cached for a short time, and while
+   * referencedata is unavailable the last known object is returned instead, with the response
+   * of the current request flagged as stale. Write paths should use {@link #findOne(UUID)},
+   * which always asks referencedata.
+   *
+   * @param id UUID of requesting object.
+   * @return Requesting reference data object.
+   */
+  public T findOneForDisplay(UUID id) {
+    StaleWhileRevalidateCache.Result<T> result = cache.get(id, this::findOne);
+    if (result.isStale()) {
+      StaleResponses.markStale();
+    }
+    return result.getValue();
+  }
+
+  /**
+   * Finds objects by their ids. The ids are requested in batches, each asking for a page as
+   * large as the batch, so no result is cut off by the default page size and URLs stay short.
+   *
+   * @param ids ids to look for.
+   * @return found objects.
+   */
+  protected List<T> findAllByIds(Collection<UUID> ids) {
+    List<T> found = new ArrayList<>(ids.size());
+    for (List<UUID> batch : Iterables.partition(ids, FIND_BY_IDS_BATCH_SIZE)) {
+      found.addAll(getPage(RequestParameters.init()
+          .set("id", batch)
+          .set("size", batch.size())).getContent());
+    }
+    return found;
+  }
+
+  @Override
+  protected String getServiceName() {
+    return "Reference Data";
+  }
+
   protected String getServiceUrl() {
     return referenceDataUrl;
   }
@@ -31,4 +110,10 @@ public abstract class BaseReferenceDataService<T> extends BaseCommunicationServi
   protected abstract Class<T> getResultClass();
 
   protected abstract Class<T[]> getArrayResultClass();
+
+  private static boolean isOutage(RuntimeException ex) {
+    return ex instanceof ResourceAccessException
+        || ex instanceof DataRetrievalException
+        && ((DataRetrievalException) ex).getStatus().is5xxServerError();
+  }
 }
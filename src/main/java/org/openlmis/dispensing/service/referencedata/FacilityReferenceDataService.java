@@ -16,13 +16,12 @@
 package org.openlmis.dispensing.service.referencedata;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.openlmis.dispensing.dto.referencedata.FacilityDto;
-import org.openlmis.dispensing.util.RequestParameters;
-import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -50,16 +49,21 @@ public class FacilityReferenceDataService extends BaseReferenceDataService<Facil
    * @return map of ids and facilities
    */
   public Map<UUID, FacilityDto> findByIds(Collection<UUID> ids) {
-    RequestParameters parameters = RequestParameters
-        .init()
-        .set("id", ids);
-
-    Page<FacilityDto> facilityDtos =  getPage(parameters);
-    return facilityDtos.getContent().stream()
+    return findAllByIds(ids).stream()
             .collect(Collectors.toMap(FacilityDto::getId, Function.identity()));
   }
 
   public boolean exists(UUID id) {
     return id != null && findOne(id) != null;
   }
+
+  /**
+   * Finds all facilities, page by page.
+   *
+   * @param pageSize number of facilities requested per page.
+   * @return all facilities.
+   */
+  public List<FacilityDto> findAll(int pageSize) {
+    return tryGetAllPages("", pageSize, FacilityDto.class, null).getBody();
+  }
 }
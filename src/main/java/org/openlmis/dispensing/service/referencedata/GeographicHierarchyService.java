@@ -0,0 +1,155 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.referencedata;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.openlmis.dispensing.dto.referencedata.FacilityDto;
+import org.openlmis.dispensing.dto.referencedata.GeographicZoneDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory copy of all facilities and geographic zones, loaded at startup and refreshed on a
+ * schedule, so that existence checks, zone lookups and the facility to zone mapping need no
+ * remote call. Ids not known yet (e.g. created since the last refresh) are looked up remotely.
+ */
+@Service
+public class GeographicHierarchyService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(GeographicHierarchyService.class);
+
+  @Autowired
+  private FacilityReferenceDataService facilityReferenceDataService;
+
+  @Autowired
+  private GeographicZoneReferenceDataService geographicZoneReferenceDataService;
+
+  @Value("${dispensing.geographicHierarchy.pageSize}")
+  private int pageSize;
+
+  private volatile Hierarchy hierarchy = new Hierarchy(Collections.emptyMap(),
+      Collections.emptyMap());
+
+  /**
+   * Loads the hierarchy once the application has started.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    refresh();
+  }
+
+  /**
+   * Reloads all facilities and geographic zones. The previous hierarchy is kept when loading
+   * fails.
+   */
+  @Scheduled(cron = "${dispensing.geographicHierarchy.refreshCron}")
+  public void refresh() {
+    try {
+      Map<UUID, GeographicZoneDto> zones = new HashMap<>();
+      for (GeographicZoneDto zone : geographicZoneReferenceDataService.findAll(pageSize)) {
+        addWithParents(zones, zone);
+      }
+
+      Map<UUID, FacilityDto> facilities = new HashMap<>();
+      for (FacilityDto facility : facilityReferenceDataService.findAll(pageSize)) {
+        facilities.put(facility.getId(), facility);
+        if (null != facility.getGeographicZone()) {
+          addWithParents(zones, facility.getGeographicZone());
+        }
+      }
+
+      hierarchy = new Hierarchy(facilities, zones);
+      LOGGER.info("Geographic hierarchy loaded, {} facilities and {} zones",
+          facilities.size(), zones.size());
+    } catch (RuntimeException ex) {
+      LOGGER.warn("Could not load geographic hierarchy, keeping the previous one", ex);
+    }
+  }
+
+  /**
+   * Finds a facility.
+   *
+   * @param id id of the facility.
+   * @return the facility, or null if it does not exist.
+   */
+  public FacilityDto findFacility(UUID id) {
+    if (null == id) {
+      return null;
+    }
+    FacilityDto facility = hierarchy.facilities.get(id);
+    return null == facility ? facilityReferenceDataService.findOne(id) : facility;
+  }
+
+  /**
+   * Finds a geographic zone.
+   *
+   * @param id id of the geographic zone.
+   * @return the zone, or null if it does not exist.
+   */
+  public GeographicZoneDto findGeographicZone(UUID id) {
+    if (null == id) {
+      return null;
+    }
+    GeographicZoneDto zone = hierarchy.zones.get(id);
+    return null == zone ? geographicZoneReferenceDataService.findOne(id) : zone;
+  }
+
+  public boolean facilityExists(UUID id) {
+    return null != findFacility(id);
+  }
+
+  public boolean geographicZoneExists(UUID id) {
+    return null != findGeographicZone(id);
+  }
+
+  /**
+   * Finds the geographic zone a facility belongs to.
+   *
+   * @param facilityId id of the facility.
+   * @return id of the zone, or null if the facility or its zone is not known.
+   */
+  public UUID findFacilityZoneId(UUID facilityId) {
+    FacilityDto facility = findFacility(facilityId);
+    return null == facility || null == facility.getGeographicZone()
+        ? null
+        : facility.getGeographicZone().getId();
+  }
+
+  private static void addWithParents(Map<UUID, GeographicZoneDto> zones,
+      GeographicZoneDto zone) {
+    for (GeographicZoneDto current = zone; null != current; current = current.getParent()) {
+      zones.putIfAbsent(current.getId(), current);
+    }
+  }
+
+  private static final class Hierarchy {
+    private final Map<UUID, FacilityDto> facilities;
+    private final Map<UUID, GeographicZoneDto> zones;
+
+    Hierarchy(Map<UUID, FacilityDto> facilities, Map<UUID, GeographicZoneDto> zones) {
+      this.facilities = facilities;
+      this.zones = zones;
+    }
+  }
+}
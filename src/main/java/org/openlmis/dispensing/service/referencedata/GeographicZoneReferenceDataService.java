@@ -15,6 +15,7 @@
 
 package org.openlmis.dispensing.service.referencedata;
 
+import java.util.List;
 import java.util.UUID;
 import org.openlmis.dispensing.dto.referencedata.GeographicZoneDto;
 import org.springframework.stereotype.Service;
@@ -40,4 +41,14 @@ public class GeographicZoneReferenceDataService extends BaseReferenceDataService
   public boolean exists(UUID id) {
     return id != null && findOne(id) != null;
   }
+
+  /**
+   * Finds all geographic zones, page by page.
+   *
+   * @param pageSize number of geographic zones requested per page.
+   * @return all geographic zones.
+   */
+  public List<GeographicZoneDto> findAll(int pageSize) {
+    return tryGetAllPages("", pageSize, GeographicZoneDto.class, null).getBody();
+  }
 }
@@ -20,20 +20,27 @@ import static org.openlmis.dispensing.util.RequestHelper.createUri;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.openlmis.dispensing.dto.LocalizedMessageDto;
 import org.openlmis.dispensing.dto.referencedata.LotDto;
 import org.openlmis.dispensing.exception.ExternalApiException;
 import org.openlmis.dispensing.exception.ServerException;
 import org.openlmis.dispensing.i18n.MessageKeys;
+import org.openlmis.dispensing.service.ServiceResponse;
 import org.openlmis.dispensing.util.RequestHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
 import org.springframework.web.client.HttpStatusCodeException;
 
 @Service
@@ -65,7 +72,7 @@ public class LotReferenceDataService extends BaseReferenceDataService<LotDto> {
   public LotDto submit(LotDto lotDto) {
     String url = getServiceUrl() + getUrl();
     try {
-      return runWithRetryAndTokenRetry(() ->
+      return runWithRetryAndTokenRetry(HttpMethod.POST, () ->
           restTemplate.exchange(
               createUri(url),
               HttpMethod.POST,
@@ -89,6 +96,32 @@ public class LotReferenceDataService extends BaseReferenceDataService<LotDto> {
     }
   }
 
+  /**
+   * Finds lots by their ids.
+   *
+   * @param ids ids to look for.
+   * @return map of ids and lots
+   */
+  public Map<UUID, LotDto> findByIds(Collection<UUID> ids) {
+    if (CollectionUtils.isEmpty(ids)) {
+      return Collections.emptyMap();
+    }
+    return findAllByIds(ids).stream()
+        .collect(Collectors.toMap(LotDto::getId, Function.identity()));
+  }
+
+  /**
+   * Finds all lots unless they have not changed since the given ETag. Without ETag support in
+   * referencedata this always returns all lots.
+   *
+   * @param etag     ETag of the previous result, may be null.
+   * @param pageSize number of lots requested per page.
+   * @return all lots, or a not modified response.
+   */
+  public ServiceResponse<List<LotDto>> findAllIfModified(String etag, int pageSize) {
+    return tryGetAllPages("", pageSize, LotDto.class, etag);
+  }
+
   /**
    * Search for lots under a specific trade item.
    *
@@ -20,7 +20,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import org.openlmis.dispensing.dto.referencedata.OrderableDto;
-import org.openlmis.dispensing.util.RequestParameters;
+import org.openlmis.dispensing.service.ServiceResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
@@ -52,10 +52,21 @@ public class OrderableReferenceDataService
   public List<OrderableDto> findByIds(Collection<UUID> ids) {
     return CollectionUtils.isEmpty(ids)
         ? Collections.emptyList()
-        : getPage(RequestParameters.init().set("id", ids)).getContent();
+        : findAllByIds(ids);
   }
 
   public List<OrderableDto> findAll() {
     return getPage(Collections.emptyMap()).getContent();
   }
+
+  /**
+   * Finds all orderables unless they have not changed since the given ETag.
+   *
+   * @param etag     ETag of the previous result, may be null.
+   * @param pageSize number of orderables requested per page.
+   * @return all orderables, or a not modified response.
+   */
+  public ServiceResponse<List<OrderableDto>> findAllIfModified(String etag, int pageSize) {
+    return tryGetAllPages("", pageSize, OrderableDto.class, etag);
+  }
 }
@@ -0,0 +1,281 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.referencedata;
+
+import java.time.Clock;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.openlmis.dispensing.domain.referencedata.LotReplica;
+import org.openlmis.dispensing.domain.referencedata.OrderableReplica;
+import org.openlmis.dispensing.dto.referencedata.LotDto;
+import org.openlmis.dispensing.dto.referencedata.OrderableDto;
+import org.openlmis.dispensing.repository.referencedata.LotReplicaRepository;
+import org.openlmis.dispensing.repository.referencedata.OrderableReplicaRepository;
+import org.openlmis.dispensing.service.ServiceResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps local replicas of referencedata orderables and lots and answers lookups from them.
+ * The replicas are synchronized on a schedule; rows missing locally (e.g. created since the
+ * last synchronization) are fetched from referencedata and stored on first use when the caller
+ * is not in a transaction; lookups made inside a transaction leave storing them to the next
+ * synchronization, so they never take a second pooled connection.
+ */
+@Service
+public class ReferenceDataReplicaService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceDataReplicaService.class);
+
+  @Autowired
+  private OrderableReplicaRepository orderableReplicaRepository;
+
+  @Autowired
+  private LotReplicaRepository lotReplicaRepository;
+
+  @Autowired
+  private OrderableReferenceDataService orderableReferenceDataService;
+
+  @Autowired
+  private LotReferenceDataService lotReferenceDataService;
+
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Value("${dispensing.referenceDataReplica.pageSize}")
+  private int syncPageSize;
+
+  private volatile String orderablesEtag;
+  private volatile String lotsEtag;
+
+  /**
+   * Finds an orderable, locally if possible.
+   *
+   * @param id id of the orderable.
+   * @return the orderable, or null if it does not exist.
+   */
+  public OrderableDto findOrderable(UUID id) {
+    if (null == id) {
+      return null;
+    }
+    return orderableReplicaRepository.findById(id)
+        .map(OrderableReplica::toDto)
+        .orElseGet(() -> {
+          OrderableDto orderable = orderableReferenceDataService.findOne(id);
+          if (null != orderable) {
+            storeMissing(() -> orderableReplicaRepository.save(OrderableReplica.of(orderable, now())));
+          }
+          return orderable;
+        });
+  }
+
+  /**
+   * Finds orderables, locally if possible, with one remote call for those missing locally.
+   *
+   * @param ids ids of the orderables.
+   * @return found orderables by id.
+   */
+  public Map<UUID, OrderableDto> findOrderables(Collection<UUID> ids) {
+    Map<UUID, OrderableDto> orderables = findReplicatedOrderables(ids);
+
+    Set<UUID> missing = new HashSet<>(ids);
+    missing.removeAll(orderables.keySet());
+    if (!missing.isEmpty()) {
+      ZonedDateTime syncedAt = now();
+      List<OrderableReplica> replicas = new ArrayList<>();
+      for (OrderableDto orderable : orderableReferenceDataService.findByIds(missing)) {
+        orderables.putIfAbsent(orderable.getId(), orderable);
+        replicas.add(OrderableReplica.of(orderable, syncedAt));
+      }
+      storeMissing(() -> orderableReplicaRepository.saveAll(replicas));
+    }
+    return orderables;
+  }
+
+  /**
+   * Finds orderables in the local replica only, without calling referencedata.
+   *
+   * @param ids ids of the orderables.
+   * @return replicated orderables by id, orderables not replicated yet are left out.
+   */
+  public Map<UUID, OrderableDto> findReplicatedOrderables(Collection<UUID> ids) {
+    return orderableReplicaRepository.findAllById(ids).stream()
+        .collect(Collectors.toMap(OrderableReplica::getId, OrderableReplica::toDto));
+  }
+
+  /**
+   * Finds a lot, locally if possible.
+   *
+   * @param id id of the lot.
+   * @return the lot, or null if it does not exist.
+   */
+  public LotDto findLot(UUID id) {
+    if (null == id) {
+      return null;
+    }
+    return lotReplicaRepository.findById(id)
+        .map(LotReplica::toDto)
+        .orElseGet(() -> {
+          LotDto lot = lotReferenceDataService.findOne(id);
+          if (null != lot) {
+            storeMissing(() -> lotReplicaRepository.save(LotReplica.of(lot, now())));
+          }
+          return lot;
+        });
+  }
+
+  /**
+   * Finds lots, locally if possible, with one remote call for those missing locally.
+   *
+   * @param ids ids of the lots.
+   * @return found lots by id.
+   */
+  public Map<UUID, LotDto> findLots(Collection<UUID> ids) {
+    Map<UUID, LotDto> lots = findReplicatedLots(ids);
+
+    Set<UUID> missing = new HashSet<>(ids);
+    missing.removeAll(lots.keySet());
+    if (!missing.isEmpty()) {
+      ZonedDateTime syncedAt = now();
+      Map<UUID, LotDto> fetched = lotReferenceDataService.findByIds(missing);
+      List<LotReplica> replicas = fetched.values().stream()
+          .map(lot -> LotReplica.of(lot, syncedAt))
+          .collect(Collectors.toList());
+      storeMissing(() -> lotReplicaRepository.saveAll(replicas));
+      lots.putAll(fetched);
+    }
+    return lots;
+  }
+
+  /**
+   * Finds lots in the local replica only, without calling referencedata.
+   *
+   * @param ids ids of the lots.
+   * @return replicated lots by id, lots not replicated yet are left out.
+   */
+  public Map<UUID, LotDto> findReplicatedLots(Collection<UUID> ids) {
+    return lotReplicaRepository.findAllById(ids).stream()
+        .collect(Collectors.toMap(LotReplica::getId, LotReplica::toDto));
+  }
+
+  /**
+   * Synchronizes the replicas with referencedata. Nothing is transferred when referencedata
+   * reports, by ETag, that nothing changed; otherwise all pages are read, changed rows are
+   * written and replicas no longer present in referencedata are removed.
+   */
+  @Scheduled(cron = "${dispensing.referenceDataReplica.syncCron}")
+  @Transactional
+  public void synchronize() {
+    ServiceResponse<List<OrderableDto>> orderables =
+        orderableReferenceDataService.findAllIfModified(orderablesEtag, syncPageSize);
+    if (orderables.isModified()) {
+      int updated = synchronizeOrderables(orderables.getBody());
+      LOGGER.info("Orderable replicas synchronized, {} rows changed", updated);
+    }
+    orderablesEtag = orderables.getETag();
+
+    ServiceResponse<List<LotDto>> lots = lotReferenceDataService.findAllIfModified(lotsEtag, syncPageSize);
+    if (lots.isModified()) {
+      int updated = synchronizeLots(lots.getBody());
+      LOGGER.info("Lot replicas synchronized, {} rows changed", updated);
+    }
+    lotsEtag = lots.getETag();
+  }
+
+  private int synchronizeOrderables(List<OrderableDto> orderables) {
+    Map<UUID, OrderableReplica> replicas = orderableReplicaRepository.findAll().stream()
+        .collect(Collectors.toMap(OrderableReplica::getId, Function.identity()));
+    ZonedDateTime syncedAt = now();
+    List<OrderableReplica> changed = new ArrayList<>();
+
+    for (OrderableDto orderable : orderables) {
+      OrderableReplica replica = replicas.remove(orderable.getId());
+      if (null == replica) {
+        changed.add(OrderableReplica.of(orderable, syncedAt));
+      } else if (!replica.isUpToDateWith(orderable)) {
+        replica.updateFrom(orderable, syncedAt);
+        changed.add(replica);
+      }
+    }
+
+    orderableReplicaRepository.saveAll(changed);
+    // whatever is left was not returned by referencedata any more
+    orderableReplicaRepository.deleteAll(replicas.values());
+    return changed.size() + replicas.size();
+  }
+
+  private int synchronizeLots(List<LotDto> lots) {
+    Map<UUID, LotReplica> replicas = lotReplicaRepository.findAll().stream()
+        .collect(Collectors.toMap(LotReplica::getId, Function.identity()));
+    ZonedDateTime syncedAt = now();
+    List<LotReplica> changed = new ArrayList<>();
+
+    for (LotDto lot : lots) {
+      LotReplica replica = replicas.remove(lot.getId());
+      if (null == replica) {
+        changed.add(LotReplica.of(lot, syncedAt));
+      } else if (!replica.isUpToDateWith(lot)) {
+        replica.updateFrom(lot, syncedAt);
+        changed.add(replica);
+      }
+    }
+
+    lotReplicaRepository.saveAll(changed);
+    // whatever is left was not returned by referencedata any more
+    lotReplicaRepository.deleteAll(replicas.values());
+    return changed.size() + replicas.size();
+  }
+
+  private void storeMissing(Runnable store) {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      // the caller holds a connection, and possibly row locks, until it commits
+      return;
+    }
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    try {
+      transaction.execute(status -> {
+        store.run();
+        return null;
+      });
+    } catch (DataIntegrityViolationException ex) {
+      // stored meanwhile by a concurrent lookup or synchronization, which is just as good
+      LOGGER.debug("Replica already stored: {}", ex.getMessage());
+    }
+  }
+
+  private ZonedDateTime now() {
+    return ZonedDateTime.now(clock);
+  }
+}
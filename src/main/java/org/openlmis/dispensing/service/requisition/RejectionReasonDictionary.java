@@ -0,0 +1,121 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.requisition;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.openlmis.dispensing.dto.requisition.RejectionReasonDto;
+import org.openlmis.dispensing.service.ServiceResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In memory dictionary of all rejection reasons. Reasons are a small and slowly changing set,
+ * so they are loaded as a whole and revalidated with the requisition service (If-None-Match)
+ * once the configured time to live has passed. Ids the requisition service does not know are
+ * remembered for the same time to live, so they are not looked up on every call.
+ */
+@Component
+public class RejectionReasonDictionary {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RejectionReasonDictionary.class);
+
+  @Autowired
+  private RejectionReasonService rejectionReasonService;
+
+  @Autowired
+  private Clock clock;
+
+  @Value("${dispensing.rejectionReasons.cacheTtlSeconds}")
+  private long ttlSeconds;
+
+  private final Map<UUID, Instant> unknownUntil = new ConcurrentHashMap<>();
+  private volatile Map<UUID, RejectionReasonDto> reasons;
+  private volatile String etag;
+  private volatile Instant validUntil = Instant.MIN;
+
+  /**
+   * Get a rejection reason.
+   *
+   * @param id rejection reason id, may be null.
+   * @return rejection reason or null if it does not exist.
+   */
+  public RejectionReasonDto get(UUID id) {
+    if (id == null) {
+      return null;
+    }
+    Map<UUID, RejectionReasonDto> current = getReasons();
+    RejectionReasonDto reason = current.get(id);
+    if (reason == null && !isKnownToBeMissing(id)) {
+      // created after the last load, or the dictionary could not be loaded at all
+      reason = rejectionReasonService.findOne(id);
+      if (reason != null) {
+        current.put(id, reason);
+      } else {
+        unknownUntil.put(id, clock.instant().plusSeconds(ttlSeconds));
+      }
+    }
+    return reason;
+  }
+
+  private boolean isKnownToBeMissing(UUID id) {
+    Instant until = unknownUntil.get(id);
+    return until != null && clock.instant().isBefore(until);
+  }
+
+  private Map<UUID, RejectionReasonDto> getReasons() {
+    if (reasons == null || !clock.instant().isBefore(validUntil)) {
+      revalidate();
+    }
+    return reasons;
+  }
+
+  private synchronized void revalidate() {
+    if (reasons != null && clock.instant().isBefore(validUntil)) {
+      return;
+    }
+    try {
+      ServiceResponse<List<RejectionReasonDto>> response =
+          rejectionReasonService.findAll(reasons == null ? null : etag);
+      if (response.isModified() || reasons == null) {
+        Map<UUID, RejectionReasonDto> loaded = new ConcurrentHashMap<>();
+        if (response.getBody() != null) {
+          response.getBody().forEach(reason -> loaded.put(reason.getId(), reason));
+        }
+        reasons = loaded;
+        etag = response.getETag();
+        // reasons created since the last load are in the dictionary now
+        unknownUntil.clear();
+        LOGGER.debug("Loaded {} rejection reasons", loaded.size());
+      }
+    } catch (RuntimeException ex) {
+      // keep serving what we have, reasons not loaded yet are looked up one by one
+      LOGGER.warn("Could not revalidate rejection reasons", ex);
+      if (reasons == null) {
+        reasons = new ConcurrentHashMap<>();
+      }
+    }
+    Instant now = clock.instant();
+    unknownUntil.values().removeIf(until -> !now.isBefore(until));
+    validUntil = now.plusSeconds(ttlSeconds);
+  }
+}
@@ -15,8 +15,10 @@
 
 package org.openlmis.dispensing.service.requisition;
 
+import java.util.List;
 import java.util.UUID;
 import org.openlmis.dispensing.dto.requisition.RejectionReasonDto;
+import org.openlmis.dispensing.service.ServiceResponse;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -48,4 +50,14 @@ public class RejectionReasonService extends BaseRequisitionService<RejectionReas
     return findOne(id);
   }
 
+  /**
+   * Return all rejection reasons from the requisition service, unless they did not change.
+   *
+   * @param etag ETag of the previously returned list, may be null.
+   * @return response with the reasons, or not modified.
+   */
+  public ServiceResponse<List<RejectionReasonDto>> findAll(String etag) {
+    return tryFindAll("", RejectionReasonDto[].class, etag);
+  }
+
 }
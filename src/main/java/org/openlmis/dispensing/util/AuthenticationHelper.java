@@ -16,19 +16,32 @@
 package org.openlmis.dispensing.util;
 
 import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_USER_NOT_FOUND;
+import static org.springframework.web.context.request.RequestAttributes.SCOPE_REQUEST;
 
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Clock;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import org.openlmis.dispensing.dto.referencedata.RightDto;
 import org.openlmis.dispensing.dto.referencedata.UserDto;
 import org.openlmis.dispensing.exception.AuthenticationException;
 import org.openlmis.dispensing.service.referencedata.RightReferenceDataService;
 import org.openlmis.dispensing.service.referencedata.UserReferenceDataService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 @Component
 public class AuthenticationHelper {
+  private static final String CURRENT_USER_ATTRIBUTE =
+      AuthenticationHelper.class.getName() + ".currentUser.";
+  private static final long USER_CACHE_MAX_SIZE = 1000;
 
   @Autowired
   private UserReferenceDataService userReferenceDataService;
@@ -36,24 +49,87 @@ public class AuthenticationHelper {
   @Autowired
   private RightReferenceDataService rightReferenceDataService;
 
+  @Autowired
+  private Clock clock;
+
+  // expiry of cached users follows the application clock
+  private final Ticker clockTicker = new Ticker() {
+    @Override
+    public long read() {
+      return TimeUnit.MILLISECONDS.toNanos(clock.millis());
+    }
+  };
+
+  private Cache<UUID, UserDto> userCache = CacheBuilder.newBuilder()
+      .maximumSize(0)
+      .build();
+
   /**
    * Method returns current user based on Spring context
-   * and fetches his data from reference-data service.
+   * and fetches his data from reference-data service. The user is fetched at most once per
+   * request and reused by later requests of the same principal for a short time.
    *
    * @return UserDto entity of current user.
    * @throws AuthenticationException if user cannot be found.
    */
   public UserDto getCurrentUser() {
     UUID userId = (UUID) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-    UserDto user = userReferenceDataService.findOne(userId);
 
+    RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+    String requestKey = CURRENT_USER_ATTRIBUTE + userId;
+    if (requestAttributes != null) {
+      UserDto user = (UserDto) requestAttributes.getAttribute(requestKey, SCOPE_REQUEST);
+      if (user != null) {
+        return user;
+      }
+    }
+
+    UserDto user = userCache.getIfPresent(userId);
     if (user == null) {
-      throw new AuthenticationException(new Message(ERROR_USER_NOT_FOUND, userId));
+      user = userReferenceDataService.findOne(userId);
+
+      if (user == null) {
+        throw new AuthenticationException(new Message(ERROR_USER_NOT_FOUND, userId));
+      }
+
+      userCache.put(userId, user);
     }
 
+    if (requestAttributes != null) {
+      requestAttributes.setAttribute(requestKey, user, SCOPE_REQUEST);
+    }
     return user;
   }
 
+  /**
+   * Sets how long a resolved user is reused by later requests of the same principal. The user
+   * is always resolved at most once per request.
+   *
+   * @param cacheTtlSeconds time to live in seconds, 0 disables reuse across requests.
+   */
+  @Value("${dispensing.currentUser.cacheTtlSeconds}")
+  public void setUserCacheTtlSeconds(long cacheTtlSeconds) {
+    userCache = CacheBuilder.newBuilder()
+        .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
+        .ticker(clockTicker)
+        .maximumSize(USER_CACHE_MAX_SIZE)
+        .build();
+  }
+
+  /**
+   * Method returns the id of the current user straight from the Spring context, without
+   * calling reference-data.
+   *
+   * @return id of current user or null if the request was made with a client (service) token.
+   */
+  public UUID getCurrentUserId() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication == null || !(authentication.getPrincipal() instanceof UUID)) {
+      return null;
+    }
+    return (UUID) authentication.getPrincipal();
+  }
+
   /**
    * Method returns a correct right and fetches his data from reference-data service.
    *
@@ -0,0 +1,249 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link LazyResource} that can be shared between threads. Concurrent callers wait for one
+ * shared retrieval instead of starting their own, and only see a value once it is fully
+ * retrieved.
+ *
+ * <p>Optionally the value expires after a time to live, and it can be refreshed in the
+ * background shortly before it expires; callers keep getting the current value until the
+ * refresh completes, and also when it fails. Failed retrievals are not remembered unless
+ * {@link Builder#cacheFailuresFor(Duration)} is set, in which case the failure is rethrown
+ * without calling the source again until that period passes.
+ */
+public class ConcurrentLazyResource<T> extends LazyResource<T> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentLazyResource.class);
+
+  private final Supplier<T> retriever;
+  private final Clock clock;
+  private final Duration timeToLive;
+  private final Duration refreshAhead;
+  private final Executor refreshExecutor;
+  private final Duration failureTimeToLive;
+
+  private final AtomicReference<Entry<T>> current = new AtomicReference<>();
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
+  /**
+   * Creates a resource that is retrieved once and never expires.
+   *
+   * @param retriever source of the resource.
+   */
+  public ConcurrentLazyResource(Supplier<T> retriever) {
+    this(builder(retriever));
+  }
+
+  private ConcurrentLazyResource(Builder<T> builder) {
+    super(builder.retriever);
+    this.retriever = builder.retriever;
+    this.clock = builder.clock;
+    this.timeToLive = builder.timeToLive;
+    this.refreshAhead = builder.refreshAhead;
+    this.refreshExecutor = builder.refreshExecutor;
+    this.failureTimeToLive = builder.failureTimeToLive;
+  }
+
+  public static <T> Builder<T> builder(Supplier<T> retriever) {
+    return new Builder<>(retriever);
+  }
+
+  /**
+   * Retrieve resource. Only one thread calls the source at a time; the others wait for its
+   * result. The source is called again once the value, or a cached failure, has expired.
+   */
+  @Override
+  public T get() {
+    while (true) {
+      Entry<T> entry = current.get();
+      Instant now = clock.instant();
+
+      if (entry != null && !entry.isExpired(now)) {
+        refreshAheadIfDue(entry, now);
+        return entry.join();
+      }
+
+      Entry<T> loading = new Entry<>();
+      if (current.compareAndSet(entry, loading)) {
+        load(loading);
+        return loading.join();
+      }
+    }
+  }
+
+  /**
+   * Refresh current resource. Data will be loaded one more time by the next caller.
+   */
+  @Override
+  void refresh() {
+    current.set(null);
+  }
+
+  // the entry must be completed whatever the retriever throws, otherwise every caller waiting
+  // for it would block forever; the failure reaches the loading caller through join()
+  private void load(Entry<T> entry) {
+    try {
+      T value = retriever.get();
+      entry.succeed(value, expiry(timeToLive));
+    } catch (RuntimeException ex) {
+      entry.fail(ex, failureTimeToLive == null ? clock.instant() : expiry(failureTimeToLive));
+    } catch (Throwable ex) {
+      entry.fail(ex, clock.instant());
+    }
+  }
+
+  private void refreshAheadIfDue(Entry<T> entry, Instant now) {
+    if (refreshAhead == null || !entry.isSuccessful()
+        || now.isBefore(entry.expiresAt.minus(refreshAhead))
+        || !refreshing.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      refreshExecutor.execute(() -> {
+        try {
+          Entry<T> refreshed = new Entry<>();
+          refreshed.succeed(retriever.get(), expiry(timeToLive));
+          current.compareAndSet(entry, refreshed);
+        } catch (RuntimeException ex) {
+          LOGGER.warn("Could not refresh resource ahead of expiry, keeping current value", ex);
+        } finally {
+          refreshing.set(false);
+        }
+      });
+    } catch (RuntimeException ex) {
+      refreshing.set(false);
+      LOGGER.warn("Could not schedule refresh of resource", ex);
+    }
+  }
+
+  private Instant expiry(Duration duration) {
+    return duration == null ? null : clock.instant().plus(duration);
+  }
+
+  private static final class Entry<T> {
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private volatile Instant expiresAt;
+
+    void succeed(T value, Instant expiresAt) {
+      this.expiresAt = expiresAt;
+      future.complete(value);
+    }
+
+    void fail(Throwable ex, Instant expiresAt) {
+      this.expiresAt = expiresAt;
+      future.completeExceptionally(ex);
+    }
+
+    boolean isSuccessful() {
+      return future.isDone() && !future.isCompletedExceptionally() && expiresAt != null;
+    }
+
+    boolean isExpired(Instant now) {
+      return future.isDone() && expiresAt != null && !now.isBefore(expiresAt);
+    }
+
+    T join() {
+      try {
+        return future.join();
+      } catch (CompletionException ex) {
+        if (ex.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) ex.getCause();
+        }
+        if (ex.getCause() instanceof Error) {
+          throw (Error) ex.getCause();
+        }
+        throw ex;
+      }
+    }
+  }
+
+  public static final class Builder<T> {
+    private final Supplier<T> retriever;
+    private Clock clock = Clock.systemUTC();
+    private Duration timeToLive;
+    private Duration refreshAhead;
+    private Executor refreshExecutor;
+    private Duration failureTimeToLive;
+
+    private Builder(Supplier<T> retriever) {
+      this.retriever = retriever;
+    }
+
+    /**
+     * Clock used for expiry, UTC system clock by default.
+     */
+    public Builder<T> clock(Clock clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /**
+     * Retrieve the value again once it is older than the given time to live.
+     */
+    public Builder<T> expireAfter(Duration timeToLive) {
+      this.timeToLive = timeToLive;
+      return this;
+    }
+
+    /**
+     * Refresh the value in the background once it is within the given period of expiring.
+     * Requires {@link #expireAfter(Duration)}.
+     *
+     * @param refreshAhead period before expiry in which the refresh starts.
+     * @param executor     executor running the refresh.
+     * @return this builder.
+     */
+    public Builder<T> refreshAhead(Duration refreshAhead, Executor executor) {
+      this.refreshAhead = refreshAhead;
+      this.refreshExecutor = executor;
+      return this;
+    }
+
+    /**
+     * Rethrow a failed retrieval for the given period instead of calling the source again.
+     */
+    public Builder<T> cacheFailuresFor(Duration failureTimeToLive) {
+      this.failureTimeToLive = failureTimeToLive;
+      return this;
+    }
+
+    /**
+     * Creates the resource.
+     *
+     * @return a new resource, not yet retrieved.
+     */
+    public ConcurrentLazyResource<T> build() {
+      if (refreshAhead != null && (timeToLive == null || refreshExecutor == null)) {
+        throw new IllegalStateException("Refresh ahead requires a time to live and an executor");
+      }
+      return new ConcurrentLazyResource<>(this);
+    }
+  }
+}
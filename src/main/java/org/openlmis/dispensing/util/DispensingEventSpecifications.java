@@ -0,0 +1,85 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.util;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import org.openlmis.dispensing.domain.event.DispensingEvent;
+import org.springframework.data.jpa.domain.Specification;
+
+public class DispensingEventSpecifications {
+
+  private static final String RECEIVING_DATE = "receivingDate";
+  private static final String PACKING_DATE = "packingDate";
+  private static final String REFERENCE_NUMBER = "referenceNumber";
+  private static final char LIKE_ESCAPE = '\\';
+
+  private DispensingEventSpecifications() {
+    throw new UnsupportedOperationException();
+  }
+
+  public static Specification<DispensingEvent> destinationIdEquals(UUID destinationId) {
+    return (root, query, cb) -> destinationId == null ? null
+        : cb.equal(root.get("destinationId"), destinationId);
+  }
+
+  public static Specification<DispensingEvent> sourceIdEquals(UUID sourceId) {
+    return (root, query, cb) -> sourceId == null ? null
+        : cb.equal(root.get("sourceId"), sourceId);
+  }
+
+  public static Specification<DispensingEvent> referenceNumberEquals(String referenceNumber) {
+    return (root, query, cb) -> referenceNumber == null ? null
+        : cb.equal(root.get(REFERENCE_NUMBER), referenceNumber);
+  }
+
+  /**
+   * Matches reference numbers starting with the given prefix. The match is case sensitive so
+   * that it can use the text_pattern_ops index on the column.
+   */
+  public static Specification<DispensingEvent> referenceNumberStartsWith(String prefix) {
+    return (root, query, cb) -> prefix == null ? null
+        : cb.like(root.<String>get(REFERENCE_NUMBER), escapeLike(prefix) + "%", LIKE_ESCAPE);
+  }
+
+  private static String escapeLike(String value) {
+    return value
+        .replace(String.valueOf(LIKE_ESCAPE), String.valueOf(LIKE_ESCAPE) + LIKE_ESCAPE)
+        .replace("%", LIKE_ESCAPE + "%")
+        .replace("_", LIKE_ESCAPE + "_");
+  }
+
+  public static Specification<DispensingEvent> receivedFrom(ZonedDateTime from) {
+    return (root, query, cb) -> from == null ? null
+        : cb.greaterThanOrEqualTo(root.<ZonedDateTime>get(RECEIVING_DATE), from);
+  }
+
+  public static Specification<DispensingEvent> receivedBefore(ZonedDateTime before) {
+    return (root, query, cb) -> before == null ? null
+        : cb.lessThan(root.<ZonedDateTime>get(RECEIVING_DATE), before);
+  }
+
+  public static Specification<DispensingEvent> packedFrom(LocalDate from) {
+    return (root, query, cb) -> from == null ? null
+        : cb.greaterThanOrEqualTo(root.<LocalDate>get(PACKING_DATE), from);
+  }
+
+  public static Specification<DispensingEvent> packedTo(LocalDate to) {
+    return (root, query, cb) -> to == null ? null
+        : cb.lessThanOrEqualTo(root.<LocalDate>get(PACKING_DATE), to);
+  }
+}
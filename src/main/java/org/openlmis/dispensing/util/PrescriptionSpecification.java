@@ -18,6 +18,10 @@ package org.openlmis.dispensing.util;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import org.openlmis.dispensing.domain.patient.Patient;
 import org.openlmis.dispensing.domain.prescription.Prescription;
 import org.openlmis.dispensing.domain.status.PrescriptionStatus;
 import org.springframework.data.jpa.domain.Specification;
@@ -57,6 +61,37 @@ public class PrescriptionSpecification {
     return (root, query, cb) -> isVoided == null ? null : cb.equal(root.get("isVoided"), isVoided);
   }
 
+  /**
+   * Restricts prescriptions to patients matching the patient search criteria, evaluated as a
+   * subquery so that no patient has to be loaded.
+   */
+  public static Specification<Prescription> patientMatches(String patientNumber, String firstName,
+      String lastName, LocalDate dateOfBirth, UUID facilityId, UUID geoZoneId, String nationalId) {
+    Specification<Patient> patientSpec = PatientSpecifications.bySearchCriteria(patientNumber,
+        firstName, lastName, dateOfBirth, facilityId, geoZoneId, nationalId);
+    return (root, query, cb) -> {
+      Subquery<UUID> patientIds = query.subquery(UUID.class);
+      Root<Patient> patient = patientIds.from(Patient.class);
+      patientIds.select(patient.<UUID>get("id")).where(patientSpec.toPredicate(patient, query, cb));
+      return root.get("patient").get("id").in(patientIds);
+    };
+  }
+
+  /**
+   * Fetch joins the patient, person and line items rendered for every prescription. Only to be
+   * used for unpaged queries, paged searches should select ids first.
+   */
+  public static Specification<Prescription> fetchDetails() {
+    return (root, query, cb) -> {
+      if (!Long.class.equals(query.getResultType())) {
+        root.fetch("patient", JoinType.LEFT).fetch("person", JoinType.LEFT);
+        root.fetch("lineItems", JoinType.LEFT);
+        query.distinct(true);
+      }
+      return null;
+    };
+  }
+
   public static Specification<Prescription> followUpDateEquals(LocalDate followUpDate) {
     return (root, query, cb) -> followUpDate == null ? null : cb.equal(root.get("followUpDate"), followUpDate);
   }
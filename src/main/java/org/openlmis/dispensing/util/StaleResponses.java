@@ -0,0 +1,51 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.util;
+
+import static org.springframework.web.context.request.RequestAttributes.SCOPE_REQUEST;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Remembers, for the current request, that some of the data in its response was served from
+ * a stale cache entry because the source was unavailable.
+ */
+public final class StaleResponses {
+  private static final String STALE_ATTRIBUTE = StaleResponses.class.getName() + ".stale";
+
+  private StaleResponses() {
+  }
+
+  /**
+   * Flags the response of the current request as stale. Does nothing outside of a request.
+   */
+  public static void markStale() {
+    RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+    if (requestAttributes != null) {
+      requestAttributes.setAttribute(STALE_ATTRIBUTE, Boolean.TRUE, SCOPE_REQUEST);
+    }
+  }
+
+  /**
+   * Checks whether the response of the current request was flagged as stale.
+   */
+  public static boolean isStale() {
+    RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+    return requestAttributes != null
+        && null != requestAttributes.getAttribute(STALE_ATTRIBUTE, SCOPE_REQUEST);
+  }
+}
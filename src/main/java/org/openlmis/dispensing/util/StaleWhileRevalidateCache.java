@@ -0,0 +1,173 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache that keeps serving an entry after its source starts failing. Entries are used as they
+ * are for {@code freshFor}; after that they are loaded again. If loading fails with an error
+ * accepted by {@code isOutage}, the old entry is returned flagged as stale for up to
+ * {@code maxStaleness} past its freshness, and it is refreshed in the background at most once
+ * per {@code freshFor} instead of on every call.
+ */
+public class StaleWhileRevalidateCache<K, V> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(StaleWhileRevalidateCache.class);
+
+  private final Duration freshFor;
+  private final Duration maxStaleness;
+  private final Predicate<RuntimeException> isOutage;
+  private final Executor refreshExecutor;
+  private final Clock clock;
+
+  private final Cache<K, Entry<V>> entries;
+  private final Set<K> refreshing = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxSize         maximum number of entries.
+   * @param freshFor        how long an entry is used without loading it again.
+   * @param maxStaleness    how long past its freshness an entry may be served when loading fails.
+   * @param isOutage        accepts failures on which a stale entry is served.
+   * @param refreshExecutor runs background refreshes of stale entries.
+   * @param clock           source of the current time.
+   */
+  public StaleWhileRevalidateCache(long maxSize, Duration freshFor, Duration maxStaleness,
+      Predicate<RuntimeException> isOutage, Executor refreshExecutor, Clock clock) {
+    this.freshFor = freshFor;
+    this.maxStaleness = maxStaleness;
+    this.isOutage = isOutage;
+    this.refreshExecutor = refreshExecutor;
+    this.clock = clock;
+    this.entries = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .build();
+  }
+
+  /**
+   * Returns the value for the key, loading it when the cached entry is missing or not fresh.
+   * Null values are not cached.
+   *
+   * @param key    the key.
+   * @param loader loads the value from the source.
+   * @return the value, flagged as stale when it could not be loaded from the source.
+   */
+  public Result<V> get(K key, Function<K, V> loader) {
+    Instant now = clock.instant();
+    Entry<V> entry = entries.getIfPresent(key);
+
+    // a stale entry is only served within its maximum staleness, even before its next load
+    if (null != entry && now.isBefore(entry.nextLoadAt)
+        && (!entry.stale || isServable(entry, now))) {
+      return new Result<>(entry.value, entry.stale);
+    }
+
+    if (null != entry && entry.stale && isServable(entry, now)) {
+      refreshInBackground(key, loader);
+      return new Result<>(entry.value, true);
+    }
+
+    try {
+      return new Result<>(load(key, loader), false);
+    } catch (RuntimeException ex) {
+      if (null == entry || !isServable(entry, now) || !isOutage.test(ex)) {
+        throw ex;
+      }
+      LOGGER.warn("Serving stale entry for {} after load failed: {}", key, ex.getMessage());
+      entries.put(key, new Entry<>(entry.value, entry.loadedAt, now.plus(freshFor), true));
+      return new Result<>(entry.value, true);
+    }
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public void invalidateAll() {
+    entries.invalidateAll();
+  }
+
+  private boolean isServable(Entry<V> entry, Instant now) {
+    return now.isBefore(entry.loadedAt.plus(freshFor).plus(maxStaleness));
+  }
+
+  private V load(K key, Function<K, V> loader) {
+    Instant loadedAt = clock.instant();
+    V value = loader.apply(key);
+    if (null == value) {
+      entries.invalidate(key);
+    } else {
+      entries.put(key, new Entry<>(value, loadedAt, loadedAt.plus(freshFor), false));
+    }
+    return value;
+  }
+
+  private void refreshInBackground(K key, Function<K, V> loader) {
+    if (!refreshing.add(key)) {
+      return;
+    }
+
+    // until the refresh completes, or if it fails, keep serving the stale entry
+    Entry<V> entry = entries.getIfPresent(key);
+    if (null != entry) {
+      Instant nextLoadAt = clock.instant().plus(freshFor);
+      entries.put(key, new Entry<>(entry.value, entry.loadedAt, nextLoadAt, true));
+    }
+
+    try {
+      refreshExecutor.execute(() -> {
+        try {
+          load(key, loader);
+        } catch (RuntimeException ex) {
+          LOGGER.debug("Background refresh of {} failed: {}", key, ex.getMessage());
+        } finally {
+          refreshing.remove(key);
+        }
+      });
+    } catch (RuntimeException ex) {
+      refreshing.remove(key);
+      LOGGER.warn("Could not schedule background refresh of {}", key, ex);
+    }
+  }
+
+  @Getter
+  @AllArgsConstructor
+  public static final class Result<V> {
+    private final V value;
+    private final boolean stale;
+  }
+
+  @AllArgsConstructor
+  private static final class Entry<V> {
+    private final V value;
+    private final Instant loadedAt;
+    private final Instant nextLoadAt;
+    private final boolean stale;
+  }
+}
@@ -15,26 +15,45 @@
 
 package org.openlmis.dispensing.web;
 
+import static org.openlmis.dispensing.service.PermissionService.PODS_MANAGE;
+import static org.openlmis.dispensing.service.PermissionService.PODS_VIEW;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.NO_CONTENT;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.web.bind.annotation.RequestMethod.GET;
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import org.openlmis.dispensing.dto.DispensingEventDto;
+import org.openlmis.dispensing.dto.DispensingEventMonthlySummary;
 import org.openlmis.dispensing.service.DispensingEventProcessor;
 import org.openlmis.dispensing.service.DispensingService;
+import org.openlmis.dispensing.service.PermissionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.profiler.Profiler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.SortDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -49,6 +68,9 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 @RequestMapping("/api/podEvents")
 public class DispensingController extends BaseController {
   public static final String ID_PATH_VARIABLE = "/{id}";
+  public static final String INCLUDE_DISCREPANCIES = "discrepancies";
+  public static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+  private static final int DEFAULT_PAGE_SIZE = 20;
   private static final Logger LOGGER = LoggerFactory.getLogger(DispensingController.class);
 
   @Autowired
@@ -57,6 +79,9 @@ public class DispensingController extends BaseController {
   @Autowired
   private DispensingService pointOfDeliveryService;
 
+  @Autowired
+  private PermissionService permissionService;
+
   /**
    * Create point of delivery event.
    *
@@ -72,7 +97,9 @@ public class DispensingController extends BaseController {
 
     Profiler profiler = getProfiler("CREATE_POD_EVENT", pointOfDeliveryEventDto);
 
-    //checkPermission(pointOfDeliveryEventDto, profiler.startNested("CHECK_PERMISSION"));
+    profiler.start("CHECK_PERMISSION");
+    permissionService.checkPermission(PODS_MANAGE, null,
+        pointOfDeliveryEventDto.getDestinationId());
 
     profiler.start("PROCESS");
     UUID createdPodId = pointOfDeliveryEventProcessor.process(pointOfDeliveryEventDto);
@@ -83,20 +110,57 @@ public class DispensingController extends BaseController {
     return stopProfiler(profiler, response);
   }
 
+  /**
+   * Create a batch of point of delivery events, e.g. an end-of-day upload from an offline
+   * device. All events are validated before any is saved.
+   *
+   * @param pointOfDeliveryEventDtos pod events bound to request body.
+   * @return created pod events' IDs, in the order of the request.
+   */
+  @Transactional
+  @PostMapping("/batch")
+  public ResponseEntity<List<UUID>> createDispensingEvents(
+      @RequestBody List<DispensingEventDto> pointOfDeliveryEventDtos) {
+
+    LOGGER.debug("Try to create a batch of point of delivery events");
+
+    Profiler profiler = getProfiler("CREATE_POD_EVENTS_BATCH");
+
+    profiler.start("CHECK_PERMISSION");
+    pointOfDeliveryEventDtos.stream()
+        .map(DispensingEventDto::getDestinationId)
+        .distinct()
+        .forEach(destinationId -> permissionService
+            .checkPermission(PODS_MANAGE, null, destinationId));
+
+    profiler.start("PROCESS");
+    List<UUID> createdPodIds = pointOfDeliveryEventProcessor.processBatch(
+        pointOfDeliveryEventDtos);
+
+    profiler.start("CREATE_RESPONSE");
+    ResponseEntity<List<UUID>> response = new ResponseEntity<>(createdPodIds, CREATED);
+
+    return stopProfiler(profiler, response);
+  }
+
   /**
    * List point of delivery event.
    *
    * @param destinationId a destination facility id.
+   * @param include       optional parts to include, "discrepancies" loads discrepancies.
    * @return List of pod events.
    */
   @RequestMapping(method = GET)
   public ResponseEntity<List<DispensingEventDto>> getDispensingEvents(
-      @RequestParam() UUID destinationId) {
+      @RequestParam() UUID destinationId,
+      @RequestParam(required = false) Set<String> include) {
 
     LOGGER.debug("Try to load point of delivery events");
 
-    List<DispensingEventDto> podsToReturn =
-        pointOfDeliveryService.getDispensingEventsByDestinationId(destinationId);
+    permissionService.checkPermission(PODS_VIEW, null, destinationId);
+
+    List<DispensingEventDto> podsToReturn = pointOfDeliveryService
+        .getDispensingEventsByDestinationId(destinationId, includesDiscrepancies(include));
 
     return new ResponseEntity<>(podsToReturn, OK);
     // Profiler profiler = getProfiler("LIST_POD_EVENTS", pointOfDeliveryEventDto);
@@ -112,6 +176,94 @@ public class DispensingController extends BaseController {
     //return stopProfiler(profiler, response);
   }
 
+  /**
+   * Search point of delivery events of a destination, one page at a time.
+   *
+   * @param destinationId     a destination facility id.
+   * @param receivingDateFrom first receiving date (inclusive).
+   * @param receivingDateTo   last receiving date (inclusive).
+   * @param packingDateFrom   first packing date (inclusive).
+   * @param packingDateTo     last packing date (inclusive).
+   * @param include           optional parts to include, "discrepancies" loads discrepancies.
+   * @param pageable          page and sort, newest received first by default.
+   * @return Page of pod events.
+   */
+  @GetMapping("/v2")
+  public ResponseEntity<Page<DispensingEventDto>> searchDispensingEvents(
+      @RequestParam UUID destinationId,
+      @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate receivingDateFrom,
+      @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate receivingDateTo,
+      @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate packingDateFrom,
+      @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate packingDateTo,
+      @RequestParam(required = false) Set<String> include,
+      @PageableDefault(size = DEFAULT_PAGE_SIZE)
+      @SortDefault(sort = "receivingDate", direction = Direction.DESC) Pageable pageable) {
+    Profiler profiler = getProfiler("SEARCH_POD_EVENTS", destinationId, pageable);
+
+    profiler.start("CHECK_PERMISSION");
+    permissionService.checkPermission(PODS_VIEW, null, destinationId);
+
+    profiler.start("SEARCH");
+    Page<DispensingEventDto> page = pointOfDeliveryService.searchDispensingEvents(destinationId,
+        receivingDateFrom, receivingDateTo, packingDateFrom, packingDateTo,
+        includesDiscrepancies(include), pageable);
+
+    return stopProfiler(profiler, new ResponseEntity<>(page, OK));
+  }
+
+  /**
+   * Find point of delivery events by waybill/reference number, exactly or by prefix.
+   *
+   * @param referenceNumber the reference number, or its beginning when prefix is set.
+   * @param prefix          whether to match reference numbers starting with the value.
+   * @param sourceId        source facility id (optional).
+   * @param include         optional parts to include, "discrepancies" loads discrepancies.
+   * @param pageable        page and sort, newest received first by default.
+   * @return Page of pod events.
+   */
+  @GetMapping("/byReferenceNumber")
+  public ResponseEntity<Page<DispensingEventDto>> findDispensingEventsByReferenceNumber(
+      @RequestParam String referenceNumber,
+      @RequestParam(defaultValue = "false") boolean prefix,
+      @RequestParam(required = false) UUID sourceId,
+      @RequestParam(required = false) Set<String> include,
+      @PageableDefault(size = DEFAULT_PAGE_SIZE)
+      @SortDefault(sort = "receivingDate", direction = Direction.DESC) Pageable pageable) {
+    Profiler profiler = getProfiler("FIND_POD_EVENTS_BY_REFERENCE_NUMBER", referenceNumber,
+        prefix, sourceId, pageable);
+
+    profiler.start("FIND");
+    Page<DispensingEventDto> page = pointOfDeliveryService.findDispensingEventsByReferenceNumber(
+        referenceNumber, prefix, sourceId, includesDiscrepancies(include), pageable);
+
+    return stopProfiler(profiler, new ResponseEntity<>(page, OK));
+  }
+
+  /**
+   * Get accepted and rejected carton and container totals per destination and month.
+   *
+   * @param destinationId destination facility ids.
+   * @param from          first month, yyyy-MM (optional).
+   * @param to            last month, yyyy-MM (optional).
+   * @return monthly totals of the destinations.
+   */
+  @GetMapping("/summary")
+  public ResponseEntity<List<DispensingEventMonthlySummary>> getDispensingEventSummary(
+      @RequestParam Set<UUID> destinationId,
+      @RequestParam(required = false) YearMonth from,
+      @RequestParam(required = false) YearMonth to) {
+    Profiler profiler = getProfiler("SUMMARIZE_POD_EVENTS", destinationId, from, to);
+
+    profiler.start("CHECK_PERMISSION");
+    destinationId.forEach(id -> permissionService.checkPermission(PODS_VIEW, null, id));
+
+    profiler.start("SUMMARIZE");
+    List<DispensingEventMonthlySummary> summary =
+        pointOfDeliveryService.summarizeDispensingEvents(destinationId, from, to);
+
+    return stopProfiler(profiler, new ResponseEntity<>(summary, OK));
+  }
+
   /**
    * Update a POD event.
    *
@@ -130,15 +282,39 @@ public class DispensingController extends BaseController {
     return new ResponseEntity<>(updatedPodEvent, OK);
   }
 
+  /**
+   * Partially update a POD event with a JSON merge patch. Only the supplied fields are written;
+   * discrepancies are merged by id instead of being replaced.
+   *
+   * @param id    POD event id.
+   * @param patch merge patch document.
+   */
+  @Transactional
+  @PatchMapping(value = ID_PATH_VARIABLE,
+      consumes = {MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+  @ResponseStatus(NO_CONTENT)
+  public void patchDispensingEvent(@PathVariable UUID id, @RequestBody ObjectNode patch) {
+    Profiler profiler = getProfiler("PATCH_POD_EVENT", id);
+
+    profiler.start("PATCH");
+    pointOfDeliveryService.patchDispensingEvent(id, patch);
+
+    stopProfiler(profiler, null);
+  }
+
   /**
    * Delete a POD event.
    *
    * @param id POD event id.
    */
+  @Transactional
   @DeleteMapping(ID_PATH_VARIABLE)
   @ResponseStatus(NO_CONTENT)
   public void deleteDispensingEvent(@PathVariable UUID id) {
     pointOfDeliveryService.deleteDispensingEvent(id);
   }
 
+  private boolean includesDiscrepancies(Set<String> include) {
+    return include != null && include.contains(INCLUDE_DISCREPANCIES);
+  }
 }
@@ -20,6 +20,7 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
 
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
@@ -28,13 +29,19 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 import org.flywaydb.core.internal.util.StringUtils;
 import org.openlmis.dispensing.domain.status.PrescriptionStatus;
+import org.openlmis.dispensing.dto.prescription.DueListItemDto;
 import org.openlmis.dispensing.dto.prescription.PrescriptionDto;
+import org.openlmis.dispensing.dto.prescription.PrescriptionStatusCountsDto;
+import org.openlmis.dispensing.dto.prescription.StatusChangeDto;
 import org.openlmis.dispensing.service.prescription.PrescriptionService;
+import org.openlmis.dispensing.service.prescription.PrescriptionStatusCounterService;
+import org.openlmis.dispensing.service.prescription.StatusChangeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.profiler.Profiler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -60,6 +67,15 @@ public class PrescriptionController extends BaseController {
   @Autowired
   private PrescriptionService prescriptionService;
 
+  @Autowired
+  private PrescriptionStatusCounterService prescriptionStatusCounterService;
+
+  @Autowired
+  private StatusChangeService statusChangeService;
+
+  @Autowired
+  private Clock clock;
+
   /**
    * Create prescription.
    *
@@ -259,4 +275,56 @@ public class PrescriptionController extends BaseController {
     
     return new ResponseEntity<>(prescriptionDtos, OK);
   }
+
+  /**
+   * Get the work queue of follow ups or balance collections due at a facility.
+   *
+   * @param facilityId facility id.
+   * @param type       FOLLOW_UP (default) or COLLECT_BALANCE.
+   * @param from       first due date, defaults to today.
+   * @param to         last due date, defaults to from.
+   * @return page of light due list rows.
+   */
+  @GetMapping("/dueList")
+  public ResponseEntity<Page<DueListItemDto>> getDueList(
+      @RequestParam UUID facilityId,
+      @RequestParam(defaultValue = "FOLLOW_UP") DueListItemDto.Type type,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "10") int size) {
+    Profiler profiler = getProfiler("GET_DUE_LIST", facilityId, type);
+
+    LocalDate fromDate = from != null ? from : LocalDate.now(clock);
+    LocalDate toDate = to != null ? to : fromDate;
+
+    profiler.start("SEARCH");
+    Page<DueListItemDto> dueList = prescriptionService.getDueList(facilityId, type, fromDate, toDate,
+        PageRequest.of(page, size));
+
+    return stopProfiler(profiler, new ResponseEntity<>(dueList, OK));
+  }
+
+  /**
+   * Get the number of prescriptions and prescription line items of a facility per status.
+   * Served from precomputed counters, so no prescription table is scanned.
+   *
+   * @param facilityId facility id.
+   * @return counts by status.
+   */
+  @GetMapping("/statusCounts")
+  public ResponseEntity<PrescriptionStatusCountsDto> getStatusCounts(@RequestParam UUID facilityId) {
+    return new ResponseEntity<>(prescriptionStatusCounterService.getStatusCounts(facilityId), OK);
+  }
+
+  /**
+   * Get the status history of a prescription.
+   *
+   * @param id prescription id.
+   * @return status changes, oldest first.
+   */
+  @GetMapping("/{id}/statusChanges")
+  public ResponseEntity<List<StatusChangeDto>> getStatusChanges(@PathVariable UUID id) {
+    return new ResponseEntity<>(statusChangeService.getStatusChanges(id), OK);
+  }
 }
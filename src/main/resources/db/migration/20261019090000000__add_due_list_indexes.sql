@@ -0,0 +1,7 @@
+-- Supports the follow-up due list: prescriptions of a facility ordered by follow up date
+CREATE INDEX IF NOT EXISTS prescription_facilityid_followupdate_idx
+  ON dispensing.prescription (facilityid, followupdate);
+
+-- Supports the balance collection due list: line items with an outstanding balance by collect date
+CREATE INDEX IF NOT EXISTS prescriptionlineitem_collectbalancedate_status_idx
+  ON dispensing.prescriptionlineitem (collectbalancedate, status);
@@ -0,0 +1,33 @@
+-- Per facility counters of prescriptions and prescription line items by status
+CREATE TABLE IF NOT EXISTS dispensing.prescription_status_counters (
+  id UUID PRIMARY KEY,
+  facilityid UUID NOT NULL,
+  statustype VARCHAR(255) NOT NULL,
+  status VARCHAR(255) NOT NULL,
+  total BIGINT NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS prescription_status_counters_unq
+  ON dispensing.prescription_status_counters (facilityid, statustype, status);
+
+-- Backfill from existing, non voided prescriptions
+INSERT INTO dispensing.prescription_status_counters (id, facilityid, statustype, status, total)
+SELECT md5(random()::text || clock_timestamp()::text)::uuid, c.facilityid, 'PRESCRIPTION', c.status, c.total
+FROM (
+  SELECT p.facilityid, p.status, COUNT(*) AS total
+  FROM dispensing.prescription p
+  WHERE p.facilityid IS NOT NULL AND p.isvoided IS NOT TRUE
+  GROUP BY p.facilityid, p.status
+) c
+ON CONFLICT (facilityid, statustype, status) DO NOTHING;
+
+INSERT INTO dispensing.prescription_status_counters (id, facilityid, statustype, status, total)
+SELECT md5(random()::text || clock_timestamp()::text)::uuid, c.facilityid, 'LINE_ITEM', c.status, c.total
+FROM (
+  SELECT p.facilityid, li.status, COUNT(*) AS total
+  FROM dispensing.prescriptionlineitem li
+  JOIN dispensing.prescription p ON p.id = li.prescriptionid
+  WHERE p.facilityid IS NOT NULL AND p.isvoided IS NOT TRUE
+  GROUP BY p.facilityid, li.status
+) c
+ON CONFLICT (facilityid, statustype, status) DO NOTHING;
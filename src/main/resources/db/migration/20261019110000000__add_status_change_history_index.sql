@@ -0,0 +1,27 @@
+-- Status history tables (previously only created by Hibernate, never written to)
+CREATE TABLE IF NOT EXISTS dispensing.status_changes (
+  id UUID PRIMARY KEY,
+  createddate TIMESTAMP WITH TIME ZONE,
+  modifieddate TIMESTAMP WITH TIME ZONE,
+  prescriptionid UUID NOT NULL REFERENCES dispensing.prescription (id),
+  authorid UUID,
+  supervisorynodeid UUID,
+  status INTEGER NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS dispensing.status_messages (
+  id UUID PRIMARY KEY,
+  createddate TIMESTAMP WITH TIME ZONE,
+  modifieddate TIMESTAMP WITH TIME ZONE,
+  prescriptionid UUID NOT NULL REFERENCES dispensing.prescription (id),
+  statuschangeid UUID NOT NULL UNIQUE REFERENCES dispensing.status_changes (id),
+  authorid UUID,
+  authorfirstname VARCHAR(255),
+  authorlastname VARCHAR(255),
+  status INTEGER NOT NULL,
+  body VARCHAR(255) NOT NULL
+);
+
+-- Per prescription history lookup, in chronological order
+CREATE INDEX IF NOT EXISTS status_changes_prescriptionid_createddate_idx
+  ON dispensing.status_changes (prescriptionid, createddate);
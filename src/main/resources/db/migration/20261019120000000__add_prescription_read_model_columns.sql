@@ -0,0 +1,9 @@
+-- Reference data display fields stored with prescriptions, populated on write and by the
+-- scheduled read model refresh
+ALTER TABLE dispensing.prescription
+  ADD COLUMN IF NOT EXISTS facilityname VARCHAR(255);
+
+ALTER TABLE dispensing.prescriptionlineitem
+  ADD COLUMN IF NOT EXISTS orderableprescribedname VARCHAR(255),
+  ADD COLUMN IF NOT EXISTS orderabledispensedname VARCHAR(255),
+  ADD COLUMN IF NOT EXISTS lotcode VARCHAR(255);
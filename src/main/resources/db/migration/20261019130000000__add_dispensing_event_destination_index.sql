@@ -0,0 +1,3 @@
+-- Supports paged listing of the events of a destination, newest received first
+CREATE INDEX IF NOT EXISTS dispensing_event_destinationid_receivingdate_idx
+  ON dispensing.dispensing_event (destinationid, receivingdate);
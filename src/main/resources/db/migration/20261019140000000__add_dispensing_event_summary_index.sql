@@ -0,0 +1,8 @@
+-- Covering index for the monthly destination summary, so totals are read from the index
+-- alone. It also serves the paged listing, which used the narrower index it replaces.
+CREATE INDEX IF NOT EXISTS dispensing_event_destination_receiving_totals_idx
+  ON dispensing.dispensing_event (destinationid, receivingdate)
+  INCLUDE (cartonsquantityaccepted, cartonsquantityrejected,
+    containersquantityaccepted, containersquantityrejected);
+
+DROP INDEX IF EXISTS dispensing.dispensing_event_destinationid_receivingdate_idx;
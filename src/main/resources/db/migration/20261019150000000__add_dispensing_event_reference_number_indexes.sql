@@ -0,0 +1,6 @@
+-- text_pattern_ops lets the same index serve exact and prefix (LIKE 'abc%') lookups
+CREATE INDEX IF NOT EXISTS dispensing_event_referencenumber_idx
+  ON dispensing.dispensing_event (referencenumber text_pattern_ops);
+
+CREATE INDEX IF NOT EXISTS dispensing_event_sourceid_referencenumber_idx
+  ON dispensing.dispensing_event (sourceid, referencenumber text_pattern_ops);
@@ -0,0 +1,49 @@
+-- Deleted point of delivery events are kept and flagged instead of being removed
+ALTER TABLE dispensing.dispensing_event
+  ADD COLUMN IF NOT EXISTS deleted BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- Events received before the archive horizon, and their discrepancies, are moved here by the
+-- scheduled archiver. Columns are listed explicitly in the archiving and reading queries, so
+-- columns added to the live tables later must be added here as well.
+CREATE TABLE IF NOT EXISTS dispensing.dispensing_event_archive (
+  id UUID PRIMARY KEY,
+  sourceid UUID,
+  sourcefreetext VARCHAR(255),
+  destinationid UUID,
+  destinationfreetext VARCHAR(255),
+  receivedbyuserid UUID,
+  receivedbyusernames VARCHAR(255),
+  receivingdate TIMESTAMP NOT NULL,
+  referencenumber VARCHAR(255),
+  packingdate TIMESTAMP NOT NULL,
+  packedby VARCHAR(255),
+  cartonsquantityonwaybill INTEGER,
+  cartonsquantityshipped INTEGER,
+  cartonsquantityaccepted INTEGER,
+  cartonsquantityrejected INTEGER,
+  containersquantityonwaybill INTEGER,
+  containersquantityshipped INTEGER,
+  containersquantityaccepted INTEGER,
+  containersquantityrejected INTEGER,
+  remarks VARCHAR(255),
+  deleted BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+CREATE INDEX IF NOT EXISTS dispensing_event_archive_destination_receiving_idx
+  ON dispensing.dispensing_event_archive (destinationid, receivingdate);
+
+CREATE TABLE IF NOT EXISTS dispensing.dispensing_event_discrepencies_archive (
+  id UUID PRIMARY KEY,
+  rejectionreasonid UUID,
+  shipmenttype VARCHAR(255),
+  quantityaffected INTEGER,
+  comments VARCHAR(255),
+  dispensingeventid UUID
+);
+
+CREATE INDEX IF NOT EXISTS dispensing_event_discrepencies_archive_event_idx
+  ON dispensing.dispensing_event_discrepencies_archive (dispensingeventid);
+
+-- Used by the archiver to find the oldest live events
+CREATE INDEX IF NOT EXISTS dispensing_event_receivingdate_idx
+  ON dispensing.dispensing_event (receivingdate);
@@ -0,0 +1,25 @@
+-- Local replicas of referencedata orderables and lots, synchronized by a scheduled job
+CREATE TABLE IF NOT EXISTS dispensing.orderable_replicas (
+  id UUID PRIMARY KEY,
+  productcode VARCHAR(255),
+  fullproductname VARCHAR(255),
+  versionnumber BIGINT,
+  lastupdated TIMESTAMP WITH TIME ZONE,
+  syncedat TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS dispensing.orderable_replica_programs (
+  orderableid UUID NOT NULL REFERENCES dispensing.orderable_replicas (id) ON DELETE CASCADE,
+  programid UUID NOT NULL,
+  PRIMARY KEY (orderableid, programid)
+);
+
+CREATE TABLE IF NOT EXISTS dispensing.lot_replicas (
+  id UUID PRIMARY KEY,
+  lotcode VARCHAR(255),
+  active BOOLEAN NOT NULL,
+  tradeitemid UUID,
+  expirationdate DATE,
+  manufacturedate DATE,
+  syncedat TIMESTAMP WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,112 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import org.hibernate.jpa.QueryHints;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.dispensing.domain.event.DispensingEvent;
+import org.openlmis.dispensing.exception.ValidationMessageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DispensingEventsRepositoryImplTest {
+
+  private static final LocalDateTime RECEIVED_FROM = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+  @Mock
+  private EntityManager entityManager;
+
+  @Mock
+  private Query query;
+
+  @InjectMocks
+  private DispensingEventsRepositoryImpl repository;
+
+  private final UUID destinationId = UUID.randomUUID();
+
+  @Test
+  public void shouldReadLiveAndArchivedEventsWithOneUnionQuery() {
+    ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+    when(entityManager.createNativeQuery(sql.capture(), eq(DispensingEvent.class)))
+        .thenReturn(query);
+    when(query.getResultList()).thenReturn(Collections.singletonList(new DispensingEvent()));
+
+    Page<DispensingEvent> page = repository.findAllIncludingArchive(destinationId,
+        RECEIVED_FROM, null, null, null,
+        PageRequest.of(0, 10, Sort.by(Direction.DESC, "receivingDate")));
+
+    assertEquals(1, page.getContent().size());
+    assertEquals(1, page.getTotalElements());
+    assertTrue(sql.getValue().contains("FROM dispensing.dispensing_event WHERE NOT deleted"
+        + " AND destinationid = :destinationId AND receivingdate >= :receivedFrom UNION ALL"));
+    assertTrue(sql.getValue().contains("FROM dispensing.dispensing_event_archive WHERE NOT deleted"
+        + " AND destinationid = :destinationId AND receivingdate >= :receivedFrom"));
+    assertTrue(sql.getValue().endsWith(" ORDER BY receivingdate DESC, id"));
+    verify(query).setHint(QueryHints.HINT_READONLY, true);
+    verify(query).setParameter("destinationId", destinationId.toString());
+    verify(query).setParameter("receivedFrom", RECEIVED_FROM);
+    verify(query).setFirstResult(0);
+    verify(query).setMaxResults(10);
+  }
+
+  @Test
+  public void shouldCountBothTablesWhenPageIsFull() {
+    Query count = mock(Query.class);
+    when(entityManager.createNativeQuery(anyString(), eq(DispensingEvent.class)))
+        .thenReturn(query);
+    when(query.getResultList()).thenReturn(Collections.singletonList(new DispensingEvent()));
+    ArgumentCaptor<String> countSql = ArgumentCaptor.forClass(String.class);
+    when(entityManager.createNativeQuery(countSql.capture())).thenReturn(count);
+    when(count.getSingleResult()).thenReturn(42L);
+
+    Page<DispensingEvent> page = repository.findAllIncludingArchive(destinationId, null, null,
+        null, null, PageRequest.of(0, 1));
+
+    assertEquals(42, page.getTotalElements());
+    assertTrue(countSql.getValue().startsWith("SELECT COUNT(*) FROM ("));
+    assertTrue(countSql.getValue().contains("UNION ALL"));
+    verify(count).setParameter("destinationId", destinationId.toString());
+  }
+
+  @Test(expected = ValidationMessageException.class)
+  public void shouldRejectUnknownSortProperty() {
+    Pageable pageable = PageRequest.of(0, 10, Sort.by("remarks"));
+
+    repository.findAllIncludingArchive(destinationId, null, null, null, null, pageable);
+  }
+}
@@ -16,9 +16,16 @@
 package org.openlmis.dispensing.security;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.HashMap;
 import java.util.Map;
 import org.junit.Before;
@@ -43,6 +50,9 @@ public class CustomTokenServicesTest {
   private static final String CLIENT_CHECK_TOKEN_ENDPOINT_URI = "/oauth/check_token";
   private static final String ACCESS_TOKEN = "access-token-1234";
   private static final int INVALID_TOKEN_RETRY_LIMIT = 3;
+  private static final long CACHE_SIZE = 10;
+  private static final long CACHE_TTL_SECONDS = 300;
+  private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
 
   @Mock
   private RestTemplate restTemplate;
@@ -88,4 +98,56 @@ public class CustomTokenServicesTest {
     this.customTokenServices.setRestTemplate(restTemplate);
     this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
   }
+
+  @Test
+  public void shouldCacheValidTokenUntilItExpires() throws Exception {
+    Map responseAttributes = new HashMap();
+    responseAttributes.put("active", true);
+    responseAttributes.put("client_id", CLIENT_ID);
+    responseAttributes.put("exp", NOW.getEpochSecond() + 60);
+    mockCheckTokenResponse(responseAttributes);
+    this.customTokenServices.setTokenCache(CACHE_SIZE, CACHE_TTL_SECONDS, CACHE_TTL_SECONDS);
+    this.customTokenServices.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+
+    OAuth2Authentication first = this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+    OAuth2Authentication second = this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+    assertSame(first, second);
+
+    this.customTokenServices.setClock(Clock.fixed(NOW.plusSeconds(60), ZoneOffset.UTC));
+    this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+
+    verify(restTemplate, times(2)).exchange(
+        anyString(), Matchers.any(HttpMethod.class), Matchers.any(HttpEntity.class),
+        Matchers.any(Class.class));
+  }
+
+  @Test
+  public void shouldCacheInvalidToken() throws Exception {
+    Map responseAttributes = new HashMap();
+    responseAttributes.put("error", "no_active_token");
+    mockCheckTokenResponse(responseAttributes);
+    this.customTokenServices.setTokenCache(CACHE_SIZE, CACHE_TTL_SECONDS, CACHE_TTL_SECONDS);
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        this.customTokenServices.loadAuthentication(ACCESS_TOKEN);
+        fail("Expected the token to be rejected");
+      } catch (InvalidTokenException ex) {
+        // expected
+      }
+    }
+
+    verify(restTemplate, times(INVALID_TOKEN_RETRY_LIMIT + 1)).exchange(
+        anyString(), Matchers.any(HttpMethod.class), Matchers.any(HttpEntity.class),
+        Matchers.any(Class.class));
+  }
+
+  private void mockCheckTokenResponse(Map responseAttributes) {
+    ResponseEntity<Map> response = new ResponseEntity<>(responseAttributes, HttpStatus.OK);
+    when(restTemplate.exchange(
+        anyString(), Matchers.any(HttpMethod.class), Matchers.any(HttpEntity.class),
+        Matchers.any(Class.class)
+    )).thenReturn(response);
+    this.customTokenServices.setRestTemplate(restTemplate);
+  }
 }
@@ -0,0 +1,108 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.RsaSigner;
+import org.springframework.security.jwt.crypto.sign.RsaVerifier;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HybridTokenServicesTest {
+
+  private static final String CLIENT_ID = "client-id-1234";
+  private static final String OPAQUE_TOKEN = "418c89c5-7f21-4cd1-a63a-38c47892b0fe";
+  private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+  @Mock
+  private ResourceServerTokenServices remoteTokenServices;
+
+  @Mock
+  private OAuth2Authentication remoteAuthentication;
+
+  private RsaSigner signer;
+  private HybridTokenServices tokenServices;
+
+  @Before
+  public void setUp() throws Exception {
+    KeyPair keyPair = generateKeyPair();
+    signer = new RsaSigner((RSAPrivateKey) keyPair.getPrivate());
+    tokenServices = new HybridTokenServices(
+        Collections.singletonMap("", new RsaVerifier((RSAPublicKey) keyPair.getPublic())),
+        new DefaultAccessTokenConverter(), remoteTokenServices,
+        Clock.fixed(NOW, ZoneOffset.UTC));
+  }
+
+  @Test
+  public void shouldVerifySignedTokenLocally() {
+    OAuth2Authentication authentication = tokenServices.loadAuthentication(
+        jwt(NOW.getEpochSecond() + 60));
+
+    assertEquals(CLIENT_ID, authentication.getOAuth2Request().getClientId());
+    verifyZeroInteractions(remoteTokenServices);
+  }
+
+  @Test(expected = InvalidTokenException.class)
+  public void shouldRejectExpiredToken() {
+    tokenServices.loadAuthentication(jwt(NOW.getEpochSecond()));
+  }
+
+  @Test(expected = InvalidTokenException.class)
+  public void shouldRejectTokenSignedWithAnotherKey() throws Exception {
+    signer = new RsaSigner((RSAPrivateKey) generateKeyPair().getPrivate());
+    tokenServices.loadAuthentication(jwt(NOW.getEpochSecond() + 60));
+  }
+
+  @Test
+  public void shouldCheckOpaqueTokenRemotely() {
+    when(remoteTokenServices.loadAuthentication(OPAQUE_TOKEN)).thenReturn(remoteAuthentication);
+
+    assertSame(remoteAuthentication, tokenServices.loadAuthentication(OPAQUE_TOKEN));
+  }
+
+  private String jwt(long expiry) {
+    String claims = "{\"client_id\":\"" + CLIENT_ID + "\",\"scope\":[\"read\"],\"exp\":"
+        + expiry + "}";
+    return JwtHelper.encode(claims, signer).getEncoded();
+  }
+
+  private KeyPair generateKeyPair() throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    return generator.generateKeyPair();
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestOperations;
+
+public class AuthServiceTest {
+
+  private static final long EXPIRES_IN_SECONDS = 300;
+  private static final long REFRESH_AHEAD_SECONDS = 60;
+  private static final int THREADS = 8;
+
+  private final MutableClock clock = new MutableClock();
+  private final RestOperations restTemplate = mock(RestOperations.class);
+  private final AuthService authService = new AuthService();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(authService, "clientId", "client");
+    ReflectionTestUtils.setField(authService, "clientSecret", "secret");
+    ReflectionTestUtils.setField(authService, "authorizationUrl", "http://localhost/api/oauth/token");
+    ReflectionTestUtils.setField(authService, "refreshAheadSeconds", REFRESH_AHEAD_SECONDS);
+    ReflectionTestUtils.setField(authService, "clock", clock);
+    ReflectionTestUtils.setField(authService, "restTemplate", restTemplate);
+  }
+
+  @After
+  public void tearDown() {
+    authService.shutdown();
+  }
+
+  @Test
+  public void shouldReuseTokenUntilItIsDueForRefresh() {
+    mockTokens("token1", "token2");
+
+    assertEquals("token1", authService.obtainAccessToken());
+    clock.advance(Duration.ofSeconds(EXPIRES_IN_SECONDS - REFRESH_AHEAD_SECONDS - 1));
+    assertEquals("token1", authService.obtainAccessToken());
+
+    verifyTokenRequests(1);
+  }
+
+  @Test
+  public void shouldRefreshAheadOfExpiryWithoutMakingCallerWait() {
+    mockTokens("token1", "token2");
+    authService.obtainAccessToken();
+
+    clock.advance(Duration.ofSeconds(EXPIRES_IN_SECONDS - REFRESH_AHEAD_SECONDS));
+    // still valid, returned while the new one is requested in the background
+    assertEquals("token1", authService.obtainAccessToken());
+
+    verify(restTemplate, timeout(5000).times(2)).exchange(any(URI.class), eq(HttpMethod.POST),
+        any(HttpEntity.class), eq(Object.class));
+    waitForToken("token2");
+  }
+
+  @Test
+  public void shouldShareOneRequestBetweenConcurrentCallers() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+        eq(Object.class))).thenAnswer(invocation -> {
+          release.await(5, TimeUnit.SECONDS);
+          return tokenResponse("token1");
+        });
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<String>> tokens = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        tokens.add(executor.submit(authService::obtainAccessToken));
+      }
+      release.countDown();
+
+      for (Future<String> token : tokens) {
+        assertEquals("token1", token.get(5, TimeUnit.SECONDS));
+      }
+      verifyTokenRequests(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldObtainNewTokenAfterCacheIsCleared() {
+    mockTokens("token1", "token2");
+    assertEquals("token1", authService.obtainAccessToken());
+
+    authService.clearTokenCache();
+
+    assertEquals("token2", authService.obtainAccessToken());
+    verifyTokenRequests(2);
+  }
+
+  @Test
+  public void shouldFailInsteadOfBlockingWhenRefreshCannotBeScheduled() {
+    mockTokens("token1");
+    authService.shutdown();
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        authService.obtainAccessToken();
+        fail("Expected RejectedExecutionException");
+      } catch (RejectedExecutionException ex) {
+        // expected, and again on the next call instead of blocking on the failed refresh
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void mockTokens(String first, String... others) {
+    ResponseEntity<Object>[] responses = new ResponseEntity[others.length];
+    for (int i = 0; i < others.length; i++) {
+      responses[i] = tokenResponse(others[i]);
+    }
+    when(restTemplate.exchange(any(URI.class), eq(HttpMethod.POST), any(HttpEntity.class),
+        eq(Object.class))).thenReturn(tokenResponse(first), responses);
+  }
+
+  private void verifyTokenRequests(int count) {
+    verify(restTemplate, times(count)).exchange(any(URI.class), eq(HttpMethod.POST),
+        any(HttpEntity.class), eq(Object.class));
+  }
+
+  private void waitForToken(String expected) {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!expected.equals(authService.obtainAccessToken())) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Token was not refreshed");
+      }
+      Thread.yield();
+    }
+  }
+
+  private static ResponseEntity<Object> tokenResponse(String token) {
+    return new ResponseEntity<>(ImmutableMap.of(AuthService.ACCESS_TOKEN, token,
+        AuthService.EXPIRES_IN, EXPIRES_IN_SECONDS), HttpStatus.OK);
+  }
+
+  private static class MutableClock extends Clock {
+    private volatile Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
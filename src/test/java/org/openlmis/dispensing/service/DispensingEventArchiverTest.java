@@ -0,0 +1,119 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.dispensing.repository.DispensingEventsRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DispensingEventArchiverTest {
+
+  private static final ZoneId ZONE = ZoneId.of("Africa/Maseru");
+  private static final Instant NOW = Instant.parse("2026-10-19T10:00:00Z");
+  private static final int HORIZON_MONTHS = 12;
+  private static final int BATCH_SIZE = 2;
+
+  // midnight of 2025-10-19 in Maseru (UTC+2), as stored by a JVM running in UTC
+  private static final LocalDateTime RECEIVED_BEFORE = LocalDateTime.of(2025, 10, 18, 22, 0);
+
+  @Mock
+  private DispensingEventsRepository repository;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  @InjectMocks
+  private DispensingEventArchiver archiver;
+
+  private TimeZone defaultTimeZone;
+
+  @Before
+  public void setUp() {
+    defaultTimeZone = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    ReflectionTestUtils.setField(archiver, "clock", Clock.fixed(NOW, ZONE));
+    ReflectionTestUtils.setField(archiver, "horizonMonths", HORIZON_MONTHS);
+    ReflectionTestUtils.setField(archiver, "batchSize", BATCH_SIZE);
+  }
+
+  @After
+  public void tearDown() {
+    TimeZone.setDefault(defaultTimeZone);
+  }
+
+  @Test
+  public void shouldReturnCutoffInClockZone() {
+    assertEquals(LocalDate.of(2025, 10, 19), archiver.getArchiveCutoff());
+  }
+
+  @Test
+  public void shouldMoveEventsBatchByBatchUntilNoneAreLeft() {
+    List<String> first = Arrays.asList("1", "2");
+    List<String> second = Collections.singletonList("3");
+    when(repository.findIdsReceivedBefore(RECEIVED_BEFORE, BATCH_SIZE))
+        .thenReturn(first, second, Collections.emptyList());
+
+    archiver.archive();
+
+    InOrder order = inOrder(repository);
+    for (List<String> batch : Arrays.asList(first, second)) {
+      order.verify(repository).findIdsReceivedBefore(RECEIVED_BEFORE, BATCH_SIZE);
+      order.verify(repository).copyToArchive(batch);
+      order.verify(repository).copyDiscrepanciesToArchive(batch);
+      order.verify(repository).deleteArchivedDiscrepancies(batch);
+      order.verify(repository).deleteArchived(batch);
+    }
+    order.verify(repository).findIdsReceivedBefore(RECEIVED_BEFORE, BATCH_SIZE);
+    order.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void shouldNotArchiveWhenHorizonIsDisabled() {
+    ReflectionTestUtils.setField(archiver, "horizonMonths", 0);
+
+    archiver.archive();
+
+    assertNull(archiver.getArchiveCutoff());
+    verify(repository, never()).findIdsReceivedBefore(any(LocalDateTime.class), anyInt());
+  }
+}
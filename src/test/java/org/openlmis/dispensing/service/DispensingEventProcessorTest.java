@@ -0,0 +1,155 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_BATCH_EMPTY;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_BATCH_TOO_LARGE;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_PACKING_DATE_MISSING;
+import static org.openlmis.dispensing.i18n.MessageKeys.ERROR_POD_EVENT_QUANTITY_NEGATIVE;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.dispensing.domain.event.DispensingEvent;
+import org.openlmis.dispensing.dto.DispensingEventDto;
+import org.openlmis.dispensing.exception.ValidationMessageException;
+import org.openlmis.dispensing.repository.DispensingEventsRepository;
+import org.openlmis.dispensing.util.DispensingEventProcessContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DispensingEventProcessorTest {
+
+  private static final int MAX_BATCH_SIZE = 3;
+
+  @Mock
+  private DispensingEventProcessContextBuilder contextBuilder;
+
+  @Mock
+  private DispensingEventsRepository repository;
+
+  @InjectMocks
+  private DispensingEventProcessor processor;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(processor, "maxBatchSize", MAX_BATCH_SIZE);
+  }
+
+  @Test
+  public void shouldValidateSingleEventBeforeBuildingContext() {
+    DispensingEventDto event = validEvent();
+    event.setPackingDate(null);
+
+    assertRejected(() -> processor.process(event), ERROR_POD_EVENT_PACKING_DATE_MISSING);
+    verifyZeroInteractions(contextBuilder, repository);
+  }
+
+  @Test
+  public void shouldSaveValidSingleEvent() {
+    DispensingEventDto event = validEvent();
+    when(contextBuilder.buildContext(event)).thenReturn(mock(DispensingEventProcessContext.class));
+    DispensingEvent saved = savedEvent();
+    when(repository.save(any(DispensingEvent.class))).thenReturn(saved);
+
+    assertEquals(saved.getId(), processor.process(event));
+  }
+
+  @Test
+  public void shouldRejectEmptyBatch() {
+    assertRejected(() -> processor.processBatch(Collections.emptyList()),
+        ERROR_POD_EVENT_BATCH_EMPTY);
+    verifyZeroInteractions(contextBuilder, repository);
+  }
+
+  @Test
+  public void shouldRejectBatchLargerThanMaximum() {
+    List<DispensingEventDto> events = new ArrayList<>();
+    for (int i = 0; i <= MAX_BATCH_SIZE; i++) {
+      events.add(validEvent());
+    }
+
+    assertRejected(() -> processor.processBatch(events), ERROR_POD_EVENT_BATCH_TOO_LARGE);
+    verifyZeroInteractions(contextBuilder, repository);
+  }
+
+  @Test
+  public void shouldSaveNothingWhenAnyEventOfBatchIsInvalid() {
+    DispensingEventDto invalid = validEvent();
+    invalid.setCartonsQuantityRejected(-1);
+
+    assertRejected(() -> processor.processBatch(Arrays.asList(validEvent(), validEvent(),
+        invalid)), ERROR_POD_EVENT_QUANTITY_NEGATIVE);
+    verifyZeroInteractions(contextBuilder, repository);
+  }
+
+  @Test
+  public void shouldSaveWholeBatchAtOnce() {
+    List<DispensingEventDto> events = Arrays.asList(validEvent(), validEvent());
+    DispensingEventProcessContext context = mock(DispensingEventProcessContext.class);
+    when(contextBuilder.buildContexts(events)).thenReturn(Arrays.asList(context, context));
+    List<DispensingEvent> saved = Arrays.asList(savedEvent(), savedEvent());
+    when(repository.saveAll(anyListOf(DispensingEvent.class))).thenReturn(saved);
+
+    List<UUID> ids = processor.processBatch(events);
+
+    assertEquals(Arrays.asList(saved.get(0).getId(), saved.get(1).getId()), ids);
+    verify(repository).flush();
+  }
+
+  private void assertRejected(Runnable processing, String messageKey) {
+    try {
+      processing.run();
+      fail("Expected " + messageKey);
+    } catch (ValidationMessageException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().startsWith(messageKey + ":"));
+    }
+  }
+
+  private DispensingEventDto validEvent() {
+    DispensingEventDto event = new DispensingEventDto();
+    event.setDestinationId(UUID.randomUUID());
+    event.setPackingDate(LocalDate.of(2026, 10, 19));
+    event.setCartonsQuantityShipped(2);
+    event.setCartonsQuantityAccepted(2);
+    event.setCartonsQuantityRejected(0);
+    return event;
+  }
+
+  private DispensingEvent savedEvent() {
+    DispensingEvent event = new DispensingEvent();
+    event.setId(UUID.randomUUID());
+    return event;
+  }
+}
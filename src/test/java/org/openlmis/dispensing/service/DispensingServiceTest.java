@@ -0,0 +1,142 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.dispensing.domain.event.DispensingEvent;
+import org.openlmis.dispensing.exception.ResourceNotFoundException;
+import org.openlmis.dispensing.exception.ValidationMessageException;
+import org.openlmis.dispensing.repository.DispensingEventsRepository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DispensingServiceTest {
+
+  private static final LocalDate CUTOFF = LocalDate.of(2025, 10, 19);
+
+  @Mock
+  private DispensingEventsRepository repository;
+
+  @Mock
+  private DispensingEventArchiver archiver;
+
+  @InjectMocks
+  private DispensingService service;
+
+  private final UUID eventId = UUID.randomUUID();
+  private final UUID destinationId = UUID.randomUUID();
+  private final Pageable pageable = PageRequest.of(0, 10);
+
+  @Before
+  public void setUp() {
+    // the JVM zone, so database times equal the local start of day
+    ReflectionTestUtils.setField(service, "clock",
+        Clock.fixed(Instant.parse("2026-10-19T10:00:00Z"), ZoneId.systemDefault()));
+  }
+
+  @Test
+  public void shouldFlagEventAsDeletedInsteadOfRemovingIt() {
+    when(repository.updateAttributes(eventId, Collections.singletonMap("deleted", true)))
+        .thenReturn(1);
+
+    service.deleteDispensingEvent(eventId);
+
+    verify(repository, never()).deleteById(eventId);
+  }
+
+  @Test(expected = ResourceNotFoundException.class)
+  public void shouldThrowWhenDeletedEventDoesNotExist() {
+    when(repository.updateAttributes(eventId, Collections.singletonMap("deleted", true)))
+        .thenReturn(0);
+
+    service.deleteDispensingEvent(eventId);
+  }
+
+  @Test
+  public void shouldSearchArchiveWhenRangeStartsBeforeCutoff() {
+    LocalDate from = CUTOFF.minusDays(1);
+    when(archiver.getArchiveCutoff()).thenReturn(CUTOFF);
+    when(repository.findAllIncludingArchive(destinationId, from.atStartOfDay(), null, null, null,
+        pageable)).thenReturn(emptyPage());
+
+    service.searchDispensingEvents(destinationId, from, null, null, null, false, pageable);
+
+    verify(repository, never()).findAll(any(Specification.class), any(Pageable.class));
+  }
+
+  @Test
+  public void shouldSearchLiveEventsOnlyWhenRangeStartsAfterCutoff() {
+    when(archiver.getArchiveCutoff()).thenReturn(CUTOFF);
+    when(repository.findAll(any(Specification.class), any(Pageable.class)))
+        .thenReturn(emptyPage());
+
+    service.searchDispensingEvents(destinationId, CUTOFF, null, null, null, false, pageable);
+
+    verify(repository, never()).findAllIncludingArchive(any(UUID.class), any(), any(), any(),
+        any(), any(Pageable.class));
+  }
+
+  @Test
+  public void shouldSortLiveEventsByIdLast() {
+    when(repository.findAll(any(Specification.class), any(Pageable.class)))
+        .thenReturn(emptyPage());
+
+    service.searchDispensingEvents(destinationId, null, null, null, null, false,
+        PageRequest.of(1, 10, Sort.by(Order.desc("receivingDate"))));
+
+    ArgumentCaptor<Pageable> sorted = ArgumentCaptor.forClass(Pageable.class);
+    verify(repository).findAll(any(Specification.class), sorted.capture());
+    assertEquals(Sort.by(Order.desc("receivingDate"), Order.asc("id")),
+        sorted.getValue().getSort());
+    assertEquals(1, sorted.getValue().getPageNumber());
+    assertEquals(10, sorted.getValue().getPageSize());
+  }
+
+  @Test(expected = ValidationMessageException.class)
+  public void shouldRejectUnknownSortPropertyOnLiveEvents() {
+    service.searchDispensingEvents(destinationId, null, null, null, null, false,
+        PageRequest.of(0, 10, Sort.by("remarks")));
+  }
+
+  private Page<DispensingEvent> emptyPage() {
+    return new PageImpl<>(Collections.emptyList(), pageable, 0);
+  }
+}
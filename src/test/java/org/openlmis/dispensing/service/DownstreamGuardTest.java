@@ -0,0 +1,222 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+public class DownstreamGuardTest {
+
+  private static final int FAILURE_THRESHOLD = 3;
+  private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+  private final MutableClock clock = new MutableClock();
+  private final AtomicInteger calls = new AtomicInteger();
+  private final DownstreamGuard guard = new DownstreamGuard("referencedata", 1,
+      Duration.ofMillis(10), FAILURE_THRESHOLD, OPEN_DURATION, clock);
+
+  @Test
+  public void shouldOpenAfterConsecutiveFailures() {
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      callAndExpect(HttpServerErrorException.class, new HttpServerErrorException(
+          HttpStatus.BAD_GATEWAY));
+    }
+
+    assertEquals(DownstreamGuard.State.OPEN, guard.getState());
+    callAndExpect(RejectedException.class, null);
+    assertEquals(FAILURE_THRESHOLD, calls.get());
+  }
+
+  @Test
+  public void shouldNotCountClientErrorsAsFailures() {
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      callAndExpect(HttpClientErrorException.class, new HttpClientErrorException(
+          HttpStatus.NOT_FOUND));
+    }
+
+    assertEquals(DownstreamGuard.State.CLOSED, guard.getState());
+  }
+
+  @Test
+  public void shouldCloseAfterSuccessfulProbe() {
+    openCircuit();
+    clock.advance(OPEN_DURATION);
+
+    assertEquals(Integer.valueOf(FAILURE_THRESHOLD + 1),
+        guard.execute(calls::incrementAndGet, RejectedException::new));
+    assertEquals(DownstreamGuard.State.CLOSED, guard.getState());
+  }
+
+  @Test
+  public void shouldReopenAfterFailedProbe() {
+    openCircuit();
+    clock.advance(OPEN_DURATION);
+
+    callAndExpect(HttpServerErrorException.class, new HttpServerErrorException(
+        HttpStatus.SERVICE_UNAVAILABLE));
+
+    assertEquals(DownstreamGuard.State.OPEN, guard.getState());
+    callAndExpect(RejectedException.class, null);
+  }
+
+  @Test
+  public void shouldKeepProbingAfterClientErrorProbe() {
+    openCircuit();
+    clock.advance(OPEN_DURATION);
+
+    callAndExpect(HttpClientErrorException.class, new HttpClientErrorException(
+        HttpStatus.NOT_FOUND));
+    assertEquals(DownstreamGuard.State.HALF_OPEN, guard.getState());
+
+    guard.execute(calls::incrementAndGet, RejectedException::new);
+    assertEquals(DownstreamGuard.State.CLOSED, guard.getState());
+  }
+
+  @Test
+  public void shouldIgnoreSuccessOfCallAdmittedBeforeCircuitOpened() throws Exception {
+    DownstreamGuard wideGuard = new DownstreamGuard("referencedata", 2, Duration.ofMillis(10),
+        FAILURE_THRESHOLD, OPEN_DURATION, clock);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> slowCall = executor.submit(() -> wideGuard.execute(() -> {
+        started.countDown();
+        await(release);
+        return null;
+      }, RejectedException::new));
+      started.await(5, TimeUnit.SECONDS);
+
+      for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+        try {
+          wideGuard.execute(() -> {
+            throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+          }, RejectedException::new);
+          fail("Expected HttpServerErrorException");
+        } catch (HttpServerErrorException ex) {
+          // expected
+        }
+      }
+      assertEquals(DownstreamGuard.State.OPEN, wideGuard.getState());
+
+      release.countDown();
+      slowCall.get(5, TimeUnit.SECONDS);
+
+      assertEquals(DownstreamGuard.State.OPEN, wideGuard.getState());
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldRejectCallsWhenBulkheadIsFull() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(() -> guard.execute(() -> {
+        started.countDown();
+        await(release);
+        return null;
+      }, RejectedException::new));
+      started.await(5, TimeUnit.SECONDS);
+
+      assertEquals(1, guard.getActiveCalls());
+      callAndExpect(RejectedException.class, null);
+      assertEquals(0, calls.get());
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+  }
+
+  private void openCircuit() {
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      callAndExpect(HttpServerErrorException.class, new HttpServerErrorException(
+          HttpStatus.GATEWAY_TIMEOUT));
+    }
+  }
+
+  private void callAndExpect(Class<? extends RuntimeException> expected,
+      RuntimeException failure) {
+    try {
+      guard.execute(() -> {
+        calls.incrementAndGet();
+        if (null != failure) {
+          throw failure;
+        }
+        return null;
+      }, RejectedException::new);
+      fail("Expected " + expected.getSimpleName());
+    } catch (RuntimeException ex) {
+      assertEquals(expected, ex.getClass());
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class RejectedException extends RuntimeException {
+    RejectedException(String message) {
+      super(message);
+    }
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.dispensing.exception.PermissionMessageException;
+import org.openlmis.dispensing.service.referencedata.UserReferenceDataService;
+import org.openlmis.dispensing.util.AuthenticationHelper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PermissionServiceTest {
+
+  private static final String RIGHT = "DISPENSING_EDIT";
+  private static final String ETAG = "\"1\"";
+  private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+  private static final long REVALIDATE_AFTER_SECONDS = 30;
+
+  @Mock
+  private UserReferenceDataService userReferenceDataService;
+
+  @Mock
+  private AuthenticationHelper authenticationHelper;
+
+  @Mock
+  private Clock clock;
+
+  @InjectMocks
+  private PermissionService permissionService;
+
+  private final UUID userId = UUID.randomUUID();
+  private final UUID facilityId = UUID.randomUUID();
+  private final UUID programId = UUID.randomUUID();
+
+  @Before
+  public void setUp() {
+    permissionService.setRevalidateAfterSeconds(REVALIDATE_AFTER_SECONDS);
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void shouldCheckRightsInMemory() {
+    givenUserWithPermissions();
+
+    assertTrue(permissionService.hasPermission(RIGHT, programId, facilityId));
+    assertTrue(permissionService.hasPermission("GENERAL_RIGHT", null, null));
+    assertFalse(permissionService.hasPermission(RIGHT, UUID.randomUUID(), facilityId));
+    assertFalse(permissionService.hasPermission("GENERAL_RIGHT", programId, facilityId));
+
+    verify(userReferenceDataService, times(1)).getPermissionStrings(userId, null);
+  }
+
+  @Test(expected = PermissionMessageException.class)
+  public void shouldThrowWhenUserDoesNotHaveRight() {
+    givenUserWithPermissions();
+
+    permissionService.checkPermission(RIGHT, programId, UUID.randomUUID());
+  }
+
+  @Test
+  public void shouldTrustClientTokens() {
+    OAuth2Request request = mock(OAuth2Request.class);
+    SecurityContextHolder.getContext().setAuthentication(new OAuth2Authentication(request, null));
+
+    assertTrue(permissionService.hasPermission(RIGHT, programId, UUID.randomUUID()));
+    verify(userReferenceDataService, times(0)).getPermissionStrings(userId, null);
+  }
+
+  @Test
+  public void shouldDenyRequestsWithoutUser() {
+    assertFalse(permissionService.hasPermission("GENERAL_RIGHT", null, null));
+    verify(userReferenceDataService, times(0)).getPermissionStrings(userId, null);
+  }
+
+  @Test
+  public void shouldKeepPermissionsWhenNotModified() {
+    givenUserWithPermissions();
+    permissionService.getPermissionStrings(userId);
+    when(clock.instant()).thenReturn(NOW.plusSeconds(REVALIDATE_AFTER_SECONDS));
+    when(userReferenceDataService.getPermissionStrings(userId, ETAG))
+        .thenReturn(new ServiceResponse<>(null, etagHeaders(), false));
+
+    assertTrue(permissionService.hasPermission(RIGHT, programId, facilityId));
+    assertTrue(permissionService.hasPermission(RIGHT, programId, facilityId));
+
+    verify(userReferenceDataService, times(1)).getPermissionStrings(userId, ETAG);
+  }
+
+  @Test
+  public void shouldReplacePermissionsWhenModified() {
+    givenUserWithPermissions();
+    permissionService.getPermissionStrings(userId);
+    when(clock.instant()).thenReturn(NOW.plusSeconds(REVALIDATE_AFTER_SECONDS));
+    when(userReferenceDataService.getPermissionStrings(userId, ETAG))
+        .thenReturn(modified("GENERAL_RIGHT"));
+
+    assertFalse(permissionService.hasPermission(RIGHT, programId, facilityId));
+    assertEquals(Collections.singleton(PermissionStringDto.from("GENERAL_RIGHT")),
+        permissionService.getPermissionStrings(userId));
+  }
+
+  @Test
+  public void shouldFetchAgainAfterEviction() {
+    givenPermissions();
+    permissionService.getPermissionStrings(userId);
+    permissionService.evict(userId);
+    permissionService.getPermissionStrings(userId);
+
+    verify(userReferenceDataService, times(2)).getPermissionStrings(userId, null);
+  }
+
+  private void givenUserWithPermissions() {
+    when(authenticationHelper.getCurrentUserId()).thenReturn(userId);
+    givenPermissions();
+  }
+
+  private void givenPermissions() {
+    when(clock.instant()).thenReturn(NOW);
+    when(userReferenceDataService.getPermissionStrings(userId, null))
+        .thenReturn(modified(RIGHT + "|" + facilityId + "|" + programId, "GENERAL_RIGHT"));
+  }
+
+  private ServiceResponse<List<String>> modified(String... permissionStrings) {
+    return new ServiceResponse<>(Arrays.asList(permissionStrings), etagHeaders(), true);
+  }
+
+  private HttpHeaders etagHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag(ETAG);
+    return headers;
+  }
+}
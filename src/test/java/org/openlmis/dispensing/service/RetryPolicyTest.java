@@ -0,0 +1,79 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableSet;
+import java.time.Duration;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+public class RetryPolicyTest {
+
+  private static final int MAX_ATTEMPTS = 3;
+  private static final Duration INITIAL_BACKOFF = Duration.ofMillis(100);
+  private static final Duration MAX_BACKOFF = Duration.ofMillis(250);
+
+  private final RetryPolicy retryPolicy = new RetryPolicy(MAX_ATTEMPTS, INITIAL_BACKOFF,
+      MAX_BACKOFF, 2, ImmutableSet.of(HttpMethod.GET, HttpMethod.PUT),
+      ImmutableSet.of(503, 504));
+
+  private final RuntimeException unavailable =
+      new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+
+  @Test
+  public void shouldRetryIdempotentRequestsOnTransientFailures() {
+    assertTrue(retryPolicy.shouldRetry(HttpMethod.GET, false, 1, unavailable));
+    assertTrue(retryPolicy.shouldRetry(HttpMethod.PUT, false, 2,
+        new ResourceAccessException("Read timed out")));
+  }
+
+  @Test
+  public void shouldNotRetryNonIdempotentRequestsWithoutIdempotencyKey() {
+    assertFalse(retryPolicy.shouldRetry(HttpMethod.POST, false, 1, unavailable));
+    assertTrue(retryPolicy.shouldRetry(HttpMethod.POST, true, 1, unavailable));
+  }
+
+  @Test
+  public void shouldNotRetryPermanentFailures() {
+    assertFalse(retryPolicy.shouldRetry(HttpMethod.GET, false, 1,
+        new HttpClientErrorException(HttpStatus.BAD_REQUEST)));
+    assertFalse(retryPolicy.shouldRetry(HttpMethod.GET, false, 1,
+        new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR)));
+    assertFalse(retryPolicy.shouldRetry(HttpMethod.GET, false, 1,
+        new IllegalStateException()));
+  }
+
+  @Test
+  public void shouldStopAfterMaxAttempts() {
+    assertFalse(retryPolicy.shouldRetry(HttpMethod.GET, false, MAX_ATTEMPTS, unavailable));
+  }
+
+  @Test
+  public void shouldKeepBackoffWithinExponentialBound() {
+    for (int i = 0; i < 100; i++) {
+      assertTrue(retryPolicy.getBackoff(1).compareTo(INITIAL_BACKOFF) <= 0);
+      assertTrue(retryPolicy.getBackoff(2).compareTo(INITIAL_BACKOFF.multipliedBy(2)) <= 0);
+      assertTrue(retryPolicy.getBackoff(5).compareTo(MAX_BACKOFF) <= 0);
+    }
+  }
+}
@@ -0,0 +1,429 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.prescription;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.dispensing.domain.patient.Patient;
+import org.openlmis.dispensing.domain.patient.Person;
+import org.openlmis.dispensing.domain.prescription.Prescription;
+import org.openlmis.dispensing.domain.prescription.PrescriptionLineItem;
+import org.openlmis.dispensing.domain.status.PrescriptionLineItemStatus;
+import org.openlmis.dispensing.domain.status.PrescriptionStatus;
+import org.openlmis.dispensing.dto.prescription.PrescriptionDto;
+import org.openlmis.dispensing.dto.prescription.PrescriptionLineItemDto;
+import org.openlmis.dispensing.dto.referencedata.FacilityDto;
+import org.openlmis.dispensing.dto.referencedata.LotDto;
+import org.openlmis.dispensing.dto.referencedata.OrderableDto;
+import org.openlmis.dispensing.dto.referencedata.ProgramOrderableDto;
+import org.openlmis.dispensing.dto.stockmanagement.StockCardSummaryDto;
+import org.openlmis.dispensing.dto.stockmanagement.StockEventDto;
+import org.openlmis.dispensing.i18n.MessageKeys;
+import org.openlmis.dispensing.i18n.MessageService;
+import org.openlmis.dispensing.repository.patient.PatientRepository;
+import org.openlmis.dispensing.repository.prescription.PrescriptionRepository;
+import org.openlmis.dispensing.service.referencedata.FacilityReferenceDataService;
+import org.openlmis.dispensing.service.referencedata.ReferenceDataReplicaService;
+import org.openlmis.dispensing.service.stockmanagement.StockCardSummariesStockManagementService;
+import org.openlmis.dispensing.service.stockmanagement.StockEventStockManagementService;
+import org.openlmis.dispensing.util.Message;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PrescriptionServiceTest {
+
+  private static final int TOTAL_ELEMENTS = 100;
+
+  @Mock
+  private PrescriptionRepository prescriptionRepository;
+
+  @Mock
+  private PatientRepository patientRepository;
+
+  @Mock
+  private FacilityReferenceDataService facilityReferenceDataService;
+
+  @Mock
+  private ReferenceDataReplicaService referenceDataReplicaService;
+
+  @Mock
+  private PrescriptionStatusCounterService prescriptionStatusCounterService;
+
+  @Mock
+  private StatusChangeService statusChangeService;
+
+  @Mock
+  private PrescriptionReadModelService prescriptionReadModelService;
+
+  @Mock
+  private MessageService messageService;
+
+  @Mock
+  private StockCardSummariesStockManagementService stockCardSummariesStockManagementService;
+
+  @Mock
+  private StockEventStockManagementService stockEventStockManagementService;
+
+  @InjectMocks
+  private PrescriptionService prescriptionService;
+
+  @Test
+  public void shouldQueryRepositoryTwiceForSmallPage() {
+    searchPageOf(1);
+
+    verifyConstantQueryCount();
+  }
+
+  @Test
+  public void shouldQueryRepositoryTwiceForLargePage() {
+    searchPageOf(25);
+
+    verifyConstantQueryCount();
+  }
+
+  @Test
+  public void shouldKeepOrderOfIdPage() {
+    List<Prescription> prescriptions = prescriptions(5);
+    List<UUID> ids = prescriptions.stream().map(Prescription::getId).collect(Collectors.toList());
+    List<Prescription> shuffled = new ArrayList<>(prescriptions);
+    Collections.reverse(shuffled);
+    stubSearch(ids, shuffled, 5);
+
+    Page<PrescriptionDto> result = search(5);
+
+    assertEquals(ids, result.getContent().stream()
+        .map(PrescriptionDto::getId).collect(Collectors.toList()));
+    assertEquals(TOTAL_ELEMENTS, result.getTotalElements());
+  }
+
+  @Test
+  public void shouldNotFetchDetailsWhenNothingMatches() {
+    stubSearch(Collections.emptyList(), Collections.emptyList(), 10);
+
+    Page<PrescriptionDto> result = search(10);
+
+    assertEquals(0, result.getContent().size());
+    verify(prescriptionRepository).findIds(any(Specification.class), any(Pageable.class));
+    verifyNoMoreInteractions(prescriptionRepository);
+  }
+
+  @Test
+  public void shouldResolveMissingNamesOnceForWholePage() {
+    List<Prescription> prescriptions = prescriptions(25);
+    Map<UUID, OrderableDto> orderables = new HashMap<>();
+    Map<UUID, LotDto> lots = new HashMap<>();
+    for (Prescription prescription : prescriptions) {
+      PrescriptionLineItem lineItem = prescription.getLineItems().get(0);
+      lineItem.setOrderablePrescribedName(null);
+      lineItem.setOrderableDispensedName(null);
+      lineItem.setLotCode(null);
+      orderables.put(lineItem.getOrderablePrescribed(), OrderableDto.builder()
+          .id(lineItem.getOrderablePrescribed()).fullProductName("Prescribed").build());
+      orderables.put(lineItem.getOrderableDispensed(), OrderableDto.builder()
+          .id(lineItem.getOrderableDispensed()).fullProductName("Dispensed").build());
+      lots.put(lineItem.getLotId(), LotDto.builder()
+          .id(lineItem.getLotId()).lotCode("LOT").build());
+    }
+    stubSearch(prescriptions.stream().map(Prescription::getId).collect(Collectors.toList()),
+        prescriptions, 25);
+    when(referenceDataReplicaService.findOrderables(anyCollectionOf(UUID.class)))
+        .thenReturn(orderables);
+    when(referenceDataReplicaService.findLots(anyCollectionOf(UUID.class))).thenReturn(lots);
+
+    Page<PrescriptionDto> result = search(25);
+
+    for (PrescriptionDto prescription : result.getContent()) {
+      PrescriptionLineItemDto lineItem = prescription.getLineItems().get(0);
+      assertEquals("Prescribed", lineItem.getOrderablePrescribedName());
+      assertEquals("Dispensed", lineItem.getOrderableDispensedName());
+      assertEquals("LOT", lineItem.getLotCode());
+    }
+    verify(referenceDataReplicaService, times(1)).findOrderables(orderables.keySet());
+    verify(referenceDataReplicaService, times(1)).findLots(lots.keySet());
+    verifyNoMoreInteractions(referenceDataReplicaService);
+  }
+
+  @Test
+  public void shouldLookUpEachMissingFacilityOncePerPage() {
+    List<Prescription> prescriptions = prescriptions(6);
+    UUID firstFacilityId = UUID.randomUUID();
+    UUID secondFacilityId = UUID.randomUUID();
+    for (int i = 0; i < prescriptions.size(); i++) {
+      prescriptions.get(i).setFacilityId(i % 2 == 0 ? firstFacilityId : secondFacilityId);
+      prescriptions.get(i).setFacilityName(null);
+    }
+    stubSearch(prescriptions.stream().map(Prescription::getId).collect(Collectors.toList()),
+        prescriptions, 6);
+    when(facilityReferenceDataService.findOneForDisplay(firstFacilityId))
+        .thenReturn(facility(firstFacilityId, "First"));
+    when(facilityReferenceDataService.findOneForDisplay(secondFacilityId))
+        .thenReturn(facility(secondFacilityId, "Second"));
+
+    Page<PrescriptionDto> result = search(6);
+
+    for (PrescriptionDto prescription : result.getContent()) {
+      assertEquals(firstFacilityId.equals(prescription.getFacilityId()) ? "First" : "Second",
+          prescription.getFacilityName());
+    }
+    verify(facilityReferenceDataService, times(1)).findOneForDisplay(firstFacilityId);
+    verify(facilityReferenceDataService, times(1)).findOneForDisplay(secondFacilityId);
+    verifyNoMoreInteractions(facilityReferenceDataService);
+  }
+
+  @Test
+  public void shouldNotRecordStatusChangeWhenNeitherStatusNorMessageChanged() {
+    Prescription prescription = givenPrescriptionToUpdate();
+    PrescriptionDto dto = new PrescriptionDto();
+    dto.setStatus(PrescriptionStatus.INITIATED);
+
+    prescriptionService.updatePrescription(prescription.getId(), dto);
+
+    verify(statusChangeService, never()).recordStatusChange(any(Prescription.class), any());
+  }
+
+  @Test
+  public void shouldRecordStatusChangeWhenStatusChanged() {
+    Prescription prescription = givenPrescriptionToUpdate();
+    PrescriptionDto dto = new PrescriptionDto();
+    dto.setStatus(PrescriptionStatus.FULLY_SERVED);
+
+    prescriptionService.updatePrescription(prescription.getId(), dto);
+
+    verify(statusChangeService).recordStatusChange(prescription, null);
+  }
+
+  @Test
+  public void shouldRecordStatusChangeWhenOnlyMessageIsGiven() {
+    Prescription prescription = givenPrescriptionToUpdate();
+    PrescriptionDto dto = new PrescriptionDto();
+    dto.setStatusMessage("Patient asked to come back tomorrow");
+
+    prescriptionService.updatePrescription(prescription.getId(), dto);
+
+    verify(statusChangeService).recordStatusChange(prescription,
+        "Patient asked to come back tomorrow");
+  }
+
+  @Test
+  public void shouldRecordLocalizedMessageWhenVoided() {
+    Prescription prescription = prescriptions(1).get(0);
+    when(prescriptionRepository.findForUpdateById(prescription.getId()))
+        .thenReturn(Optional.of(prescription));
+    Message message = new Message(MessageKeys.PRESCRIPTION_STATUS_MESSAGE_VOIDED);
+    when(messageService.localize(any(Message.class)))
+        .thenReturn(message.new LocalizedMessage("Prescription voided"));
+
+    prescriptionService.setIsVoided(prescription.getId());
+
+    verify(statusChangeService).recordStatusChange(prescription, "Prescription voided");
+  }
+
+  @Test
+  public void shouldNotRecordStatusChangeWhenAlreadyVoided() {
+    Prescription prescription = prescriptions(1).get(0);
+    prescription.setIsVoided(true);
+    when(prescriptionRepository.findForUpdateById(prescription.getId()))
+        .thenReturn(Optional.of(prescription));
+
+    prescriptionService.setIsVoided(prescription.getId());
+
+    verifyZeroInteractions(statusChangeService, messageService);
+  }
+
+  @Test
+  public void shouldDebitStockBeforeLockingServedPrescription() {
+    Prescription prescription = givenPrescriptionToServe(10);
+    when(prescriptionRepository.refreshForUpdate(prescription)).thenReturn(prescription);
+
+    prescriptionService.servePrescription(prescription.getId(), new PrescriptionDto());
+
+    InOrder inOrder = inOrder(stockCardSummariesStockManagementService,
+        stockEventStockManagementService, prescriptionRepository,
+        prescriptionStatusCounterService);
+    inOrder.verify(stockCardSummariesStockManagementService).search(any(), any(), any(), any(),
+        any());
+    inOrder.verify(stockEventStockManagementService).submit(any(StockEventDto.class));
+    inOrder.verify(prescriptionRepository).refreshForUpdate(prescription);
+    inOrder.verify(prescriptionStatusCounterService).snapshot(prescription);
+    inOrder.verify(prescriptionRepository).save(prescription);
+    inOrder.verify(prescriptionStatusCounterService).recordTransition(any(), any());
+    verify(prescriptionRepository, never()).findForUpdateById(any());
+    assertEquals(PrescriptionLineItemStatus.FULLY_SERVED,
+        prescription.getLineItems().get(0).getStatus());
+    assertEquals(PrescriptionStatus.FULLY_SERVED, prescription.getStatus());
+  }
+
+  @Test
+  public void shouldSnapshotCountersFromLockedState() {
+    Prescription prescription = givenPrescriptionToServe(1);
+    when(prescriptionRepository.refreshForUpdate(prescription)).thenAnswer(invocation -> {
+      // stored by a serve that committed while stock was being checked
+      prescription.setStatus(PrescriptionStatus.PARTIALLY_SERVED);
+      return prescription;
+    });
+    List<PrescriptionStatus> snapshotStatuses = new ArrayList<>();
+    when(prescriptionStatusCounterService.snapshot(prescription)).thenAnswer(invocation -> {
+      snapshotStatuses.add(prescription.getStatus());
+      return Collections.emptyMap();
+    });
+
+    prescriptionService.servePrescription(prescription.getId(), new PrescriptionDto());
+
+    verify(stockEventStockManagementService, never()).submit(any(StockEventDto.class));
+    assertEquals(Collections.singletonList(PrescriptionStatus.PARTIALLY_SERVED), snapshotStatuses);
+    assertEquals(PrescriptionLineItemStatus.INADEQUATE_STOCK,
+        prescription.getLineItems().get(0).getStatus());
+    verify(statusChangeService, never()).recordStatusChange(any(), any());
+  }
+
+  private Prescription givenPrescriptionToServe(int stockOnHand) {
+    ReflectionTestUtils.setField(prescriptionService, "dispensingDebitReasonId",
+        UUID.randomUUID().toString());
+    Prescription prescription = prescriptions(1).get(0);
+    PrescriptionLineItem lineItem = prescription.getLineItems().get(0);
+    lineItem.setQuantityDispensed(4);
+    lineItem.setRemainingBalance(0);
+    lineItem.setServedExternally(false);
+
+    OrderableDto orderable = new OrderableDto();
+    orderable.setId(lineItem.getOrderableDispensed());
+    orderable.setFullProductName("Paracetamol 500mg");
+    ProgramOrderableDto program = new ProgramOrderableDto();
+    program.setProgramId(UUID.randomUUID());
+    orderable.setPrograms(Collections.singleton(program));
+    StockCardSummaryDto summary = new StockCardSummaryDto();
+    summary.setStockOnHand(stockOnHand);
+
+    when(prescriptionRepository.findById(prescription.getId()))
+        .thenReturn(Optional.of(prescription));
+    when(referenceDataReplicaService.findLot(lineItem.getLotId()))
+        .thenReturn(LotDto.builder().id(lineItem.getLotId()).lotCode("LOT-0").build());
+    when(referenceDataReplicaService.findOrderable(lineItem.getOrderableDispensed()))
+        .thenReturn(orderable);
+    when(stockCardSummariesStockManagementService.search(any(), any(), any(), any(), any()))
+        .thenReturn(Collections.singletonList(summary));
+    when(prescriptionRepository.save(prescription)).thenReturn(prescription);
+    return prescription;
+  }
+
+  private Prescription givenPrescriptionToUpdate() {
+    Prescription prescription = prescriptions(1).get(0);
+    when(prescriptionRepository.findForUpdateById(prescription.getId()))
+        .thenReturn(Optional.of(prescription));
+    when(prescriptionRepository.save(prescription)).thenReturn(prescription);
+    return prescription;
+  }
+
+  private FacilityDto facility(UUID id, String name) {
+    FacilityDto facility = new FacilityDto();
+    facility.setId(id);
+    facility.setName(name);
+    return facility;
+  }
+
+  private void searchPageOf(int size) {
+    List<Prescription> prescriptions = prescriptions(size);
+    stubSearch(prescriptions.stream().map(Prescription::getId).collect(Collectors.toList()),
+        prescriptions, size);
+
+    assertEquals(size, search(size).getContent().size());
+  }
+
+  private Page<PrescriptionDto> search(int size) {
+    return prescriptionService.searchPrescriptionsV2(null, "john", null, null, null, null, null,
+        null, null, false, null, 0, size);
+  }
+
+  private void stubSearch(List<UUID> ids, List<Prescription> prescriptions, int size) {
+    when(prescriptionRepository.findIds(any(Specification.class), any(Pageable.class)))
+        .thenReturn(new PageImpl<>(ids, PageRequest.of(0, size), ids.isEmpty() ? 0 : TOTAL_ELEMENTS));
+    if (!ids.isEmpty()) {
+      when(prescriptionRepository.findAllWithDetailsByIdIn(anyCollectionOf(UUID.class)))
+          .thenReturn(prescriptions);
+    }
+  }
+
+  private void verifyConstantQueryCount() {
+    verify(prescriptionRepository, times(1))
+        .findIds(any(Specification.class), any(Pageable.class));
+    verify(prescriptionRepository, times(1))
+        .findAllWithDetailsByIdIn(anyCollectionOf(UUID.class));
+    verifyNoMoreInteractions(prescriptionRepository);
+    verifyZeroInteractions(patientRepository, facilityReferenceDataService,
+        referenceDataReplicaService);
+  }
+
+  private List<Prescription> prescriptions(int count) {
+    List<Prescription> prescriptions = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Person person = new Person();
+      person.setFirstName("John");
+      person.setLastName("Doe " + i);
+
+      Patient patient = new Patient();
+      patient.setId(UUID.randomUUID());
+      patient.setPatientNumber("P-" + i);
+      patient.setPerson(person);
+
+      PrescriptionLineItem lineItem = new PrescriptionLineItem();
+      lineItem.setId(UUID.randomUUID());
+      lineItem.setOrderablePrescribed(UUID.randomUUID());
+      lineItem.setOrderablePrescribedName("Paracetamol 500mg");
+      lineItem.setOrderableDispensed(UUID.randomUUID());
+      lineItem.setOrderableDispensedName("Paracetamol 500mg");
+      lineItem.setLotId(UUID.randomUUID());
+      lineItem.setLotCode("LOT-" + i);
+
+      Prescription prescription = new Prescription();
+      prescription.setId(UUID.randomUUID());
+      prescription.setPatient(patient);
+      prescription.setFacilityId(UUID.randomUUID());
+      prescription.setFacilityName("Health Centre");
+      prescription.setStatus(PrescriptionStatus.INITIATED);
+      prescription.setLineItems(Collections.singletonList(lineItem));
+      prescriptions.add(prescription);
+    }
+    return prescriptions;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.prescription;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.dispensing.domain.prescription.Prescription;
+import org.openlmis.dispensing.domain.prescription.PrescriptionLineItem;
+import org.openlmis.dispensing.domain.status.PrescriptionLineItemStatus;
+import org.openlmis.dispensing.domain.status.PrescriptionStatus;
+import org.openlmis.dispensing.repository.prescription.PrescriptionStatusCounterRepository;
+import org.openlmis.dispensing.service.prescription.PrescriptionStatusCounterService.CounterKey;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PrescriptionStatusCounterServiceTest {
+
+  private static final UUID FACILITY_ID = UUID.randomUUID();
+
+  @Mock
+  private PrescriptionStatusCounterRepository prescriptionStatusCounterRepository;
+
+  @InjectMocks
+  private PrescriptionStatusCounterService prescriptionStatusCounterService;
+
+  @Test
+  public void shouldMoveCountsWhenPrescriptionIsServed() {
+    Prescription prescription = prescription(PrescriptionStatus.INITIATED,
+        PrescriptionLineItemStatus.REQUESTED, PrescriptionLineItemStatus.REQUESTED);
+    Map<CounterKey, Long> before = prescriptionStatusCounterService.snapshot(prescription);
+
+    prescription.setStatus(PrescriptionStatus.PARTIALLY_SERVED);
+    prescription.getLineItems().get(0).setStatus(PrescriptionLineItemStatus.FULLY_SERVED);
+    prescription.getLineItems().get(1).setStatus(PrescriptionLineItemStatus.INADEQUATE_STOCK);
+    prescriptionStatusCounterService.recordTransition(before, prescription);
+
+    verifyIncrement("PRESCRIPTION", "INITIATED", -1);
+    verifyIncrement("PRESCRIPTION", "PARTIALLY_SERVED", 1);
+    verifyIncrement("LINE_ITEM", "REQUESTED", -2);
+    verifyIncrement("LINE_ITEM", "FULLY_SERVED", 1);
+    verifyIncrement("LINE_ITEM", "INADEQUATE_STOCK", 1);
+    verifyNoMoreInteractions(prescriptionStatusCounterRepository);
+  }
+
+  @Test
+  public void shouldOnlyWriteCountersThatChanged() {
+    Prescription prescription = prescription(PrescriptionStatus.PARTIALLY_SERVED,
+        PrescriptionLineItemStatus.FULLY_SERVED, PrescriptionLineItemStatus.INADEQUATE_STOCK);
+    Map<CounterKey, Long> before = prescriptionStatusCounterService.snapshot(prescription);
+
+    prescription.getLineItems().get(1).setStatus(PrescriptionLineItemStatus.FULLY_SERVED);
+    prescriptionStatusCounterService.recordTransition(before, prescription);
+
+    verifyIncrement("LINE_ITEM", "INADEQUATE_STOCK", -1);
+    verifyIncrement("LINE_ITEM", "FULLY_SERVED", 1);
+    verifyNoMoreInteractions(prescriptionStatusCounterRepository);
+  }
+
+  @Test
+  public void shouldRemoveAllCountsWhenPrescriptionIsVoided() {
+    Prescription prescription = prescription(PrescriptionStatus.INITIATED,
+        PrescriptionLineItemStatus.REQUESTED);
+    Map<CounterKey, Long> before = prescriptionStatusCounterService.snapshot(prescription);
+
+    prescription.setIsVoided(true);
+    prescriptionStatusCounterService.recordTransition(before, prescription);
+
+    verifyIncrement("PRESCRIPTION", "INITIATED", -1);
+    verifyIncrement("LINE_ITEM", "REQUESTED", -1);
+    verifyNoMoreInteractions(prescriptionStatusCounterRepository);
+  }
+
+  @Test
+  public void shouldNotWriteCountersWhenNothingChanged() {
+    Prescription prescription = prescription(PrescriptionStatus.INITIATED,
+        PrescriptionLineItemStatus.REQUESTED);
+
+    prescriptionStatusCounterService.recordTransition(
+        prescriptionStatusCounterService.snapshot(prescription), prescription);
+
+    verifyZeroInteractions(prescriptionStatusCounterRepository);
+  }
+
+  private void verifyIncrement(String statusType, String status, long delta) {
+    verify(prescriptionStatusCounterRepository).increment(anyString(),
+        eq(FACILITY_ID.toString()), eq(statusType), eq(status), eq(delta));
+  }
+
+  private Prescription prescription(PrescriptionStatus status,
+      PrescriptionLineItemStatus... lineItemStatuses) {
+    Prescription prescription = new Prescription();
+    prescription.setId(UUID.randomUUID());
+    prescription.setFacilityId(FACILITY_ID);
+    prescription.setStatus(status);
+    prescription.setLineItems(Arrays.stream(lineItemStatuses)
+        .map(lineItemStatus -> {
+          PrescriptionLineItem lineItem = new PrescriptionLineItem();
+          lineItem.setStatus(lineItemStatus);
+          return lineItem;
+        })
+        .collect(Collectors.toList()));
+    return prescription;
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.referencedata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.dispensing.dto.referencedata.FacilityDto;
+import org.openlmis.dispensing.dto.referencedata.GeographicZoneDto;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GeographicHierarchyServiceTest {
+
+  private static final int PAGE_SIZE = 50;
+
+  @Mock
+  private FacilityReferenceDataService facilityReferenceDataService;
+
+  @Mock
+  private GeographicZoneReferenceDataService geographicZoneReferenceDataService;
+
+  @InjectMocks
+  private GeographicHierarchyService geographicHierarchyService;
+
+  private GeographicZoneDto country;
+  private GeographicZoneDto district;
+  private FacilityDto facility;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(geographicHierarchyService, "pageSize", PAGE_SIZE);
+
+    country = zone(null);
+    district = zone(country);
+    facility = new FacilityDto();
+    facility.setId(UUID.randomUUID());
+    facility.setName("Health Centre");
+    facility.setGeographicZone(district);
+  }
+
+  @Test
+  public void shouldServeLoadedFacilitiesAndZonesWithoutRemoteCalls() {
+    givenHierarchy();
+
+    geographicHierarchyService.refresh();
+
+    assertSame(facility, geographicHierarchyService.findFacility(facility.getId()));
+    assertEquals(district.getId(), geographicHierarchyService.findFacilityZoneId(facility.getId()));
+    // parents of facility zones are known even when not listed on their own
+    assertSame(country, geographicHierarchyService.findGeographicZone(country.getId()));
+    verify(facilityReferenceDataService, never()).findOne(any(UUID.class));
+    verify(geographicZoneReferenceDataService, never()).findOne(any(UUID.class));
+  }
+
+  @Test
+  public void shouldLookUpUnknownIdsRemotely() {
+    givenHierarchy();
+    geographicHierarchyService.refresh();
+    FacilityDto created = new FacilityDto();
+    created.setId(UUID.randomUUID());
+    when(facilityReferenceDataService.findOne(created.getId())).thenReturn(created);
+    UUID unknownZoneId = UUID.randomUUID();
+
+    assertSame(created, geographicHierarchyService.findFacility(created.getId()));
+    assertFalse(geographicHierarchyService.geographicZoneExists(unknownZoneId));
+    verify(geographicZoneReferenceDataService).findOne(unknownZoneId);
+  }
+
+  @Test
+  public void shouldKeepPreviousHierarchyWhenRefreshFails() {
+    givenHierarchy();
+    geographicHierarchyService.refresh();
+    when(geographicZoneReferenceDataService.findAll(PAGE_SIZE))
+        .thenThrow(new ResourceAccessException("down"));
+
+    geographicHierarchyService.refresh();
+
+    assertTrue(geographicHierarchyService.facilityExists(facility.getId()));
+    verify(facilityReferenceDataService, never()).findOne(facility.getId());
+  }
+
+  @Test
+  public void shouldReturnNullForMissingIds() {
+    assertNull(geographicHierarchyService.findFacility(null));
+    assertNull(geographicHierarchyService.findFacilityZoneId(null));
+  }
+
+  private void givenHierarchy() {
+    when(geographicZoneReferenceDataService.findAll(PAGE_SIZE))
+        .thenReturn(Collections.singletonList(district));
+    when(facilityReferenceDataService.findAll(PAGE_SIZE))
+        .thenReturn(Collections.singletonList(facility));
+  }
+
+  private GeographicZoneDto zone(GeographicZoneDto parent) {
+    GeographicZoneDto zone = new GeographicZoneDto();
+    zone.setId(UUID.randomUUID());
+    zone.setParent(parent);
+    return zone;
+  }
+}
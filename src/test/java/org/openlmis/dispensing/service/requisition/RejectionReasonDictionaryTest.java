@@ -0,0 +1,175 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.service.requisition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.dispensing.dto.requisition.RejectionReasonDto;
+import org.openlmis.dispensing.service.ServiceResponse;
+import org.openlmis.dispensing.service.referencedata.DataRetrievalException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RejectionReasonDictionaryTest {
+
+  private static final long TTL_SECONDS = 300;
+  private static final String ETAG = "\"1\"";
+
+  @Mock
+  private RejectionReasonService rejectionReasonService;
+
+  private final MutableClock clock = new MutableClock();
+  private final RejectionReasonDictionary dictionary = new RejectionReasonDictionary();
+
+  private final RejectionReasonDto damaged = reason("Damaged");
+  private final RejectionReasonDto expired = reason("Expired");
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(dictionary, "rejectionReasonService", rejectionReasonService);
+    ReflectionTestUtils.setField(dictionary, "clock", clock);
+    ReflectionTestUtils.setField(dictionary, "ttlSeconds", TTL_SECONDS);
+  }
+
+  @Test
+  public void shouldServeReasonsFromMemoryWithinTimeToLive() {
+    when(rejectionReasonService.findAll(null)).thenReturn(modified(damaged, expired));
+
+    assertEquals(damaged, dictionary.get(damaged.getId()));
+    clock.advance(Duration.ofSeconds(TTL_SECONDS - 1));
+    assertEquals(expired, dictionary.get(expired.getId()));
+
+    verify(rejectionReasonService, times(1)).findAll(null);
+    verify(rejectionReasonService, never()).findOne(damaged.getId());
+  }
+
+  @Test
+  public void shouldRevalidateWithEtagOnceTimeToLiveHasPassed() {
+    when(rejectionReasonService.findAll(null)).thenReturn(modified(damaged));
+    when(rejectionReasonService.findAll(ETAG)).thenReturn(notModified());
+
+    dictionary.get(damaged.getId());
+    clock.advance(Duration.ofSeconds(TTL_SECONDS));
+
+    assertEquals(damaged, dictionary.get(damaged.getId()));
+    verify(rejectionReasonService, times(1)).findAll(ETAG);
+  }
+
+  @Test
+  public void shouldReplaceReasonsWhenRevalidationReturnsChanges() {
+    when(rejectionReasonService.findAll(null)).thenReturn(modified(damaged));
+    when(rejectionReasonService.findAll(ETAG)).thenReturn(modified(expired));
+
+    dictionary.get(damaged.getId());
+    clock.advance(Duration.ofSeconds(TTL_SECONDS));
+
+    assertEquals(expired, dictionary.get(expired.getId()));
+    verify(rejectionReasonService, never()).findOne(expired.getId());
+  }
+
+  @Test
+  public void shouldRememberUnknownReasonForTimeToLive() {
+    UUID unknownId = UUID.randomUUID();
+    when(rejectionReasonService.findAll(null)).thenReturn(modified(damaged));
+    when(rejectionReasonService.findAll(ETAG)).thenReturn(notModified());
+
+    assertNull(dictionary.get(unknownId));
+    clock.advance(Duration.ofSeconds(TTL_SECONDS - 1));
+    assertNull(dictionary.get(unknownId));
+    verify(rejectionReasonService, times(1)).findOne(unknownId);
+
+    clock.advance(Duration.ofSeconds(1));
+    assertNull(dictionary.get(unknownId));
+    verify(rejectionReasonService, times(2)).findOne(unknownId);
+  }
+
+  @Test
+  public void shouldLookUpReasonsOneByOneWhenDictionaryCannotBeLoaded() {
+    when(rejectionReasonService.findAll(null)).thenThrow(
+        new DataRetrievalException("RejectionReason", HttpStatus.SERVICE_UNAVAILABLE, "down"));
+    when(rejectionReasonService.findOne(damaged.getId())).thenReturn(damaged);
+
+    assertEquals(damaged, dictionary.get(damaged.getId()));
+    assertEquals(damaged, dictionary.get(damaged.getId()));
+
+    verify(rejectionReasonService, times(1)).findOne(damaged.getId());
+  }
+
+  private static RejectionReasonDto reason(String name) {
+    RejectionReasonDto reason = new RejectionReasonDto();
+    reason.setId(UUID.randomUUID());
+    reason.setName(name);
+    return reason;
+  }
+
+  private static ServiceResponse<List<RejectionReasonDto>> modified(
+      RejectionReasonDto... reasons) {
+    return new ServiceResponse<>(Arrays.asList(reasons), etagHeaders(), true);
+  }
+
+  private static ServiceResponse<List<RejectionReasonDto>> notModified() {
+    return new ServiceResponse<>(null, etagHeaders(), false);
+  }
+
+  private static HttpHeaders etagHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setETag(ETAG);
+    return headers;
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.openlmis.dispensing.dto.referencedata.UserDto;
+import org.openlmis.dispensing.exception.AuthenticationException;
+import org.openlmis.dispensing.service.referencedata.UserReferenceDataService;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AuthenticationHelperTest {
+
+  private static final long CACHE_TTL_SECONDS = 60;
+
+  @Mock
+  private UserReferenceDataService userReferenceDataService;
+
+  private final MutableClock clock = new MutableClock();
+  private final AuthenticationHelper authenticationHelper = new AuthenticationHelper();
+
+  private final UUID userId = UUID.randomUUID();
+  private final UserDto user = new UserDto();
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(authenticationHelper, "userReferenceDataService",
+        userReferenceDataService);
+    ReflectionTestUtils.setField(authenticationHelper, "clock", clock);
+    authenticationHelper.setUserCacheTtlSeconds(CACHE_TTL_SECONDS);
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken(userId, null));
+    startRequest();
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  public void shouldLookUpUserOncePerRequest() {
+    when(userReferenceDataService.findOne(userId)).thenReturn(user);
+    authenticationHelper.setUserCacheTtlSeconds(0);
+
+    assertEquals(user, authenticationHelper.getCurrentUser());
+    assertEquals(user, authenticationHelper.getCurrentUser());
+    verify(userReferenceDataService, times(1)).findOne(userId);
+
+    startRequest();
+    authenticationHelper.getCurrentUser();
+    verify(userReferenceDataService, times(2)).findOne(userId);
+  }
+
+  @Test
+  public void shouldReuseUserAcrossRequestsWithinTimeToLive() {
+    when(userReferenceDataService.findOne(userId)).thenReturn(user);
+    authenticationHelper.getCurrentUser();
+    startRequest();
+    clock.advance(Duration.ofSeconds(CACHE_TTL_SECONDS - 1));
+    authenticationHelper.getCurrentUser();
+
+    verify(userReferenceDataService, times(1)).findOne(userId);
+  }
+
+  @Test
+  public void shouldLookUpUserAgainOnceTimeToLiveHasPassed() {
+    when(userReferenceDataService.findOne(userId)).thenReturn(user);
+    authenticationHelper.getCurrentUser();
+    startRequest();
+    clock.advance(Duration.ofSeconds(CACHE_TTL_SECONDS));
+    authenticationHelper.getCurrentUser();
+
+    verify(userReferenceDataService, times(2)).findOne(userId);
+  }
+
+  @Test(expected = AuthenticationException.class)
+  public void shouldThrowWhenUserIsNotFound() {
+    authenticationHelper.getCurrentUser();
+  }
+
+  private void startRequest() {
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest()));
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
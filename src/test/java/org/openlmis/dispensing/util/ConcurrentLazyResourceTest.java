@@ -0,0 +1,205 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ConcurrentLazyResourceTest {
+
+  private static final int THREADS = 8;
+
+  private final AtomicInteger calls = new AtomicInteger();
+  private final MutableClock clock = new MutableClock();
+
+  @Test
+  public void shouldRetrieveOnceForConcurrentCallers() throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    ConcurrentLazyResource<Integer> resource = new ConcurrentLazyResource<>(() -> {
+      sleep();
+      return calls.incrementAndGet();
+    });
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        results.add(executor.submit(() -> {
+          start.await();
+          return resource.get();
+        }));
+      }
+      start.countDown();
+
+      for (Future<Integer> result : results) {
+        assertEquals(Integer.valueOf(1), result.get(5, TimeUnit.SECONDS));
+      }
+      assertEquals(1, calls.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldRetrieveAgainAfterExpiry() {
+    ConcurrentLazyResource<Integer> resource = ConcurrentLazyResource
+        .<Integer>builder(calls::incrementAndGet)
+        .clock(clock)
+        .expireAfter(Duration.ofMinutes(5))
+        .build();
+
+    assertEquals(Integer.valueOf(1), resource.get());
+    clock.advance(Duration.ofMinutes(4));
+    assertEquals(Integer.valueOf(1), resource.get());
+    clock.advance(Duration.ofMinutes(1));
+    assertEquals(Integer.valueOf(2), resource.get());
+  }
+
+  @Test
+  public void shouldRetryFailuresByDefault() {
+    ConcurrentLazyResource<Integer> resource = new ConcurrentLazyResource<>(
+        this::failFirstCall);
+
+    assertFails(resource);
+    assertEquals(Integer.valueOf(2), resource.get());
+  }
+
+  @Test
+  public void shouldCompleteEntryWhenRetrieverThrowsError() {
+    ConcurrentLazyResource<Integer> resource = new ConcurrentLazyResource<>(() -> {
+      if (calls.incrementAndGet() == 1) {
+        throw new AssertionError("Source broken");
+      }
+      return calls.get();
+    });
+
+    try {
+      resource.get();
+      fail("Expected AssertionError");
+    } catch (AssertionError ex) {
+      assertEquals("Source broken", ex.getMessage());
+    }
+    assertEquals(Integer.valueOf(2), resource.get());
+  }
+
+  @Test
+  public void shouldRethrowCachedFailureUntilItExpires() {
+    ConcurrentLazyResource<Integer> resource = ConcurrentLazyResource
+        .<Integer>builder(this::failFirstCall)
+        .clock(clock)
+        .cacheFailuresFor(Duration.ofSeconds(30))
+        .build();
+
+    assertFails(resource);
+    assertFails(resource);
+    assertEquals(1, calls.get());
+
+    clock.advance(Duration.ofSeconds(30));
+    assertEquals(Integer.valueOf(2), resource.get());
+  }
+
+  @Test
+  public void shouldRefreshAheadOfExpiryAndKeepValueWhenRefreshFails() {
+    List<Runnable> scheduled = new ArrayList<>();
+    ConcurrentLazyResource<Integer> resource = ConcurrentLazyResource
+        .<Integer>builder(() -> {
+          int call = calls.incrementAndGet();
+          if (call == 2) {
+            throw new IllegalStateException("upstream down");
+          }
+          return call;
+        })
+        .clock(clock)
+        .expireAfter(Duration.ofMinutes(5))
+        .refreshAhead(Duration.ofMinutes(1), scheduled::add)
+        .build();
+
+    assertEquals(Integer.valueOf(1), resource.get());
+    clock.advance(Duration.ofMinutes(4));
+    assertEquals(Integer.valueOf(1), resource.get());
+    assertEquals(1, scheduled.size());
+
+    scheduled.remove(0).run();
+    assertEquals(Integer.valueOf(1), resource.get());
+
+    scheduled.remove(0).run();
+    assertEquals(Integer.valueOf(3), resource.get());
+    assertEquals(0, scheduled.size());
+  }
+
+  private Integer failFirstCall() {
+    int call = calls.incrementAndGet();
+    if (call == 1) {
+      throw new IllegalStateException("upstream down");
+    }
+    return call;
+  }
+
+  private void assertFails(ConcurrentLazyResource<Integer> resource) {
+    try {
+      resource.get();
+      fail("Expected the retrieval to fail");
+    } catch (IllegalStateException ex) {
+      assertEquals("upstream down", ex.getMessage());
+    }
+  }
+
+  private void sleep() {
+    try {
+      Thread.sleep(50);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
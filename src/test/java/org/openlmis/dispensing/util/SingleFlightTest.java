@@ -0,0 +1,118 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  private static final int THREADS = 8;
+
+  private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+  private final AtomicInteger calls = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldShareResultBetweenConcurrentCallers() throws Exception {
+    List<Future<Integer>> results = submit("key", () -> {
+      await();
+      return calls.incrementAndGet();
+    });
+
+    Thread.sleep(100);
+    release.countDown();
+
+    for (Future<Integer> result : results) {
+      assertEquals(Integer.valueOf(1), result.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, calls.get());
+    assertEquals(0, singleFlight.size());
+  }
+
+  @Test
+  public void shouldShareExceptionBetweenConcurrentCallers() throws Exception {
+    IllegalStateException failure = new IllegalStateException();
+    List<Future<Integer>> results = submit("key", () -> {
+      await();
+      calls.incrementAndGet();
+      throw failure;
+    });
+
+    Thread.sleep(100);
+    release.countDown();
+
+    for (Future<Integer> result : results) {
+      try {
+        result.get(5, TimeUnit.SECONDS);
+        fail("Expected the call to fail");
+      } catch (ExecutionException ex) {
+        assertSame(failure, ex.getCause());
+      }
+    }
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void shouldRunCallAgainOnceCompleted() {
+    singleFlight.execute("key", calls::incrementAndGet);
+    singleFlight.execute("key", calls::incrementAndGet);
+
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void shouldNotShareBetweenKeys() {
+    assertEquals(Integer.valueOf(1), singleFlight.execute("first", calls::incrementAndGet));
+    assertEquals(Integer.valueOf(2), singleFlight.execute("second", calls::incrementAndGet));
+  }
+
+  private List<Future<Integer>> submit(String key, Supplier<Integer> call) {
+    List<Future<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      results.add(executor.submit(() -> singleFlight.execute(key, call)));
+    }
+    return results;
+  }
+
+  private void await() {
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * This program is part of the OpenLMIS logistics management information system platform software.
+ * Copyright © 2017 VillageReach
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details. You should have received a copy of
+ * the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses.  For additional information contact info@OpenLMIS.org.
+ */
+
+package org.openlmis.dispensing.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class StaleWhileRevalidateCacheTest {
+
+  private static final String KEY = "key";
+  private static final Duration FRESH_FOR = Duration.ofMinutes(5);
+  private static final Duration MAX_STALENESS = Duration.ofHours(1);
+
+  private final MutableClock clock = new MutableClock();
+  private final AtomicInteger loads = new AtomicInteger();
+  private final StaleWhileRevalidateCache<String, Integer> cache =
+      new StaleWhileRevalidateCache<>(10, FRESH_FOR, MAX_STALENESS,
+          ex -> ex instanceof IllegalStateException, Runnable::run, clock);
+
+  @Test
+  public void shouldServeFreshEntryWithoutLoading() {
+    cache.get(KEY, key -> loads.incrementAndGet());
+    clock.advance(FRESH_FOR.minusSeconds(1));
+
+    StaleWhileRevalidateCache.Result<Integer> result = cache.get(KEY, key -> loads.incrementAndGet());
+
+    assertEquals(Integer.valueOf(1), result.getValue());
+    assertFalse(result.isStale());
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void shouldLoadAgainOnceEntryIsNotFresh() {
+    cache.get(KEY, key -> loads.incrementAndGet());
+    clock.advance(FRESH_FOR);
+
+    StaleWhileRevalidateCache.Result<Integer> result = cache.get(KEY, key -> loads.incrementAndGet());
+
+    assertEquals(Integer.valueOf(2), result.getValue());
+    assertFalse(result.isStale());
+  }
+
+  @Test
+  public void shouldServeStaleEntryDuringOutage() {
+    cache.get(KEY, key -> loads.incrementAndGet());
+    clock.advance(FRESH_FOR);
+
+    StaleWhileRevalidateCache.Result<Integer> result = cache.get(KEY, this::fail);
+
+    assertEquals(Integer.valueOf(1), result.getValue());
+    assertTrue(result.isStale());
+  }
+
+  @Test
+  public void shouldNotCallSourceOnEveryRequestDuringOutage() {
+    AtomicInteger failures = new AtomicInteger();
+    cache.get(KEY, key -> loads.incrementAndGet());
+    clock.advance(FRESH_FOR);
+
+    for (int i = 0; i < 10; i++) {
+      cache.get(KEY, key -> {
+        failures.incrementAndGet();
+        return fail(key);
+      });
+    }
+    assertEquals(1, failures.get());
+
+    clock.advance(FRESH_FOR);
+    StaleWhileRevalidateCache.Result<Integer> result = cache.get(KEY, key -> loads.incrementAndGet());
+
+    // refreshed in the background, the stale entry is still returned to this caller
+    assertTrue(result.isStale());
+    assertFalse(cache.get(KEY, this::fail).isStale());
+    assertEquals(Integer.valueOf(2), cache.get(KEY, this::fail).getValue());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldFailOnceMaxStalenessIsExceeded() {
+    cache.get(KEY, key -> loads.incrementAndGet());
+    clock.advance(FRESH_FOR.plus(MAX_STALENESS));
+
+    cache.get(KEY, this::fail);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldNotServeStaleEntryPastMaxStalenessBeforeItsNextLoad() {
+    cache.get(KEY, key -> loads.incrementAndGet());
+    clock.advance(FRESH_FOR.plus(MAX_STALENESS).minusSeconds(1));
+    assertTrue(cache.get(KEY, this::fail).isStale());
+
+    clock.advance(Duration.ofSeconds(2));
+    cache.get(KEY, this::fail);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotServeStaleEntryOnOtherFailures() {
+    cache.get(KEY, key -> loads.incrementAndGet());
+    clock.advance(FRESH_FOR);
+
+    cache.get(KEY, key -> {
+      throw new IllegalArgumentException();
+    });
+  }
+
+  private Integer fail(String key) {
+    throw new IllegalStateException("Source unavailable");
+  }
+
+  private static class MutableClock extends Clock {
+    private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}